@@ -15,6 +15,7 @@ import java.net.http.HttpRequest;
 import java.nio.charset.Charset;
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /** Implementation of the HttpPoster interface using an Java 11 JDK Http client. */
 public class Java11HttpPoster implements HttpPoster {
@@ -48,15 +49,10 @@ public class Java11HttpPoster implements HttpPoster {
       throws IOException {
 
     try {
-      var builder =
-          HttpRequest.newBuilder(url.toURI()).POST(HttpRequest.BodyPublishers.ofByteArray(body));
-      headers.forEach(builder::header);
-      builder.header("Content-Type", mediaType);
-      var req = builder.build();
-
       var response =
           httpClient.send(
-              req, java.net.http.HttpResponse.BodyHandlers.ofString(Charset.defaultCharset()));
+              buildRequest(url, headers, body, mediaType),
+              java.net.http.HttpResponse.BodyHandlers.ofString(Charset.defaultCharset()));
 
       return toSdkResponse(response);
     } catch (URISyntaxException | InterruptedException e) {
@@ -64,6 +60,31 @@ public class Java11HttpPoster implements HttpPoster {
     }
   }
 
+  @Override
+  public CompletableFuture<HttpResponse> postAsync(
+      URL url, Map<String, String> headers, byte[] body, String mediaType) {
+    HttpRequest request;
+    try {
+      request = buildRequest(url, headers, body, mediaType);
+    } catch (URISyntaxException e) {
+      return CompletableFuture.failedFuture(new IOException(e));
+    }
+    return httpClient
+        .sendAsync(
+            request, java.net.http.HttpResponse.BodyHandlers.ofString(Charset.defaultCharset()))
+        .thenApply(Java11HttpPoster::toSdkResponse);
+  }
+
+  private HttpRequest buildRequest(
+      URL url, Map<String, String> headers, byte[] body, String mediaType)
+      throws URISyntaxException {
+    var builder =
+        HttpRequest.newBuilder(url.toURI()).POST(HttpRequest.BodyPublishers.ofByteArray(body));
+    headers.forEach(builder::header);
+    builder.header("Content-Type", mediaType);
+    return builder.build();
+  }
+
   public static HttpResponse toSdkResponse(java.net.http.HttpResponse actual) {
     return new HttpResponse(
         actual.body().toString(),
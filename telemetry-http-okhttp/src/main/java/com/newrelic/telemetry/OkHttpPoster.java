@@ -10,6 +10,9 @@ import java.io.IOException;
 import java.net.URL;
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -38,18 +41,51 @@ public class OkHttpPoster implements HttpPoster {
   @Override
   public HttpResponse post(URL url, Map<String, String> headers, byte[] body, String mediaType)
       throws IOException {
-    RequestBody requestBody = RequestBody.create(MediaType.get(mediaType), body);
-    Request request =
-        new Request.Builder().url(url).headers(Headers.of(headers)).post(requestBody).build();
+    Request request = buildRequest(url, headers, body, mediaType);
     try (okhttp3.Response response = okHttpClient.newCall(request).execute()) {
-      return new HttpResponse(
-          response.body() != null ? response.body().string() : null,
-          response.code(),
-          response.message(),
-          response.headers().toMultimap());
+      return toSdkResponse(response);
     }
   }
 
+  @Override
+  public CompletableFuture<HttpResponse> postAsync(
+      URL url, Map<String, String> headers, byte[] body, String mediaType) {
+    CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+    okHttpClient
+        .newCall(buildRequest(url, headers, body, mediaType))
+        .enqueue(
+            new Callback() {
+              @Override
+              public void onFailure(Call call, IOException e) {
+                result.completeExceptionally(e);
+              }
+
+              @Override
+              public void onResponse(Call call, okhttp3.Response response) {
+                try (okhttp3.Response closeable = response) {
+                  result.complete(toSdkResponse(closeable));
+                } catch (IOException | RuntimeException e) {
+                  result.completeExceptionally(e);
+                }
+              }
+            });
+    return result;
+  }
+
+  private Request buildRequest(
+      URL url, Map<String, String> headers, byte[] body, String mediaType) {
+    RequestBody requestBody = RequestBody.create(MediaType.get(mediaType), body);
+    return new Request.Builder().url(url).headers(Headers.of(headers)).post(requestBody).build();
+  }
+
+  private static HttpResponse toSdkResponse(okhttp3.Response response) throws IOException {
+    return new HttpResponse(
+        response.body() != null ? response.body().string() : null,
+        response.code(),
+        response.message(),
+        response.headers().toMultimap());
+  }
+
   public static MetricBatchSenderFactory metricSenderFactory() {
     return MetricBatchSenderFactory.fromHttpImplementation(OkHttpPoster::new);
   }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import com.newrelic.telemetry.util.Utils;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on how much data the {@link TelemetryClient} holds on to while it is waiting to be sent,
+ * including batches that are waiting to be retried. The limits apply separately to each telemetry
+ * type.
+ *
+ * <p>Pending data is measured both in batches and in individual pieces of telemetry (metrics,
+ * spans or events). When a new batch would exceed either limit, the {@link OverflowPolicy} decides
+ * what is dropped. A single batch that is larger than the whole budget is still accepted if
+ * nothing else is pending.
+ */
+public final class Backpressure {
+
+  private final int maxPendingBatches;
+  private final long maxPendingTelemetry;
+  private final OverflowPolicy overflowPolicy;
+  private final long blockTimeoutNanos;
+
+  private Backpressure(Builder builder) {
+    this.maxPendingBatches = builder.maxPendingBatches;
+    this.maxPendingTelemetry = builder.maxPendingTelemetry;
+    this.overflowPolicy = builder.overflowPolicy;
+    this.blockTimeoutNanos = builder.blockTimeoutNanos;
+  }
+
+  /**
+   * @return The default limits: 1000 batches or 500,000 pieces of telemetry per type, dropping the
+   *     oldest data on overflow.
+   */
+  public static Backpressure defaultBackpressure() {
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int getMaxPendingBatches() {
+    return maxPendingBatches;
+  }
+
+  public long getMaxPendingTelemetry() {
+    return maxPendingTelemetry;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /** @return How long {@link OverflowPolicy#BLOCK} waits for room, in nanoseconds. */
+  public long getBlockTimeoutNanos() {
+    return blockTimeoutNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "Backpressure{"
+        + "maxPendingBatches="
+        + maxPendingBatches
+        + ", maxPendingTelemetry="
+        + maxPendingTelemetry
+        + ", overflowPolicy="
+        + overflowPolicy
+        + ", blockTimeoutNanos="
+        + blockTimeoutNanos
+        + '}';
+  }
+
+  public static class Builder {
+
+    private int maxPendingBatches = 1000;
+    private long maxPendingTelemetry = 500_000;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private long blockTimeoutNanos = TimeUnit.SECONDS.toNanos(1);
+
+    /** The maximum number of batches pending for each telemetry type. */
+    public Builder maxPendingBatches(int maxPendingBatches) {
+      if (maxPendingBatches < 1) {
+        throw new IllegalArgumentException("maxPendingBatches must be at least 1");
+      }
+      this.maxPendingBatches = maxPendingBatches;
+      return this;
+    }
+
+    /** The maximum number of metrics, spans or events pending for each telemetry type. */
+    public Builder maxPendingTelemetry(long maxPendingTelemetry) {
+      if (maxPendingTelemetry < 1) {
+        throw new IllegalArgumentException("maxPendingTelemetry must be at least 1");
+      }
+      this.maxPendingTelemetry = maxPendingTelemetry;
+      return this;
+    }
+
+    /** What to do when a new batch doesn't fit in the budget. */
+    public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+      this.overflowPolicy = Utils.verifyNonNull(overflowPolicy);
+      return this;
+    }
+
+    /** How long {@link OverflowPolicy#BLOCK} waits for room before dropping the new batch. */
+    public Builder blockTimeout(long timeout, TimeUnit unit) {
+      this.blockTimeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    public Backpressure build() {
+      return new Backpressure(this);
+    }
+  }
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import com.newrelic.telemetry.transport.CompressedPayload;
+import com.newrelic.telemetry.util.Utils;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent, size-capped store for telemetry that a {@link TelemetryClient} could not deliver,
+ * either because it ran out of retries or because it overflowed the client's {@link Backpressure}
+ * budget. Spooled payloads are replayed once the ingest APIs accept data again, including after
+ * the process restarts with the same spool directory.
+ *
+ * <p>The spool holds payloads that are already marshalled and compressed, in memory-mapped,
+ * append-only segment files. When the spool reaches its size cap, the oldest segment is evicted to
+ * make room. Payloads older than the maximum age are evicted rather than replayed.
+ *
+ * <p>Writes are not forced to disk individually, so spooled data survives the process crashing,
+ * but not necessarily the host losing power. A directory must not be used by more than one spool
+ * at a time.
+ *
+ * <p>Create a spool with {@link #builder(Path)}, pass it to the {@link TelemetryClient}, and
+ * {@link #close()} it after shutting the client down.
+ */
+public final class DiskSpool implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DiskSpool.class);
+
+  /** The kinds of telemetry a spool can hold. */
+  enum TelemetryType {
+    METRIC,
+    SPAN,
+    EVENT;
+
+    private static TelemetryType fromCode(byte code) {
+      TelemetryType[] types = values();
+      return code >= 0 && code < types.length ? types[code] : null;
+    }
+  }
+
+  /** A payload read back from the spool, and the type of telemetry it holds. */
+  static final class SpooledPayload {
+    private final SpoolSegment.Record record;
+    private final TelemetryType telemetryType;
+    private final CompressedPayload payload;
+
+    private SpooledPayload(
+        SpoolSegment.Record record, TelemetryType telemetryType, CompressedPayload payload) {
+      this.record = record;
+      this.telemetryType = telemetryType;
+      this.payload = payload;
+    }
+
+    TelemetryType getTelemetryType() {
+      return telemetryType;
+    }
+
+    CompressedPayload getPayload() {
+      return payload;
+    }
+  }
+
+  private static final String[] ENCODINGS = {null, "gzip", "deflate"};
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final long maxAgeMillis;
+  private final long replayIntervalMillis;
+  private final LongSupplier clock;
+
+  // Oldest first. The last segment is the one being appended to.
+  private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+  private final Deque<SpoolSegment.Record> pending = new ArrayDeque<>();
+  private boolean closed = false;
+
+  private final AtomicLong spooledPayloads = new AtomicLong();
+  private final AtomicLong replayedPayloads = new AtomicLong();
+  private final AtomicLong evictedPayloads = new AtomicLong();
+
+  private DiskSpool(Builder builder) throws IOException {
+    this.directory = builder.directory;
+    this.segmentBytes = builder.segmentBytes;
+    this.maxSegments = (int) Math.max(2, builder.maxBytes / builder.segmentBytes);
+    this.maxAgeMillis = builder.maxAgeMillis;
+    this.replayIntervalMillis = builder.replayIntervalMillis;
+    this.clock = builder.clock;
+    Files.createDirectories(directory);
+    recover();
+  }
+
+  /**
+   * Start building a spool that stores its segment files in the given directory.
+   *
+   * @param directory The spool directory. It is created if it does not exist. Any segments left in
+   *     it by a previous process are replayed.
+   */
+  public static Builder builder(Path directory) {
+    return new Builder(Utils.verifyNonNull(directory));
+  }
+
+  private void recover() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, "*" + SpoolSegment.FILE_SUFFIX)) {
+      stream.forEach(files::add);
+    }
+    files.sort(null);
+    for (Path file : files) {
+      Long sequence = parseSequence(file);
+      if (sequence == null) {
+        continue;
+      }
+      SpoolSegment segment = SpoolSegment.open(file, sequence, pending::add);
+      if (segment == null) {
+        LOG.warn("Ignoring {}, which is not a telemetry spool segment.", file);
+        continue;
+      }
+      segments.add(segment);
+    }
+    // Finished segments are normally deleted right away, but the last one may still have room.
+    Iterator<SpoolSegment> iterator = segments.iterator();
+    while (iterator.hasNext()) {
+      SpoolSegment segment = iterator.next();
+      if (segment.getPendingRecords() == 0 && segment != segments.peekLast()) {
+        iterator.remove();
+        segment.delete();
+      }
+    }
+    if (!pending.isEmpty()) {
+      LOG.info("Recovered {} spooled telemetry payloads from {}", pending.size(), directory);
+    }
+  }
+
+  private static Long parseSequence(Path file) {
+    String name = file.getFileName().toString();
+    try {
+      return Long.parseLong(name.substring(0, name.length() - SpoolSegment.FILE_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Append a payload to the spool, evicting the oldest segment if the spool is full.
+   *
+   * @return false if the payload could not be spooled.
+   */
+  synchronized boolean append(TelemetryType telemetryType, CompressedPayload payload) {
+    if (closed) {
+      return false;
+    }
+    byte encoding = encodingCode(payload.getContentEncoding());
+    if (encoding < 0 || payload.size() > SpoolSegment.maxPayloadBytes(segmentBytes)) {
+      LOG.warn("Unable to spool a telemetry payload of {}.", payload);
+      return false;
+    }
+    try {
+      SpoolSegment segment = segments.peekLast();
+      if (segment == null || !segment.hasRoomFor(payload.size())) {
+        segment = startSegment();
+      }
+      pending.add(
+          segment.append(
+              (byte) telemetryType.ordinal(), encoding, clock.getAsLong(), payload.getBytes()));
+      spooledPayloads.incrementAndGet();
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Unable to write to the telemetry spool in " + directory, e);
+      return false;
+    }
+  }
+
+  private SpoolSegment startSegment() throws IOException {
+    while (segments.size() >= maxSegments) {
+      evictOldestSegment();
+    }
+    SpoolSegment last = segments.peekLast();
+    long sequence = last == null ? 0 : last.getSequence() + 1;
+    SpoolSegment segment = SpoolSegment.create(directory, sequence, segmentBytes);
+    if (last != null && last.getPendingRecords() == 0) {
+      segments.pollLast();
+      last.delete();
+    }
+    segments.add(segment);
+    return segment;
+  }
+
+  private void evictOldestSegment() throws IOException {
+    SpoolSegment oldest = segments.pollFirst();
+    int evicted = 0;
+    while (!pending.isEmpty() && pending.peekFirst().getSegment() == oldest) {
+      pending.pollFirst();
+      evicted++;
+    }
+    oldest.delete();
+    if (evicted > 0) {
+      evictedPayloads.addAndGet(evicted);
+      LOG.warn("Telemetry spool is full. Dropping {} of the oldest spooled payloads.", evicted);
+    }
+  }
+
+  /**
+   * @return The oldest payload that has not yet been replayed, after evicting any that have
+   *     expired, or null if there are none. The payload stays in the spool until it is passed to
+   *     {@link #remove(SpooledPayload, boolean)}.
+   */
+  synchronized SpooledPayload peek() {
+    evictExpired();
+    while (!pending.isEmpty()) {
+      SpoolSegment.Record record = pending.peekFirst();
+      TelemetryType type = TelemetryType.fromCode(record.getTelemetryType());
+      if (type != null && record.getEncoding() < ENCODINGS.length) {
+        CompressedPayload payload =
+            new CompressedPayload(
+                record.getSegment().read(record), ENCODINGS[record.getEncoding()]);
+        return new SpooledPayload(record, type, payload);
+      }
+      LOG.warn("Discarding an unreadable spooled telemetry payload.");
+      done(pending.pollFirst());
+    }
+    return null;
+  }
+
+  /**
+   * Remove a payload returned by {@link #peek()} from the spool.
+   *
+   * @param replayed true if the payload was delivered, false if it was given up on.
+   */
+  synchronized void remove(SpooledPayload spooled, boolean replayed) {
+    if (!pending.remove(spooled.record)) {
+      // evicted while it was being replayed
+      return;
+    }
+    done(spooled.record);
+    if (replayed) {
+      replayedPayloads.incrementAndGet();
+    }
+  }
+
+  /** Evict every payload that is older than the maximum age. */
+  synchronized void evictExpired() {
+    long cutoff = clock.getAsLong() - maxAgeMillis;
+    int evicted = 0;
+    while (!pending.isEmpty() && pending.peekFirst().getCreatedAtMillis() < cutoff) {
+      done(pending.pollFirst());
+      evicted++;
+    }
+    if (evicted > 0) {
+      evictedPayloads.addAndGet(evicted);
+      LOG.warn("Dropping {} spooled telemetry payloads that are too old to replay.", evicted);
+    }
+  }
+
+  private void done(SpoolSegment.Record record) {
+    SpoolSegment segment = record.getSegment();
+    if (segment.isDeleted()) {
+      return;
+    }
+    segment.markDone(record);
+    if (segment.getPendingRecords() == 0 && segment != segments.peekLast()) {
+      segments.remove(segment);
+      try {
+        segment.delete();
+      } catch (IOException e) {
+        LOG.warn("Unable to delete spool segment from " + directory, e);
+      }
+    }
+  }
+
+  private static byte encodingCode(String contentEncoding) {
+    for (byte i = 0; i < ENCODINGS.length; i++) {
+      if (contentEncoding == null
+          ? ENCODINGS[i] == null
+          : contentEncoding.equalsIgnoreCase(ENCODINGS[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  synchronized boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  long getReplayIntervalMillis() {
+    return replayIntervalMillis;
+  }
+
+  /** Force spooled data out to disk. */
+  public synchronized void flush() {
+    segments.forEach(SpoolSegment::flush);
+  }
+
+  /** Flush the spool. Nothing more can be spooled once it is closed. */
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      flush();
+      closed = true;
+    }
+  }
+
+  /** @return The number of payloads waiting to be replayed. */
+  public synchronized int getPendingPayloads() {
+    return pending.size();
+  }
+
+  /** @return The space taken up by segment files, in bytes. */
+  public synchronized long getBytesOnDisk() {
+    long bytes = 0;
+    for (SpoolSegment segment : segments) {
+      bytes += segment.getSizeBytes();
+    }
+    return bytes;
+  }
+
+  /** @return The number of payloads written to the spool since it was opened. */
+  public long getSpooledPayloads() {
+    return spooledPayloads.get();
+  }
+
+  /** @return The number of spooled payloads delivered since the spool was opened. */
+  public long getReplayedPayloads() {
+    return replayedPayloads.get();
+  }
+
+  /**
+   * @return The number of payloads dropped from the spool since it was opened, because it was
+   *     full or they were too old.
+   */
+  public long getEvictedPayloads() {
+    return evictedPayloads.get();
+  }
+
+  @Override
+  public String toString() {
+    return "DiskSpool{"
+        + "directory="
+        + directory
+        + ", spooledPayloads="
+        + spooledPayloads
+        + ", replayedPayloads="
+        + replayedPayloads
+        + ", evictedPayloads="
+        + evictedPayloads
+        + '}';
+  }
+
+  public static class Builder {
+
+    private final Path directory;
+    private long maxBytes = 256L * 1024 * 1024;
+    private int segmentBytes = 16 * 1024 * 1024;
+    private long maxAgeMillis = TimeUnit.HOURS.toMillis(6);
+    private long replayIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private Builder(Path directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * The most disk space the spool's segment files may take up. The oldest segment is evicted
+     * when a new one would exceed it. The spool always keeps at least two segments.
+     */
+    public Builder maxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * The size of each segment file. This also limits the largest payload that can be spooled.
+     * Defaults to 16MB.
+     */
+    public Builder segmentBytes(int segmentBytes) {
+      if (segmentBytes <= 2 * SpoolSegment.RECORD_HEADER_BYTES) {
+        throw new IllegalArgumentException("segmentBytes is too small: " + segmentBytes);
+      }
+      this.segmentBytes = segmentBytes;
+      return this;
+    }
+
+    /** How long a payload may wait in the spool before it is evicted instead of replayed. */
+    public Builder maxAge(long maxAge, TimeUnit unit) {
+      this.maxAgeMillis = unit.toMillis(maxAge);
+      return this;
+    }
+
+    /**
+     * How often the {@link TelemetryClient} tries to replay spooled payloads while none are getting
+     * through. Replay also starts as soon as a regular batch is sent successfully.
+     */
+    public Builder replayInterval(long interval, TimeUnit unit) {
+      this.replayIntervalMillis = unit.toMillis(interval);
+      return this;
+    }
+
+    Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Open the spool, recovering any payloads left in the directory.
+     *
+     * @throws IOException If the directory or its segment files can't be read or created.
+     */
+    public DiskSpool build() throws IOException {
+      return new DiskSpool(this);
+    }
+  }
+}
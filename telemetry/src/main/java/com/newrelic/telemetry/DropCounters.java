@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the telemetry that a {@link TelemetryClient} has dropped rather than delivered, and why.
+ * Counts cover all telemetry types and are cumulative for the life of the client.
+ *
+ * <p>If the client has a {@link DiskSpool}, overflowed batches and batches that ran out of retries
+ * are still counted here, but are written to the spool rather than lost.
+ */
+public final class DropCounters {
+
+  private final AtomicLong overflowBatches = new AtomicLong();
+  private final AtomicLong overflowTelemetry = new AtomicLong();
+  private final AtomicLong failedBatches = new AtomicLong();
+  private final AtomicLong failedTelemetry = new AtomicLong();
+
+  void recordOverflow(int telemetryCount) {
+    overflowBatches.incrementAndGet();
+    overflowTelemetry.addAndGet(telemetryCount);
+  }
+
+  void recordFailure(int telemetryCount) {
+    failedBatches.incrementAndGet();
+    failedTelemetry.addAndGet(telemetryCount);
+  }
+
+  /** @return The number of batches dropped because the pending budget was exceeded. */
+  public long getOverflowBatches() {
+    return overflowBatches.get();
+  }
+
+  /** @return The pieces of telemetry dropped because the pending budget was exceeded. */
+  public long getOverflowTelemetry() {
+    return overflowTelemetry.get();
+  }
+
+  /**
+   * @return The number of batches dropped because they were rejected by the New Relic API, or ran
+   *     out of retries.
+   */
+  public long getFailedBatches() {
+    return failedBatches.get();
+  }
+
+  /**
+   * @return The pieces of telemetry dropped because they were rejected by the New Relic API, or
+   *     ran out of retries.
+   */
+  public long getFailedTelemetry() {
+    return failedTelemetry.get();
+  }
+
+  @Override
+  public String toString() {
+    return "DropCounters{"
+        + "overflowBatches="
+        + overflowBatches
+        + ", overflowTelemetry="
+        + overflowTelemetry
+        + ", failedBatches="
+        + failedBatches
+        + ", failedTelemetry="
+        + failedTelemetry
+        + '}';
+  }
+}
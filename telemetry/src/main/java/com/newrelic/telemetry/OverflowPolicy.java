@@ -0,0 +1,26 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+/**
+ * What the {@link TelemetryClient} does with a new batch when its pending budget (see {@link
+ * Backpressure}) is already used up.
+ */
+public enum OverflowPolicy {
+  /**
+   * Make room by dropping the oldest pending batches that are not currently being sent. This
+   * favors fresh data, and is the default.
+   */
+  DROP_OLDEST,
+
+  /** Drop the new batch, keeping everything that is already pending. */
+  DROP_NEWEST,
+
+  /**
+   * Block the calling thread until enough pending data has been sent or dropped, up to the
+   * configured timeout. If there is still no room after the timeout, the new batch is dropped.
+   */
+  BLOCK
+}
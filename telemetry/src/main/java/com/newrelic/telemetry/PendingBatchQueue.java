@@ -0,0 +1,316 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import com.newrelic.telemetry.transport.CompressedPayload;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks every batch of one telemetry type from the moment the {@link TelemetryClient} accepts it
+ * until it is sent or dropped, and enforces the {@link Backpressure} budget on new batches.
+ *
+ * <p>A pending batch is either ready to send, in flight, or waiting for a retry. Batches that are
+ * in flight are never dropped to make room.
+ */
+final class PendingBatchQueue {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PendingBatchQueue.class);
+
+  private enum State {
+    READY,
+    IN_FLIGHT,
+    WAITING,
+    DONE
+  }
+
+  /** A pending batch, and the retry state that goes with it. */
+  static final class Entry {
+    private TelemetryBatch<? extends Telemetry> batch;
+    private final int size;
+    private final Backoff backoff = Backoff.defaultBackoff();
+    private State state = State.READY;
+    // Compressed on the first attempt, and reused by every retry.
+    private CompressedPayload payload;
+
+    private Entry(TelemetryBatch<? extends Telemetry> batch) {
+      this.batch = batch;
+      this.size = batch.size();
+    }
+
+    TelemetryBatch<? extends Telemetry> getBatch() {
+      return batch;
+    }
+
+    /** @return The number of pieces of telemetry in the batch, also once it has been released. */
+    int getSize() {
+      return size;
+    }
+
+    Backoff getBackoff() {
+      return backoff;
+    }
+
+    CompressedPayload getPayload() {
+      return payload;
+    }
+
+    void setPayload(CompressedPayload payload) {
+      this.payload = payload;
+    }
+  }
+
+  private final Backpressure backpressure;
+  private final DropCounters dropCounters;
+  private final Consumer<TelemetryBatch<? extends Telemetry>> overflowListener;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition spaceFreed = lock.newCondition();
+  // every pending batch, oldest first
+  private final Set<Entry> pending = new LinkedHashSet<>();
+  // the pending batches that are ready to send, in the order they became ready
+  private final Deque<Entry> ready = new ArrayDeque<>();
+  private long pendingTelemetry = 0;
+
+  PendingBatchQueue(Backpressure backpressure, DropCounters dropCounters) {
+    this(backpressure, dropCounters, batch -> {});
+  }
+
+  /**
+   * @param overflowListener Called with each batch that is dropped to stay within the budget,
+   *     after the batch has been counted. It is not called while the queue is locked.
+   */
+  PendingBatchQueue(
+      Backpressure backpressure,
+      DropCounters dropCounters,
+      Consumer<TelemetryBatch<? extends Telemetry>> overflowListener) {
+    this.backpressure = backpressure;
+    this.dropCounters = dropCounters;
+    this.overflowListener = overflowListener;
+  }
+
+  /**
+   * Accept a new batch, ready to send, if the overflow policy can make room for it.
+   *
+   * @return false if the batch was dropped instead.
+   */
+  boolean offer(TelemetryBatch<? extends Telemetry> batch) {
+    List<TelemetryBatch<? extends Telemetry>> dropped = new ArrayList<>(0);
+    boolean accepted;
+    lock.lock();
+    try {
+      accepted = makeRoomFor(batch.size(), dropped);
+      if (accepted) {
+        add(new Entry(batch));
+      } else {
+        LOG.warn(
+            "Too much telemetry is pending. Dropping {} new pieces of telemetry data.",
+            batch.size());
+        dropCounters.recordOverflow(batch.size());
+        dropped.add(batch);
+      }
+    } finally {
+      lock.unlock();
+    }
+    dropped.forEach(overflowListener);
+    return accepted;
+  }
+
+  /** @return The oldest batch that is ready to send, now marked in flight, or null if none is. */
+  Entry nextReady() {
+    lock.lock();
+    try {
+      Entry entry = ready.poll();
+      if (entry != null) {
+        entry.state = State.IN_FLIGHT;
+      }
+      return entry;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Mark an in-flight batch as waiting to be retried. */
+  void awaitRetry(Entry entry) {
+    lock.lock();
+    try {
+      entry.state = State.WAITING;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Make a batch that was waiting to be retried ready to send again.
+   *
+   * @return false if the batch was dropped while it was waiting.
+   */
+  boolean retryNow(Entry entry) {
+    lock.lock();
+    try {
+      if (entry.state != State.WAITING) {
+        return false;
+      }
+      entry.state = State.READY;
+      ready.add(entry);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Replace an in-flight batch with the parts it was split into. The parts always fit, since they
+   * hold the same telemetry as the original.
+   *
+   * @return the number of new ready batches.
+   */
+  <T extends Telemetry> int replaceWithSplit(Entry entry, List<TelemetryBatch<T>> parts) {
+    lock.lock();
+    try {
+      remove(entry);
+      for (TelemetryBatch<T> part : parts) {
+        add(new Entry(part));
+      }
+      return parts.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** The batch has been delivered. */
+  void sent(Entry entry) {
+    lock.lock();
+    try {
+      remove(entry);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** The batch could not be delivered, and has been given up on. */
+  void failed(Entry entry) {
+    lock.lock();
+    try {
+      if (remove(entry)) {
+        dropCounters.recordFailure(entry.size);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int getPendingBatches() {
+    lock.lock();
+    try {
+      return pending.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  long getPendingTelemetry() {
+    lock.lock();
+    try {
+      return pendingTelemetry;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean makeRoomFor(int size, List<TelemetryBatch<? extends Telemetry>> dropped) {
+    switch (backpressure.getOverflowPolicy()) {
+      case DROP_OLDEST:
+        while (!fits(size)) {
+          if (!dropOldest(dropped)) {
+            return false;
+          }
+        }
+        return true;
+      case BLOCK:
+        long remainingNanos = backpressure.getBlockTimeoutNanos();
+        while (!fits(size)) {
+          if (remainingNanos <= 0) {
+            return false;
+          }
+          try {
+            remainingNanos = spaceFreed.awaitNanos(remainingNanos);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+          }
+        }
+        return true;
+      case DROP_NEWEST:
+      default:
+        return fits(size);
+    }
+  }
+
+  private boolean fits(int size) {
+    if (pending.isEmpty()) {
+      return true;
+    }
+    return pending.size() < backpressure.getMaxPendingBatches()
+        && pendingTelemetry + size <= backpressure.getMaxPendingTelemetry();
+  }
+
+  private boolean dropOldest(List<TelemetryBatch<? extends Telemetry>> dropped) {
+    Iterator<Entry> iterator = pending.iterator();
+    while (iterator.hasNext()) {
+      Entry oldest = iterator.next();
+      if (oldest.state == State.IN_FLIGHT) {
+        continue;
+      }
+      iterator.remove();
+      if (oldest.state == State.READY) {
+        ready.remove(oldest);
+      }
+      dropped.add(oldest.batch);
+      release(oldest);
+      LOG.warn(
+          "Too much telemetry is pending. Dropping {} pieces of the oldest telemetry data.",
+          oldest.size);
+      dropCounters.recordOverflow(oldest.size);
+      return true;
+    }
+    return false;
+  }
+
+  private void add(Entry entry) {
+    pending.add(entry);
+    ready.add(entry);
+    pendingTelemetry += entry.size;
+  }
+
+  private boolean remove(Entry entry) {
+    if (!pending.remove(entry)) {
+      return false;
+    }
+    if (entry.state == State.READY) {
+      ready.remove(entry);
+    }
+    release(entry);
+    return true;
+  }
+
+  private void release(Entry entry) {
+    entry.state = State.DONE;
+    // let go of the telemetry now, even if a retry timer still references the entry
+    entry.batch = null;
+    entry.payload = null;
+    pendingTelemetry -= entry.size;
+    spaceFreed.signalAll();
+  }
+}
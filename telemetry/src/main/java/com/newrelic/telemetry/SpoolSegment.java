@@ -0,0 +1,263 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * One fixed-size, memory-mapped file of a {@link DiskSpool}. Records are only ever appended; the
+ * single byte of state in each record header is the one thing rewritten in place, when the record
+ * has been replayed or evicted.
+ *
+ * <p>The file starts with an 8 byte header (magic and version), followed by records laid out as:
+ *
+ * <pre>
+ *   int  payload length (0 marks the end of the written records)
+ *   byte state (pending or done)
+ *   byte telemetry type
+ *   byte content encoding
+ *   byte unused
+ *   long creation time, epoch millis
+ *   int  crc32 of the payload
+ *   ...  payload
+ * </pre>
+ *
+ * The length is written last, so that a record only becomes visible once it is complete. A record
+ * that was torn by a crash fails its checksum, and ends the segment.
+ *
+ * <p>This class is not thread-safe. {@link DiskSpool} guards all access to it.
+ */
+final class SpoolSegment {
+
+  static final String FILE_SUFFIX = ".spool";
+  static final int RECORD_HEADER_BYTES = 20;
+
+  private static final int MAGIC = 0x4e525350; // "NRSP"
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER_BYTES = 8;
+  private static final byte STATE_PENDING = 1;
+  private static final byte STATE_DONE = 2;
+  private static final int STATE_OFFSET = 4;
+
+  /** A record that has been appended, but not yet replayed or evicted. */
+  static final class Record {
+    private final SpoolSegment segment;
+    private final int position;
+    private final int length;
+    private final byte telemetryType;
+    private final byte encoding;
+    private final long createdAtMillis;
+
+    private Record(
+        SpoolSegment segment,
+        int position,
+        int length,
+        byte telemetryType,
+        byte encoding,
+        long createdAtMillis) {
+      this.segment = segment;
+      this.position = position;
+      this.length = length;
+      this.telemetryType = telemetryType;
+      this.encoding = encoding;
+      this.createdAtMillis = createdAtMillis;
+    }
+
+    SpoolSegment getSegment() {
+      return segment;
+    }
+
+    int getLength() {
+      return length;
+    }
+
+    byte getTelemetryType() {
+      return telemetryType;
+    }
+
+    byte getEncoding() {
+      return encoding;
+    }
+
+    long getCreatedAtMillis() {
+      return createdAtMillis;
+    }
+  }
+
+  private final long sequence;
+  private final Path path;
+  private final MappedByteBuffer buffer;
+  private int writePosition;
+  private int pendingRecords;
+  private boolean deleted = false;
+
+  private SpoolSegment(long sequence, Path path, MappedByteBuffer buffer, int writePosition) {
+    this.sequence = sequence;
+    this.path = path;
+    this.buffer = buffer;
+    this.writePosition = writePosition;
+  }
+
+  /** Create a new, empty segment file of the given size. */
+  static SpoolSegment create(Path directory, long sequence, int sizeBytes) throws IOException {
+    Path path = directory.resolve(fileName(sequence));
+    MappedByteBuffer buffer = map(path, sizeBytes);
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    return new SpoolSegment(sequence, path, buffer, FILE_HEADER_BYTES);
+  }
+
+  /**
+   * Open an existing segment file, passing each record that is still pending to the consumer, in
+   * the order they were written.
+   *
+   * @return the segment, or null if the file is not a spool segment.
+   */
+  static SpoolSegment open(Path path, long sequence, Consumer<Record> pendingRecords)
+      throws IOException {
+    long size = Files.size(path);
+    if (size < FILE_HEADER_BYTES || size > Integer.MAX_VALUE) {
+      return null;
+    }
+    MappedByteBuffer buffer = map(path, (int) size);
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      return null;
+    }
+    SpoolSegment segment = new SpoolSegment(sequence, path, buffer, FILE_HEADER_BYTES);
+    segment.scan(pendingRecords);
+    return segment;
+  }
+
+  static String fileName(long sequence) {
+    return String.format("%020d%s", sequence, FILE_SUFFIX);
+  }
+
+  private static MappedByteBuffer map(Path path, int sizeBytes) throws IOException {
+    // The mapping stays valid after the file is closed.
+    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+      file.setLength(sizeBytes);
+      return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+    }
+  }
+
+  private void scan(Consumer<Record> pendingRecords) {
+    int position = FILE_HEADER_BYTES;
+    while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || position + RECORD_HEADER_BYTES + length > buffer.capacity()) {
+        break;
+      }
+      Record record =
+          new Record(
+              this,
+              position,
+              length,
+              buffer.get(position + 5),
+              buffer.get(position + 6),
+              buffer.getLong(position + 8));
+      if (buffer.get(position + STATE_OFFSET) == STATE_PENDING) {
+        if (checksum(position + RECORD_HEADER_BYTES, length) != buffer.getInt(position + 16)) {
+          break;
+        }
+        pendingRecords.accept(record);
+        this.pendingRecords++;
+      }
+      position += RECORD_HEADER_BYTES + length;
+    }
+    writePosition = position;
+  }
+
+  /** @return true if a record with a payload of this size fits in the remaining space. */
+  boolean hasRoomFor(int payloadLength) {
+    return writePosition + RECORD_HEADER_BYTES + payloadLength <= buffer.capacity();
+  }
+
+  /** @return The maximum payload that fits in an empty segment of the given size. */
+  static int maxPayloadBytes(int segmentBytes) {
+    return segmentBytes - FILE_HEADER_BYTES - RECORD_HEADER_BYTES;
+  }
+
+  Record append(byte telemetryType, byte encoding, long createdAtMillis, byte[] payload) {
+    int position = writePosition;
+    ByteBuffer target = buffer.duplicate();
+    target.position(position + STATE_OFFSET);
+    target.put(STATE_PENDING);
+    target.put(telemetryType);
+    target.put(encoding);
+    target.put((byte) 0);
+    target.putLong(createdAtMillis);
+    target.putInt(crc(payload));
+    target.put(payload);
+    buffer.putInt(position, payload.length);
+
+    writePosition = position + RECORD_HEADER_BYTES + payload.length;
+    pendingRecords++;
+    return new Record(this, position, payload.length, telemetryType, encoding, createdAtMillis);
+  }
+
+  byte[] read(Record record) {
+    byte[] payload = new byte[record.length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(record.position + RECORD_HEADER_BYTES);
+    source.get(payload);
+    return payload;
+  }
+
+  /** Mark a record as done, so that it is not replayed again after a restart. */
+  void markDone(Record record) {
+    buffer.put(record.position + STATE_OFFSET, STATE_DONE);
+    pendingRecords--;
+  }
+
+  int getPendingRecords() {
+    return pendingRecords;
+  }
+
+  long getSequence() {
+    return sequence;
+  }
+
+  int getSizeBytes() {
+    return buffer.capacity();
+  }
+
+  boolean isDeleted() {
+    return deleted;
+  }
+
+  void flush() {
+    if (!deleted) {
+      buffer.force();
+    }
+  }
+
+  void delete() throws IOException {
+    deleted = true;
+    Files.deleteIfExists(path);
+  }
+
+  private int checksum(int position, int length) {
+    CRC32 crc = new CRC32();
+    ByteBuffer source = buffer.duplicate();
+    source.position(position);
+    source.limit(position + length);
+    crc.update(source);
+    return (int) crc.getValue();
+  }
+
+  private static int crc(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    return (int) crc.getValue();
+  }
+}
@@ -15,10 +15,20 @@ import com.newrelic.telemetry.metrics.MetricBatch;
 import com.newrelic.telemetry.metrics.MetricBatchSender;
 import com.newrelic.telemetry.spans.SpanBatch;
 import com.newrelic.telemetry.spans.SpanBatchSender;
-import java.util.List;
+import com.newrelic.telemetry.transport.CompressedPayload;
+import com.newrelic.telemetry.util.Utils;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,18 +37,47 @@ import org.slf4j.LoggerFactory;
  * This class should be the go-to spot for sending telemetry to New Relic. It includes the canonical
  * implementation of retry-logic that we recommend being used when interacting with the ingest APIs.
  *
- * <p>Note: This class creates a single threaded scheduled executor on which all sending happens. Be
- * sure to call {@link #shutdown()} if you don't want this background thread to keep the VM from
- * exiting.
+ * <p>Each telemetry type is sent from its own pool of background threads, so a slow round-trip for
+ * one batch does not hold up the others. The number of requests in flight at once is bounded per
+ * telemetry type (see {@link #TelemetryClient(MetricBatchSender, SpanBatchSender, EventBatchSender,
+ * int)}). Retries are scheduled on a separate timer thread, and are sent within the same bound.
+ *
+ * <p>Batches waiting to be sent or retried are held in memory, up to the limits set by a {@link
+ * Backpressure}. Beyond that, data is dropped according to its {@link OverflowPolicy}, and counted
+ * in {@link #getDropCounters()}.
+ *
+ * <p>If the client is given a {@link DiskSpool}, batches that overflow the budget or run out of
+ * retries are written to it rather than lost, and are replayed once the ingest APIs accept data
+ * again.
+ *
+ * <p>Note: Be sure to call {@link #shutdown()} if you don't want these background threads to keep
+ * the VM from exiting.
  */
 public class TelemetryClient {
 
   private static final Logger LOG = LoggerFactory.getLogger(TelemetryClient.class);
 
+  /** The default maximum number of concurrent in-flight requests, per telemetry type. */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+  // Batches waiting to be compressed and written to the spool hold memory, so they are bounded.
+  private static final int MAX_BATCHES_AWAITING_SPOOL = 64;
+
   private final EventBatchSender eventBatchSender;
   private final MetricBatchSender metricBatchSender;
   private final SpanBatchSender spanBatchSender;
-  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final ExecutorService metricExecutor;
+  private final ExecutorService spanExecutor;
+  private final ExecutorService eventExecutor;
+  private final ScheduledExecutorService retryTimer =
+      Executors.newSingleThreadScheduledExecutor(namedThreadFactory("retry-timer"));
+  private final DropCounters dropCounters = new DropCounters();
+  private final DiskSpool spool;
+  private final ExecutorService spoolExecutor;
+  private final AtomicBoolean replayQueued = new AtomicBoolean(false);
+  private final SendChannel metricChannel;
+  private final SendChannel spanChannel;
+  private final SendChannel eventChannel;
 
   /**
    * Create a new TelemetryClient instance, with three senders. Note that if you don't intend to
@@ -52,9 +91,123 @@ public class TelemetryClient {
       MetricBatchSender metricBatchSender,
       SpanBatchSender spanBatchSender,
       EventBatchSender eventBatchSender) {
+    this(metricBatchSender, spanBatchSender, eventBatchSender, DEFAULT_MAX_CONCURRENT_REQUESTS);
+  }
+
+  /**
+   * Create a new TelemetryClient instance, with three senders and a bound on the number of
+   * concurrent requests. Note that if you don't intend to send one of the telemetry types, you can
+   * pass in a null value for that sender.
+   *
+   * @param metricBatchSender The sender for dimensional metrics.
+   * @param spanBatchSender The sender for distributed tracing spans.
+   * @param eventBatchSender The sender for custom events
+   * @param maxConcurrentRequests The maximum number of requests in flight at once, for each
+   *     telemetry type. Batches sent while this many requests are in flight are queued.
+   */
+  public TelemetryClient(
+      MetricBatchSender metricBatchSender,
+      SpanBatchSender spanBatchSender,
+      EventBatchSender eventBatchSender,
+      int maxConcurrentRequests) {
+    this(
+        metricBatchSender,
+        spanBatchSender,
+        eventBatchSender,
+        maxConcurrentRequests,
+        Backpressure.defaultBackpressure());
+  }
+
+  /**
+   * Create a new TelemetryClient instance, with three senders, a bound on the number of concurrent
+   * requests and limits on how much data may be waiting to be sent. Note that if you don't intend
+   * to send one of the telemetry types, you can pass in a null value for that sender.
+   *
+   * @param metricBatchSender The sender for dimensional metrics.
+   * @param spanBatchSender The sender for distributed tracing spans.
+   * @param eventBatchSender The sender for custom events
+   * @param maxConcurrentRequests The maximum number of requests in flight at once, for each
+   *     telemetry type. Batches sent while this many requests are in flight are queued.
+   * @param backpressure Limits on the batches queued or awaiting retry, for each telemetry type.
+   */
+  public TelemetryClient(
+      MetricBatchSender metricBatchSender,
+      SpanBatchSender spanBatchSender,
+      EventBatchSender eventBatchSender,
+      int maxConcurrentRequests,
+      Backpressure backpressure) {
+    this(
+        metricBatchSender,
+        spanBatchSender,
+        eventBatchSender,
+        maxConcurrentRequests,
+        backpressure,
+        null);
+  }
+
+  /**
+   * Create a new TelemetryClient instance, with three senders, a bound on the number of concurrent
+   * requests, limits on how much data may be waiting to be sent, and a spool for the data that
+   * can't be sent. Note that if you don't intend to send one of the telemetry types, you can pass
+   * in a null value for that sender.
+   *
+   * @param metricBatchSender The sender for dimensional metrics.
+   * @param spanBatchSender The sender for distributed tracing spans.
+   * @param eventBatchSender The sender for custom events
+   * @param maxConcurrentRequests The maximum number of requests in flight at once, for each
+   *     telemetry type. Batches sent while this many requests are in flight are queued.
+   * @param backpressure Limits on the batches queued or awaiting retry, for each telemetry type.
+   * @param spool Where batches that overflow the backpressure limits or run out of retries are
+   *     stored for later replay, or null to drop them. The client does not close the spool.
+   */
+  public TelemetryClient(
+      MetricBatchSender metricBatchSender,
+      SpanBatchSender spanBatchSender,
+      EventBatchSender eventBatchSender,
+      int maxConcurrentRequests,
+      Backpressure backpressure,
+      DiskSpool spool) {
+    if (maxConcurrentRequests < 1) {
+      throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+    }
+    Utils.verifyNonNull(backpressure);
     this.metricBatchSender = metricBatchSender;
     this.spanBatchSender = spanBatchSender;
     this.eventBatchSender = eventBatchSender;
+    this.metricExecutor = newSenderExecutor("metric", maxConcurrentRequests);
+    this.spanExecutor = newSenderExecutor("span", maxConcurrentRequests);
+    this.eventExecutor = newSenderExecutor("event", maxConcurrentRequests);
+    this.spool = spool;
+    this.spoolExecutor = spool == null ? null : newSpoolExecutor();
+    this.metricChannel =
+        new SendChannel(
+            DiskSpool.TelemetryType.METRIC,
+            metricBatchSender != null,
+            (b) -> metricBatchSender.compress((MetricBatch) b),
+            (p) -> metricBatchSender.sendPayload(p),
+            metricExecutor,
+            backpressure);
+    this.spanChannel =
+        new SendChannel(
+            DiskSpool.TelemetryType.SPAN,
+            spanBatchSender != null,
+            (b) -> spanBatchSender.compress((SpanBatch) b),
+            (p) -> spanBatchSender.sendPayload(p),
+            spanExecutor,
+            backpressure);
+    this.eventChannel =
+        new SendChannel(
+            DiskSpool.TelemetryType.EVENT,
+            eventBatchSender != null,
+            (b) -> eventBatchSender.compress((EventBatch) b),
+            (p) -> eventBatchSender.sendPayload(p),
+            eventExecutor,
+            backpressure);
+    if (spool != null) {
+      // Also picks up anything left in the spool by a previous process.
+      retryTimer.scheduleWithFixedDelay(
+          this::replaySpoolPeriodically, 0, spool.getReplayIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
   }
 
   /**
@@ -71,8 +224,36 @@ public class TelemetryClient {
     this(metricBatchSender, spanBatchSender, null);
   }
 
-  private interface BatchSender {
-    void sendBatch(TelemetryBatch<?> batch) throws ResponseException;
+  private interface BatchCompressor {
+    CompressedPayload compress(TelemetryBatch<?> batch) throws ResponseException;
+  }
+
+  private interface PayloadSender {
+    void sendPayload(CompressedPayload payload) throws ResponseException;
+  }
+
+  private static ExecutorService newSenderExecutor(String telemetryType, int threads) {
+    // Threads are started lazily, so no threads are created for telemetry types that aren't used.
+    return Executors.newFixedThreadPool(threads, namedThreadFactory(telemetryType + "-sender"));
+  }
+
+  private static ExecutorService newSpoolExecutor() {
+    return new ThreadPoolExecutor(
+        1,
+        1,
+        0,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(MAX_BATCHES_AWAITING_SPOOL),
+        namedThreadFactory("spool"));
+  }
+
+  private static ThreadFactory namedThreadFactory(String purpose) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable);
+      thread.setName("NewRelicTelemetryClient-" + purpose + "-" + threadCount.incrementAndGet());
+      return thread;
+    };
   }
 
   /**
@@ -80,8 +261,7 @@ public class TelemetryClient {
    * asynchronously, so currently there will be no feedback to the caller outside of the logs.
    */
   public void sendBatch(MetricBatch batch) {
-    scheduleBatchSend(
-        (b) -> metricBatchSender.sendBatch((MetricBatch) b), batch, 0, TimeUnit.SECONDS);
+    metricChannel.submit(batch);
   }
 
   /**
@@ -89,7 +269,7 @@ public class TelemetryClient {
    * asynchronously, so currently there will be no feedback to the caller outside of the logs.
    */
   public void sendBatch(SpanBatch batch) {
-    scheduleBatchSend((b) -> spanBatchSender.sendBatch((SpanBatch) b), batch, 0, TimeUnit.SECONDS);
+    spanChannel.submit(batch);
   }
 
   /**
@@ -97,81 +277,284 @@ public class TelemetryClient {
    * asynchronously, so currently there will be no feedback to the caller outside of the logs.
    */
   public void sendBatch(EventBatch batch) {
-    scheduleBatchSend(
-        (b) -> eventBatchSender.sendBatch((EventBatch) b), batch, 0, TimeUnit.SECONDS);
+    eventChannel.submit(batch);
   }
 
-  private void scheduleBatchSend(
-      BatchSender sender,
-      TelemetryBatch<? extends Telemetry> batch,
-      long waitTime,
-      TimeUnit timeUnit) {
-    scheduleBatchSend(sender, batch, waitTime, timeUnit, Backoff.defaultBackoff());
+  /** @return Counts of the telemetry this client has dropped instead of delivering. */
+  public DropCounters getDropCounters() {
+    return dropCounters;
   }
 
-  private void scheduleBatchSend(
-      BatchSender sender,
-      TelemetryBatch<? extends Telemetry> batch,
-      long waitTime,
-      TimeUnit timeUnit,
-      Backoff backoff) {
-    executor.schedule(() -> sendWithErrorHandling(sender, batch, backoff), waitTime, timeUnit);
+  private void replaySpoolPeriodically() {
+    spool.evictExpired();
+    requestReplay();
   }
 
-  private void sendWithErrorHandling(
-      BatchSender batchSender, TelemetryBatch<? extends Telemetry> batch, Backoff backoff) {
+  private void requestReplay() {
+    if (spool == null || spool.isEmpty() || !replayQueued.compareAndSet(false, true)) {
+      return;
+    }
     try {
-      batchSender.sendBatch(batch);
-      LOG.debug("Telemetry batch sent");
-    } catch (RetryWithBackoffException e) {
-      backoff(batchSender, batch, backoff);
-    } catch (RetryWithRequestedWaitException e) {
-      retry(batchSender, batch, e);
-    } catch (RetryWithSplitException e) {
-      splitAndSend(batchSender, batch, e);
-    } catch (ResponseException e) {
-      LOG.error(
-          "Received a fatal exception from the New Relic API. Aborting metric batch send.", e);
-    } catch (Exception e) {
-      LOG.error("Unexpected failure when sending data.", e);
+      spoolExecutor.execute(this::replaySpool);
+    } catch (RejectedExecutionException e) {
+      replayQueued.set(false);
     }
   }
 
-  private <T extends Telemetry> void splitAndSend(
-      BatchSender sender, TelemetryBatch<T> batch, RetryWithSplitException e) {
-    LOG.info("Metric batch size too large, splitting and retrying.", e);
-    List<TelemetryBatch<T>> splitBatches = batch.split();
-    splitBatches.forEach(
-        metricBatch -> scheduleBatchSend(sender, metricBatch, 0, TimeUnit.SECONDS));
+  private void replaySpool() {
+    try {
+      DiskSpool.SpooledPayload spooled;
+      while ((spooled = spool.peek()) != null) {
+        SendChannel channel = channelFor(spooled.getTelemetryType());
+        if (!channel.enabled) {
+          LOG.warn(
+              "No sender is configured for spooled {} data. Dropping it.",
+              spooled.getTelemetryType());
+          spool.remove(spooled, false);
+          continue;
+        }
+        try {
+          channel.replay(spooled.getPayload());
+          spool.remove(spooled, true);
+        } catch (RetryWithBackoffException | RetryWithRequestedWaitException e) {
+          LOG.debug("New Relic is still not accepting data. Spooled data will be replayed later.");
+          return;
+        } catch (ResponseException e) {
+          LOG.warn("Spooled data was rejected by the New Relic API. Dropping it.", e);
+          spool.remove(spooled, false);
+        } catch (RejectedExecutionException e) {
+          LOG.debug("TelemetryClient is shut down. Spooled data will be replayed later.");
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      LOG.error("Unexpected failure when replaying spooled data.", e);
+    } finally {
+      replayQueued.set(false);
+    }
   }
 
-  private void retry(
-      BatchSender sender,
-      TelemetryBatch<? extends Telemetry> batch,
-      RetryWithRequestedWaitException e) {
-    LOG.info(
-        "Metric batch sending failed. Retrying failed batch after {} {}",
-        e.getWaitTime(),
-        e.getTimeUnit());
-    scheduleBatchSend(sender, batch, e.getWaitTime(), e.getTimeUnit());
+  private SendChannel channelFor(DiskSpool.TelemetryType telemetryType) {
+    switch (telemetryType) {
+      case METRIC:
+        return metricChannel;
+      case SPAN:
+        return spanChannel;
+      case EVENT:
+      default:
+        return eventChannel;
+    }
   }
 
-  private void backoff(
-      BatchSender sender, TelemetryBatch<? extends Telemetry> batch, Backoff backoff) {
+  /** Everything needed to send one type of telemetry: the sender, its threads and its backlog. */
+  private final class SendChannel {
+    private final DiskSpool.TelemetryType telemetryType;
+    private final boolean enabled;
+    private final BatchCompressor compressor;
+    private final PayloadSender payloadSender;
+    private final ExecutorService executor;
+    private final PendingBatchQueue queue;
 
-    long newWaitTime = backoff.nextWaitMs();
-    if (newWaitTime == -1) {
-      LOG.error("Max retries exceeded.  Dropping {} pieces of telemetry data!", batch.size());
-      return;
+    private SendChannel(
+        DiskSpool.TelemetryType telemetryType,
+        boolean enabled,
+        BatchCompressor compressor,
+        PayloadSender payloadSender,
+        ExecutorService executor,
+        Backpressure backpressure) {
+      this.telemetryType = telemetryType;
+      this.enabled = enabled;
+      this.compressor = compressor;
+      this.payloadSender = payloadSender;
+      this.executor = executor;
+      this.queue = new PendingBatchQueue(backpressure, dropCounters, batch -> spool(batch, null));
+    }
+
+    private void submit(TelemetryBatch<? extends Telemetry> batch) {
+      if (batch == null || batch.isEmpty()) {
+        LOG.debug("Skipped sending of an empty telemetry batch.");
+        return;
+      }
+      if (queue.offer(batch)) {
+        executor.execute(this::sendNext);
+      }
+    }
+
+    /**
+     * Send a spooled payload on this channel's threads, so that it counts towards the same bound on
+     * requests in flight as the batches being sent, and wait for the response.
+     */
+    private void replay(CompressedPayload payload) throws ResponseException, InterruptedException {
+      Future<?> sent =
+          executor.submit(
+              () -> {
+                payloadSender.sendPayload(payload);
+                return null;
+              });
+      try {
+        sent.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof ResponseException) {
+          throw (ResponseException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+
+    private void sendNext() {
+      PendingBatchQueue.Entry entry = queue.nextReady();
+      if (entry != null) {
+        sendWithErrorHandling(entry);
+      }
+    }
+
+    private void sendWithErrorHandling(PendingBatchQueue.Entry entry) {
+      try {
+        // Retries resend the same bytes, rather than marshalling and compressing the batch again.
+        if (entry.getPayload() == null) {
+          entry.setPayload(compressor.compress(entry.getBatch()));
+        }
+        payloadSender.sendPayload(entry.getPayload());
+        queue.sent(entry);
+        LOG.debug("Telemetry batch sent");
+        requestReplay();
+      } catch (RetryWithBackoffException e) {
+        backoff(entry);
+      } catch (RetryWithRequestedWaitException e) {
+        retry(entry, e);
+      } catch (RetryWithSplitException e) {
+        splitAndSend(entry, e);
+      } catch (ResponseException e) {
+        LOG.error(
+            "Received a fatal exception from the New Relic API. Aborting metric batch send.", e);
+        queue.failed(entry);
+      } catch (Exception e) {
+        LOG.error("Unexpected failure when sending data.", e);
+        queue.failed(entry);
+      }
+    }
+
+    private void splitAndSend(PendingBatchQueue.Entry entry, RetryWithSplitException e) {
+      if (entry.getBatch().size() <= 1) {
+        LOG.error("A single piece of telemetry is too large to send. Dropping it.", e);
+        queue.failed(entry);
+        return;
+      }
+      LOG.info("Metric batch size too large, splitting and retrying.", e);
+      int parts = queue.replaceWithSplit(entry, entry.getBatch().split());
+      for (int i = 0; i < parts; i++) {
+        executor.execute(this::sendNext);
+      }
+    }
+
+    private void retry(PendingBatchQueue.Entry entry, RetryWithRequestedWaitException e) {
+      LOG.info(
+          "Metric batch sending failed. Retrying failed batch after {} {}",
+          e.getWaitTime(),
+          e.getTimeUnit());
+      retryAfter(entry, e.getWaitTime(), e.getTimeUnit());
+    }
+
+    private void backoff(PendingBatchQueue.Entry entry) {
+      long newWaitTime = entry.getBackoff().nextWaitMs();
+      if (newWaitTime == -1) {
+        TelemetryBatch<? extends Telemetry> batch = entry.getBatch();
+        CompressedPayload payload = entry.getPayload();
+        if (spool == null) {
+          LOG.error("Max retries exceeded.  Dropping {} pieces of telemetry data!", batch.size());
+        } else {
+          LOG.warn("Max retries exceeded.  Spooling {} pieces of telemetry data.", batch.size());
+        }
+        queue.failed(entry);
+        spool(batch, payload);
+        return;
+      }
+      LOG.info(
+          "Metric batch sending failed. Backing off {} {}", newWaitTime, TimeUnit.MILLISECONDS);
+      retryAfter(entry, newWaitTime, TimeUnit.MILLISECONDS);
+    }
+
+    private void retryAfter(PendingBatchQueue.Entry entry, long waitTime, TimeUnit timeUnit) {
+      queue.awaitRetry(entry);
+      // The timer only waits; the send itself happens on this channel's executor, so that retries
+      // count towards the in-flight bound and a slow retry can't stall the timer.
+      try {
+        retryTimer.schedule(() -> resubmit(entry), waitTime, timeUnit);
+      } catch (RejectedExecutionException e) {
+        dropOnShutdown(entry);
+      }
+    }
+
+    private void resubmit(PendingBatchQueue.Entry entry) {
+      if (!queue.retryNow(entry)) {
+        // dropped to make room for newer data while it was waiting
+        return;
+      }
+      try {
+        executor.execute(this::sendNext);
+      } catch (RejectedExecutionException e) {
+        dropOnShutdown(entry);
+      }
+    }
+
+    /**
+     * Write a batch that can't be sent now to the spool in the background, compressing it first if
+     * it hasn't already been.
+     */
+    private void spool(TelemetryBatch<? extends Telemetry> batch, CompressedPayload payload) {
+      if (spool == null) {
+        return;
+      }
+      try {
+        spoolExecutor.execute(() -> spoolNow(batch, payload));
+      } catch (RejectedExecutionException e) {
+        LOG.warn(
+            "Too many batches are waiting to be spooled. Dropping {} pieces of telemetry data.",
+            batch.size());
+      }
+    }
+
+    private void spoolNow(TelemetryBatch<? extends Telemetry> batch, CompressedPayload payload) {
+      try {
+        CompressedPayload compressed = payload == null ? compressor.compress(batch) : payload;
+        if (spool.append(telemetryType, compressed)) {
+          LOG.debug("Spooled {} pieces of telemetry data for later replay.", batch.size());
+        }
+      } catch (RetryWithSplitException e) {
+        if (batch.size() > 1) {
+          batch.split().forEach(part -> spoolNow(part, null));
+        } else {
+          LOG.error("A single piece of telemetry is too large to spool. Dropping it.");
+        }
+      } catch (ResponseException e) {
+        LOG.error("Unable to serialize telemetry for the spool. Dropping it.", e);
+      }
+    }
+
+    private void dropOnShutdown(PendingBatchQueue.Entry entry) {
+      LOG.warn(
+          "TelemetryClient is shut down. Dropping {} pieces of telemetry data awaiting retry.",
+          entry.getSize());
+      queue.failed(entry);
     }
-    LOG.info("Metric batch sending failed. Backing off {} {}", newWaitTime, TimeUnit.MILLISECONDS);
-    scheduleBatchSend(sender, batch, newWaitTime, TimeUnit.MILLISECONDS, backoff);
   }
 
-  /** Cleanly shuts down the background Executor thread. */
+  /** Cleanly shuts down the background Executor threads. */
   public void shutdown() {
-    LOG.info("Shutting down the TelemetryClient background Executor");
-    executor.shutdown();
+    LOG.info("Shutting down the TelemetryClient background Executors");
+    retryTimer.shutdown();
+    metricExecutor.shutdown();
+    spanExecutor.shutdown();
+    eventExecutor.shutdown();
+    if (spoolExecutor != null) {
+      spoolExecutor.shutdown();
+    }
   }
 
   /**
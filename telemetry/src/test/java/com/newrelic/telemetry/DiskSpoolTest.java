@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.transport.CompressedPayload;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DiskSpoolTest {
+
+  private Path directory;
+  private final AtomicLong now = new AtomicLong(1_000_000);
+
+  @BeforeEach
+  void setup() throws IOException {
+    directory = Files.createTempDirectory("spool");
+  }
+
+  @AfterEach
+  void cleanup() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Test
+  void testReplayInOrder() throws Exception {
+    DiskSpool spool = newSpool().build();
+
+    assertTrue(spool.append(DiskSpool.TelemetryType.METRIC, payload("one", "gzip")));
+    assertTrue(spool.append(DiskSpool.TelemetryType.EVENT, payload("two", null)));
+
+    DiskSpool.SpooledPayload first = spool.peek();
+    assertEquals(DiskSpool.TelemetryType.METRIC, first.getTelemetryType());
+    assertEquals("gzip", first.getPayload().getContentEncoding());
+    assertArrayEquals(bytes("one"), first.getPayload().getBytes());
+    spool.remove(first, true);
+
+    DiskSpool.SpooledPayload second = spool.peek();
+    assertEquals(DiskSpool.TelemetryType.EVENT, second.getTelemetryType());
+    assertNull(second.getPayload().getContentEncoding());
+    spool.remove(second, true);
+
+    assertNull(spool.peek());
+    assertEquals(2, spool.getReplayedPayloads());
+  }
+
+  @Test
+  void testRecoversAfterRestart() throws Exception {
+    DiskSpool spool = newSpool().build();
+    spool.append(DiskSpool.TelemetryType.SPAN, payload("sent", "gzip"));
+    spool.append(DiskSpool.TelemetryType.SPAN, payload("not sent", "gzip"));
+    spool.remove(spool.peek(), true);
+    spool.close();
+
+    DiskSpool reopened = newSpool().build();
+
+    assertEquals(1, reopened.getPendingPayloads());
+    DiskSpool.SpooledPayload spooled = reopened.peek();
+    assertEquals(DiskSpool.TelemetryType.SPAN, spooled.getTelemetryType());
+    assertArrayEquals(bytes("not sent"), spooled.getPayload().getBytes());
+  }
+
+  @Test
+  void testTornRecordIsIgnored() throws Exception {
+    DiskSpool spool = newSpool().build();
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("good", "gzip"));
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("torn", "gzip"));
+    spool.close();
+
+    // corrupt the last byte of the second record's payload
+    Path segment = directory.resolve(SpoolSegment.fileName(0));
+    int position = 8 + 2 * SpoolSegment.RECORD_HEADER_BYTES + 4 + 3;
+    try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+      file.seek(position);
+      file.write('X');
+    }
+
+    DiskSpool reopened = newSpool().build();
+    assertEquals(1, reopened.getPendingPayloads());
+    assertArrayEquals(bytes("good"), reopened.peek().getPayload().getBytes());
+  }
+
+  @Test
+  void testOldestSegmentEvictedWhenFull() throws Exception {
+    DiskSpool spool = newSpool().segmentBytes(64).maxBytes(128).build();
+
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("first of many", "gzip"));
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("second of many", "gzip"));
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("third of many", "gzip"));
+
+    assertEquals(2, spool.getPendingPayloads());
+    assertEquals(1, spool.getEvictedPayloads());
+    assertEquals(128, spool.getBytesOnDisk());
+    assertArrayEquals(bytes("second of many"), spool.peek().getPayload().getBytes());
+  }
+
+  @Test
+  void testExpiredPayloadsEvicted() throws Exception {
+    DiskSpool spool = newSpool().maxAge(1, TimeUnit.MINUTES).build();
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("old", "gzip"));
+    now.addAndGet(TimeUnit.SECONDS.toMillis(30));
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("new", "gzip"));
+    now.addAndGet(TimeUnit.SECONDS.toMillis(45));
+
+    assertArrayEquals(bytes("new"), spool.peek().getPayload().getBytes());
+    assertEquals(1, spool.getEvictedPayloads());
+  }
+
+  @Test
+  void testFinishedSegmentsAreDeleted() throws Exception {
+    DiskSpool spool = newSpool().segmentBytes(64).build();
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("first of many", "gzip"));
+    spool.append(DiskSpool.TelemetryType.METRIC, payload("second of many", "gzip"));
+    assertTrue(Files.exists(directory.resolve(SpoolSegment.fileName(0))));
+
+    spool.remove(spool.peek(), true);
+
+    assertFalse(Files.exists(directory.resolve(SpoolSegment.fileName(0))));
+    assertEquals(64, spool.getBytesOnDisk());
+  }
+
+  @Test
+  void testOversizePayloadRejected() throws Exception {
+    DiskSpool spool = newSpool().segmentBytes(64).build();
+
+    assertFalse(
+        spool.append(DiskSpool.TelemetryType.METRIC, new CompressedPayload(new byte[64], "gzip")));
+    assertTrue(spool.isEmpty());
+  }
+
+  private DiskSpool.Builder newSpool() {
+    return DiskSpool.builder(directory).clock(now::get);
+  }
+
+  private static CompressedPayload payload(String content, String contentEncoding) {
+    return new CompressedPayload(bytes(content), contentEncoding);
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.metrics.Count;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PendingBatchQueueTest {
+
+  private final DropCounters dropCounters = new DropCounters();
+
+  @Test
+  void testDropNewest() {
+    PendingBatchQueue queue = newQueue(OverflowPolicy.DROP_NEWEST, 2);
+    MetricBatch first = makeBatch(1);
+
+    assertTrue(queue.offer(first));
+    assertTrue(queue.offer(makeBatch(1)));
+    assertFalse(queue.offer(makeBatch(3)));
+
+    assertEquals(2, queue.getPendingBatches());
+    assertSame(first, queue.nextReady().getBatch());
+    assertEquals(1, dropCounters.getOverflowBatches());
+    assertEquals(3, dropCounters.getOverflowTelemetry());
+  }
+
+  @Test
+  void testDropOldest() {
+    PendingBatchQueue queue = newQueue(OverflowPolicy.DROP_OLDEST, 2);
+    MetricBatch second = makeBatch(1);
+    MetricBatch third = makeBatch(1);
+
+    assertTrue(queue.offer(makeBatch(2)));
+    assertTrue(queue.offer(second));
+    assertTrue(queue.offer(third));
+
+    assertEquals(2, queue.getPendingBatches());
+    assertEquals(2, queue.getPendingTelemetry());
+    assertSame(second, queue.nextReady().getBatch());
+    assertSame(third, queue.nextReady().getBatch());
+    assertNull(queue.nextReady());
+    assertEquals(1, dropCounters.getOverflowBatches());
+    assertEquals(2, dropCounters.getOverflowTelemetry());
+  }
+
+  @Test
+  void testDropOldestNeverDropsInFlightBatches() {
+    PendingBatchQueue queue = newQueue(OverflowPolicy.DROP_OLDEST, 1);
+
+    assertTrue(queue.offer(makeBatch(1)));
+    queue.nextReady();
+    assertFalse(queue.offer(makeBatch(1)));
+
+    assertNull(queue.nextReady());
+    assertEquals(1, queue.getPendingBatches());
+    assertEquals(1, dropCounters.getOverflowBatches());
+  }
+
+  @Test
+  void testDropOldestDropsBatchesAwaitingRetry() {
+    PendingBatchQueue queue = newQueue(OverflowPolicy.DROP_OLDEST, 1);
+
+    assertTrue(queue.offer(makeBatch(1)));
+    PendingBatchQueue.Entry retrying = queue.nextReady();
+    queue.awaitRetry(retrying);
+    assertTrue(queue.offer(makeBatch(1)));
+
+    assertFalse(queue.retryNow(retrying));
+    assertEquals(1, queue.getPendingBatches());
+  }
+
+  @Test
+  void testBlockTimesOut() {
+    PendingBatchQueue queue =
+        new PendingBatchQueue(
+            Backpressure.builder()
+                .maxPendingBatches(1)
+                .overflowPolicy(OverflowPolicy.BLOCK)
+                .blockTimeout(10, TimeUnit.MILLISECONDS)
+                .build(),
+            dropCounters);
+
+    assertTrue(queue.offer(makeBatch(1)));
+    assertFalse(queue.offer(makeBatch(1)));
+    assertEquals(1, dropCounters.getOverflowBatches());
+  }
+
+  @Test
+  void testBlockWaitsForSpace() throws Exception {
+    PendingBatchQueue queue =
+        new PendingBatchQueue(
+            Backpressure.builder()
+                .maxPendingBatches(1)
+                .overflowPolicy(OverflowPolicy.BLOCK)
+                .blockTimeout(5, TimeUnit.SECONDS)
+                .build(),
+            dropCounters);
+    assertTrue(queue.offer(makeBatch(1)));
+    PendingBatchQueue.Entry inFlight = queue.nextReady();
+
+    Thread sender =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException ignored) {
+              }
+              queue.sent(inFlight);
+            });
+    sender.start();
+
+    assertTrue(queue.offer(makeBatch(1)));
+    sender.join();
+    assertEquals(1, queue.getPendingBatches());
+    assertEquals(0, dropCounters.getOverflowBatches());
+  }
+
+  @Test
+  void testTelemetryBudget() {
+    PendingBatchQueue queue =
+        new PendingBatchQueue(
+            Backpressure.builder()
+                .maxPendingTelemetry(5)
+                .overflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .build(),
+            dropCounters);
+
+    assertTrue(queue.offer(makeBatch(3)));
+    assertFalse(queue.offer(makeBatch(3)));
+    assertTrue(queue.offer(makeBatch(2)));
+    assertEquals(5, queue.getPendingTelemetry());
+  }
+
+  @Test
+  void testOversizeBatchAcceptedWhenNothingPending() {
+    PendingBatchQueue queue =
+        new PendingBatchQueue(
+            Backpressure.builder()
+                .maxPendingTelemetry(5)
+                .overflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .build(),
+            dropCounters);
+
+    assertTrue(queue.offer(makeBatch(10)));
+    assertEquals(10, queue.getPendingTelemetry());
+  }
+
+  @Test
+  void testSplitKeepsTelemetryAccounting() {
+    PendingBatchQueue queue = newQueue(OverflowPolicy.DROP_NEWEST, 1);
+    assertTrue(queue.offer(makeBatch(3)));
+    PendingBatchQueue.Entry entry = queue.nextReady();
+
+    assertEquals(2, queue.replaceWithSplit(entry, entry.getBatch().split()));
+
+    assertEquals(2, queue.getPendingBatches());
+    assertEquals(3, queue.getPendingTelemetry());
+    assertEquals(1, queue.nextReady().getBatch().size());
+    assertEquals(2, queue.nextReady().getBatch().size());
+  }
+
+  @Test
+  void testFailedBatchesAreCounted() {
+    PendingBatchQueue queue = newQueue(OverflowPolicy.DROP_NEWEST, 1);
+    assertTrue(queue.offer(makeBatch(4)));
+
+    queue.failed(queue.nextReady());
+
+    assertEquals(0, queue.getPendingBatches());
+    assertEquals(0, queue.getPendingTelemetry());
+    assertEquals(1, dropCounters.getFailedBatches());
+    assertEquals(4, dropCounters.getFailedTelemetry());
+  }
+
+  @Test
+  void testReleasedEntryKeepsItsSize() {
+    PendingBatchQueue queue = newQueue(OverflowPolicy.DROP_NEWEST, 1);
+    assertTrue(queue.offer(makeBatch(4)));
+    PendingBatchQueue.Entry entry = queue.nextReady();
+
+    queue.failed(entry);
+
+    assertNull(entry.getBatch());
+    assertEquals(4, entry.getSize());
+  }
+
+  private PendingBatchQueue newQueue(OverflowPolicy policy, int maxPendingBatches) {
+    return new PendingBatchQueue(
+        Backpressure.builder().maxPendingBatches(maxPendingBatches).overflowPolicy(policy).build(),
+        dropCounters);
+  }
+
+  private static MetricBatch makeBatch(int size) {
+    List<Metric> metrics = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      metrics.add(new Count("count", 1, 0, 1, new Attributes()));
+    }
+    return new MetricBatch(metrics, new Attributes());
+  }
+}
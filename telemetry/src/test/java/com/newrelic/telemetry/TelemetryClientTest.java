@@ -5,9 +5,12 @@
 package com.newrelic.telemetry;
 
 import static java.util.Collections.singleton;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.newrelic.telemetry.events.Event;
@@ -23,6 +26,7 @@ import com.newrelic.telemetry.metrics.MetricBatchSender;
 import com.newrelic.telemetry.spans.Span;
 import com.newrelic.telemetry.spans.SpanBatch;
 import com.newrelic.telemetry.spans.SpanBatchSender;
+import com.newrelic.telemetry.transport.CompressedPayload;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -30,6 +34,7 @@ import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.stubbing.Answer;
@@ -39,6 +44,7 @@ class TelemetryClientTest {
   private MetricBatch metricBatch;
   private SpanBatch spanBatch;
   private EventBatch eventBatch;
+  private final CompressedPayload payload = new CompressedPayload(new byte[] {1, 2, 3}, "gzip");
 
   @BeforeEach
   void setup() {
@@ -51,7 +57,8 @@ class TelemetryClientTest {
   void sendMetricsHappyPath() throws Exception {
     MetricBatchSender batchSender = mock(MetricBatchSender.class);
     CountDownLatch sendLatch = new CountDownLatch(1);
-    when(batchSender.sendBatch(metricBatch)).thenAnswer(countDown(sendLatch));
+    when(batchSender.compress(metricBatch)).thenReturn(payload);
+    when(batchSender.sendPayload(payload)).thenAnswer(countDown(sendLatch));
 
     TelemetryClient testClass = new TelemetryClient(batchSender, null, null);
 
@@ -64,7 +71,8 @@ class TelemetryClientTest {
   void sendSpansHappyPath() throws Exception {
     SpanBatchSender batchSender = mock(SpanBatchSender.class);
     CountDownLatch sendLatch = new CountDownLatch(1);
-    when(batchSender.sendBatch(spanBatch)).thenAnswer(countDown(sendLatch));
+    when(batchSender.compress(spanBatch)).thenReturn(payload);
+    when(batchSender.sendPayload(payload)).thenAnswer(countDown(sendLatch));
 
     TelemetryClient testClass = new TelemetryClient(null, batchSender, null);
 
@@ -77,7 +85,8 @@ class TelemetryClientTest {
   void sendEventsHappyPath() throws Exception {
     EventBatchSender batchSender = mock(EventBatchSender.class);
     CountDownLatch sendLatch = new CountDownLatch(1);
-    when(batchSender.sendBatch(eventBatch)).thenAnswer(countDown(sendLatch));
+    when(batchSender.compress(eventBatch)).thenReturn(payload);
+    when(batchSender.sendPayload(payload)).thenAnswer(countDown(sendLatch));
 
     TelemetryClient testClass = new TelemetryClient(null, null, batchSender);
 
@@ -95,7 +104,8 @@ class TelemetryClientTest {
         invocation -> {
           throw new RetryWithBackoffException();
         };
-    when(batchSender.sendBatch(metricBatch))
+    when(batchSender.compress(metricBatch)).thenReturn(payload);
+    when(batchSender.sendPayload(payload))
         .thenAnswer(requestRetry)
         .thenAnswer(requestRetry)
         .thenAnswer(requestRetry)
@@ -106,13 +116,17 @@ class TelemetryClientTest {
     testClass.sendBatch(metricBatch);
     boolean result = sendLatch.await(10, TimeUnit.SECONDS);
     assertTrue(result);
+    // the payload is compressed once, and reused by every retry
+    verify(batchSender, times(1)).compress(metricBatch);
+    verify(batchSender, times(4)).sendPayload(payload);
   }
 
   @Test
   void sendGeneratesRetryWithRequestedBackoff() throws Exception {
     MetricBatchSender batchSender = mock(MetricBatchSender.class);
     CountDownLatch sendLatch = new CountDownLatch(1);
-    when(batchSender.sendBatch(metricBatch))
+    when(batchSender.compress(metricBatch)).thenReturn(payload);
+    when(batchSender.sendPayload(payload))
         .thenAnswer(
             invocation -> {
               throw new RetryWithRequestedWaitException(15, TimeUnit.MILLISECONDS);
@@ -135,18 +149,19 @@ class TelemetryClientTest {
     AtomicBoolean batch1Seen = new AtomicBoolean(false);
     AtomicBoolean batch2Seen = new AtomicBoolean(false);
 
-    when(batchSender.sendBatch(isA(MetricBatch.class)))
+    when(batchSender.compress(isA(MetricBatch.class))).thenAnswer(payloadOfBatchSize());
+    when(batchSender.sendPayload(isA(CompressedPayload.class)))
         .thenAnswer(
             invocation -> {
-              MetricBatch batchParam = invocation.getArgument(0);
-              if (batchParam.size() == 3) {
+              CompressedPayload payloadParam = invocation.getArgument(0);
+              if (payloadParam.size() == 3) {
                 sendLatch.countDown();
                 throw new RetryWithSplitException();
               }
-              if (batchParam.size() == 1) { // first part of split batch
+              if (payloadParam.size() == 1) { // first part of split batch
                 batch1Seen.set(true);
               }
-              if (batchParam.size() == 2) { // second part of split batch
+              if (payloadParam.size() == 2) { // second part of split batch
                 batch2Seen.set(true);
               }
               sendLatch.countDown();
@@ -162,6 +177,73 @@ class TelemetryClientTest {
     assertTrue(batch2Seen.get());
   }
 
+  @Test
+  void sendsAreBoundedByMaxConcurrentRequests() throws Exception {
+    MetricBatchSender batchSender = mock(MetricBatchSender.class);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch allSent = new CountDownLatch(5);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    when(batchSender.compress(isA(MetricBatch.class))).thenReturn(payload);
+    when(batchSender.sendPayload(payload))
+        .thenAnswer(
+            invocation -> {
+              int current = inFlight.incrementAndGet();
+              maxInFlight.accumulateAndGet(current, Math::max);
+              release.await(3, TimeUnit.SECONDS);
+              inFlight.decrementAndGet();
+              allSent.countDown();
+              return null;
+            });
+
+    TelemetryClient testClass = new TelemetryClient(batchSender, null, null, 2);
+
+    for (int i = 0; i < 5; i++) {
+      testClass.sendBatch(makeBatch(singleton(makeMetric())));
+    }
+    // give the client a chance to (wrongly) start more than 2 sends
+    Thread.sleep(100);
+    assertEquals(2, inFlight.get());
+    release.countDown();
+
+    assertTrue(allSent.await(3, TimeUnit.SECONDS));
+    assertEquals(2, maxInFlight.get());
+    testClass.shutdown();
+  }
+
+  @Test
+  void overflowingBatchesAreDroppedAndCounted() throws Exception {
+    MetricBatchSender batchSender = mock(MetricBatchSender.class);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch sent = new CountDownLatch(2);
+    when(batchSender.compress(isA(MetricBatch.class))).thenReturn(payload);
+    when(batchSender.sendPayload(payload))
+        .thenAnswer(
+            invocation -> {
+              release.await(3, TimeUnit.SECONDS);
+              sent.countDown();
+              return null;
+            });
+    Backpressure backpressure =
+        Backpressure.builder()
+            .maxPendingBatches(2)
+            .overflowPolicy(OverflowPolicy.DROP_NEWEST)
+            .build();
+
+    TelemetryClient testClass = new TelemetryClient(batchSender, null, null, 1, backpressure);
+
+    for (int i = 0; i < 4; i++) {
+      testClass.sendBatch(makeBatch(singleton(makeMetric())));
+    }
+    assertEquals(2, testClass.getDropCounters().getOverflowBatches());
+    assertEquals(2, testClass.getDropCounters().getOverflowTelemetry());
+
+    release.countDown();
+    assertTrue(sent.await(3, TimeUnit.SECONDS));
+    testClass.shutdown();
+  }
+
   private Answer<Object> countDown(CountDownLatch latch) {
     return invocation -> {
       latch.countDown();
@@ -169,6 +251,13 @@ class TelemetryClientTest {
     };
   }
 
+  private Answer<CompressedPayload> payloadOfBatchSize() {
+    return invocation -> {
+      TelemetryBatch<?> batch = invocation.getArgument(0);
+      return new CompressedPayload(new byte[batch.size()], "gzip");
+    };
+  }
+
   private MetricBatch makeBatchOf3Metrics() {
     Metric metric1 = makeMetric();
     Metric metric2 = makeMetric();
@@ -6,6 +6,7 @@ plugins {
     java
     id("java-library")
     id("com.github.johnrengelman.shadow") version "5.2.0"
+    id("me.champeau.gradle.jmh") version "0.5.0"
 }
 
 apply(plugin = "maven-publish")
@@ -18,6 +19,7 @@ private object Versions {
     const val slf4j = "1.7.26"
     const val jsonassert = "1.5.0"
     const val gson = "2.8.6"
+    const val jmh = "1.23"
 }
 
 configure<JavaPluginConvention> {
@@ -39,6 +41,10 @@ dependencies {
     testImplementation("org.skyscreamer:jsonassert:${Versions.jsonassert}")
 }
 
+jmh {
+    jmhVersion = Versions.jmh
+}
+
 val javadocJar by tasks.creating(Jar::class) {
     from(tasks["javadoc"])
     archiveClassifier.set("javadoc")
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.json;
+
+import com.google.gson.stream.JsonWriter;
+import com.newrelic.telemetry.Attributes;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares writing a metric's attributes into its JSON the way it used to be done, by filtering
+ * them into a new map, rendering that to a String and embedding the String, with writing them
+ * straight into the metric's writer in one pass.
+ *
+ * <p>Run with {@code ./gradlew :telemetry-core:jmh}. Most of the difference is allocation, which
+ * the {@code gc} profiler reports per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributesJsonBenchmark {
+
+  @Param({"5", "20"})
+  public int attributeCount;
+
+  private final AttributesJson attributesJson = new AttributesJson();
+  private final StringWriter out = new StringWriter();
+  private Map<String, Object> attributes;
+  private Map<String, Object> frozenAttributes;
+
+  @Setup
+  public void setup() {
+    Attributes built = new Attributes();
+    for (int i = 0; i < attributeCount; i++) {
+      switch (i % 4) {
+        case 0:
+          built.put("string." + i, "value-" + i);
+          break;
+        case 1:
+          built.put("long." + i, 1000L + i);
+          break;
+        case 2:
+          built.put("double." + i, i * 1.5);
+          break;
+        default:
+          built.put("boolean." + i, i % 2 == 0);
+      }
+    }
+    attributes = built.asMap();
+    frozenAttributes = built.freeze().asMap();
+  }
+
+  @Benchmark
+  public int filterThenEmbedString() throws IOException {
+    JsonWriter jsonWriter = startMetric();
+    jsonWriter.name("attributes").jsonValue(legacyToJson(attributes));
+    return endMetric(jsonWriter);
+  }
+
+  @Benchmark
+  public int writeInPlace() throws IOException {
+    JsonWriter jsonWriter = startMetric();
+    jsonWriter.name("attributes");
+    attributesJson.writeJson(attributes, jsonWriter);
+    return endMetric(jsonWriter);
+  }
+
+  @Benchmark
+  public int writeFrozenInPlace() throws IOException {
+    JsonWriter jsonWriter = startMetric();
+    jsonWriter.name("attributes");
+    attributesJson.writeJson(frozenAttributes, jsonWriter);
+    return endMetric(jsonWriter);
+  }
+
+  private JsonWriter startMetric() throws IOException {
+    out.getBuffer().setLength(0);
+    JsonWriter jsonWriter = new JsonWriter(out);
+    jsonWriter.beginObject();
+    jsonWriter.name("name").value("http.server.requests");
+    return jsonWriter;
+  }
+
+  private int endMetric(JsonWriter jsonWriter) throws IOException {
+    jsonWriter.endObject();
+    return out.getBuffer().length();
+  }
+
+  // What AttributesJson.toJson did before it wrote into the caller's writer.
+  private static String legacyToJson(Map<String, Object> attributes) throws IOException {
+    Map<String, Object> filtered =
+        attributes
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getValue() != null)
+            .filter(
+                entry ->
+                    !(entry.getValue() instanceof Number)
+                        || Double.isFinite(((Number) entry.getValue()).doubleValue()))
+            .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+    StringWriter out = new StringWriter();
+    JsonWriter jsonWriter = new JsonWriter(out);
+    jsonWriter.beginObject();
+    for (Map.Entry<String, Object> attribute : filtered.entrySet()) {
+      Object value = attribute.getValue();
+      if (value instanceof Boolean) {
+        jsonWriter.name(attribute.getKey()).value((boolean) value);
+      } else if (value instanceof Number) {
+        jsonWriter.name(attribute.getKey()).value((Number) value);
+      } else {
+        jsonWriter.name(attribute.getKey()).value(String.valueOf(value));
+      }
+    }
+    jsonWriter.endObject();
+    return out.toString();
+  }
+}
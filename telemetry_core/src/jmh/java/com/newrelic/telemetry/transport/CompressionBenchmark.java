@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import com.newrelic.telemetry.json.AttributesJson;
+import com.newrelic.telemetry.metrics.Count;
+import com.newrelic.telemetry.metrics.Gauge;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.Summary;
+import com.newrelic.telemetry.metrics.json.MetricBatchJsonCommonBlockWriter;
+import com.newrelic.telemetry.metrics.json.MetricBatchJsonTelemetryBlockWriter;
+import com.newrelic.telemetry.metrics.json.MetricBatchMarshaller;
+import com.newrelic.telemetry.metrics.json.MetricToJson;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the CPU cost of the available {@link Compression} options on a realistic metric
+ * payload. The bytes of JSON sent and the bytes that went on the wire are reported next to the
+ * timings as the {@code jsonBytes} and {@code wireBytes} counters, so the CPU/bytes trade-off can be
+ * read from a single run: their ratio is the compression ratio.
+ *
+ * <p>Run with {@code ./gradlew :telemetry-core:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+  @Param({"gzip-1", "gzip-6", "gzip-9", "deflate-1", "deflate-6", "identity"})
+  public String compression;
+
+  @Param({"1000", "10000"})
+  public int metricCount;
+
+  private String json;
+  private int jsonLength;
+  private int lastPayloadSize;
+  private BatchDataSender sender;
+
+  /** Totals of the payload sizes in each iteration, reported by JMH as secondary results. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class PayloadSizes {
+    public long jsonBytes;
+    public long wireBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      jsonBytes = 0;
+      wireBytes = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    json = buildMarshaller().toJson(buildBatch(metricCount));
+    jsonLength = json.getBytes(StandardCharsets.UTF_8).length;
+
+    HttpPoster poster =
+        (url, headers, body, mediaType) -> {
+          lastPayloadSize = body.length;
+          return new HttpResponse("", 202, "Accepted", Collections.emptyMap());
+        };
+    sender =
+        new BatchDataSender(
+            poster,
+            "api-key",
+            new URL("http://localhost/metric/v1"),
+            false,
+            null,
+            new CompressionPool(4, 4 * 1024 * 1024),
+            parse(compression),
+            // measure the whole payload, even where it wouldn't be accepted by the ingest API
+            Integer.MAX_VALUE);
+  }
+
+  @Benchmark
+  public Response compressAndSend(PayloadSizes sizes) throws Exception {
+    Response response = sender.send(json);
+    sizes.jsonBytes += jsonLength;
+    sizes.wireBytes += lastPayloadSize;
+    return response;
+  }
+
+  private static Compression parse(String name) {
+    if (name.equals("identity")) {
+      return Compression.identity();
+    }
+    String[] parts = name.split("-");
+    int level = Integer.parseInt(parts[1]);
+    return parts[0].equals("gzip") ? Compression.gzip(level) : Compression.deflate(level);
+  }
+
+  private static MetricBatchMarshaller buildMarshaller() {
+    return new MetricBatchMarshaller(
+        new MetricBatchJsonCommonBlockWriter(new AttributesJson()),
+        new MetricBatchJsonTelemetryBlockWriter(new MetricToJson()));
+  }
+
+  private static MetricBatch buildBatch(int metricCount) {
+    long now = System.currentTimeMillis();
+    List<Metric> metrics = new ArrayList<>(metricCount);
+    for (int i = 0; i < metricCount; i++) {
+      Attributes attributes =
+          new Attributes()
+              .put("host", "app-host-" + (i % 16))
+              .put("http.method", i % 3 == 0 ? "POST" : "GET")
+              .put("http.route", "/api/v1/resource/" + (i % 40))
+              .put("http.status_code", 200 + (i % 5))
+              .put("error", i % 50 == 0);
+      switch (i % 3) {
+        case 0:
+          metrics.add(new Count("http.server.requests", i % 100, now - 60_000, now, attributes));
+          break;
+        case 1:
+          metrics.add(new Gauge("jvm.memory.used", 1.0e8 + i * 1234.5, now, attributes));
+          break;
+        default:
+          metrics.add(
+              new Summary(
+                  "http.server.duration",
+                  10 + i % 7,
+                  i * 3.7,
+                  0.4,
+                  812.3,
+                  now - 60_000,
+                  now,
+                  attributes));
+      }
+    }
+    Attributes common =
+        new Attributes().put("service.name", "benchmark-service").put("environment", "production");
+    return new MetricBatch(metrics, common);
+  }
+}
@@ -14,24 +14,67 @@ import java.util.Map;
  *
  * <p>Only String keys are allowed. Acceptable values for attributes include Numbers, Strings, and
  * booleans.
+ *
+ * <p>Attributes can be {@link #freeze() frozen} into an immutable form, which is cheap to share
+ * between metrics and to use as a map key: the hash code is computed once, and {@link #asMap()}
+ * returns the same unmodifiable map every time rather than a copy. Identical frozen attributes can
+ * be shared through an {@link AttributesInterner}.
  */
 public class Attributes {
-  private final Map<String, Object> rawAttributes = new HashMap<>();
+  private final Map<String, Object> rawAttributes;
+  private final boolean frozen;
 
   /** Creates an empty object */
-  public Attributes() {}
+  public Attributes() {
+    this.rawAttributes = new HashMap<>();
+    this.frozen = false;
+  }
 
   /** Creates a copy. Changes to the new copy will not affect the original and vice versa. */
   public Attributes(Attributes original) {
-    rawAttributes.putAll(original.rawAttributes);
+    this.rawAttributes = new HashMap<>(original.rawAttributes);
+    this.frozen = false;
   }
 
-  /** Creates a copy. Changes to the new copy will not affect the original and vice versa. */
+  private Attributes(FrozenAttributeMap rawAttributes) {
+    this.rawAttributes = rawAttributes;
+    this.frozen = true;
+  }
+
+  /**
+   * Creates a copy. Changes to the new copy will not affect the original and vice versa. The copy
+   * of frozen attributes can be changed.
+   */
   public Attributes copy() {
     return new Attributes(this);
   }
 
+  /**
+   * Returns an immutable form of these attributes. Changes to these attributes will not affect the
+   * frozen ones.
+   *
+   * @return this, if these attributes are already frozen, or else a frozen copy.
+   */
+  public Attributes freeze() {
+    if (frozen) {
+      return this;
+    }
+    return new Attributes(new FrozenAttributeMap(rawAttributes));
+  }
+
+  /** @return true if these attributes are frozen, and so cannot be changed. */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Add all of the incoming attributes.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if these attributes are frozen.
+   */
   public Attributes putAll(Attributes incoming) {
+    checkNotFrozen();
     rawAttributes.putAll(incoming.rawAttributes);
     return this;
   }
@@ -40,8 +83,10 @@ public class Attributes {
    * Add a string-valued attribute.
    *
    * @return this
+   * @throws UnsupportedOperationException if these attributes are frozen.
    */
   public Attributes put(String key, String value) {
+    checkNotFrozen();
     rawAttributes.put(key, value);
     return this;
   }
@@ -50,8 +95,10 @@ public class Attributes {
    * Add a Number-valued attribute.
    *
    * @return this
+   * @throws UnsupportedOperationException if these attributes are frozen.
    */
   public Attributes put(String key, Number value) {
+    checkNotFrozen();
     rawAttributes.put(key, value);
     return this;
   }
@@ -60,21 +107,40 @@ public class Attributes {
    * Add a boolean-valued attribute.
    *
    * @return this
+   * @throws UnsupportedOperationException if these attributes are frozen.
    */
   public Attributes put(String key, boolean value) {
+    checkNotFrozen();
     rawAttributes.put(key, value);
     return this;
   }
 
   /**
-   * Make a copy of these attributes.
+   * Make a copy of these attributes. Frozen attributes are not copied, as they cannot change.
    *
    * @return An unmodifiable copy of these attributes, as a Map.
    */
   public Map<String, Object> asMap() {
+    if (frozen) {
+      return rawAttributes;
+    }
     return unmodifiableMap(new HashMap<>(rawAttributes));
   }
 
+  /**
+   * Read these attributes without copying them. Unlike {@link #asMap()}, later changes to these
+   * attributes show through the view, so it should only be used while nothing else changes them,
+   * such as while a batch is being serialized.
+   *
+   * @return An unmodifiable view of these attributes, as a Map.
+   */
+  public Map<String, Object> asMapView() {
+    if (frozen) {
+      return rawAttributes;
+    }
+    return unmodifiableMap(rawAttributes);
+  }
+
   /** @return true if there are no attributes in this Attributes instance */
   public boolean isEmpty() {
     return rawAttributes.isEmpty();
@@ -97,6 +163,12 @@ public class Attributes {
     return rawAttributes != null ? rawAttributes.hashCode() : 0;
   }
 
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException("Frozen attributes cannot be changed");
+    }
+  }
+
   @Override
   public String toString() {
     return "Attributes{" + "rawAttributes=" + rawAttributes + '}';
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import com.newrelic.telemetry.util.Utils;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A pool of {@link Attributes#freeze() frozen} {@link Attributes}, so that identical sets of
+ * attributes recorded over and over (the dimensions of a metric, for example) are stored once and
+ * shared.
+ *
+ * <p>The pool holds at most a fixed number of distinct sets. Once it is full, attributes that are
+ * not already in it are frozen but not pooled, so that high-cardinality attributes cannot grow it
+ * without bound.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class AttributesInterner {
+  private final ConcurrentMap<Attributes, Attributes> pool = new ConcurrentHashMap<>();
+  private final int maxSize;
+
+  /** @param maxSize The maximum number of distinct sets of attributes to pool. */
+  public AttributesInterner(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param attributes The attributes to intern. They are not changed.
+   * @return The pooled, frozen attributes equal to these, if there are any; or else these
+   *     attributes frozen, which are added to the pool if it is not full.
+   */
+  public Attributes intern(Attributes attributes) {
+    Utils.verifyNonNull(attributes);
+    Attributes pooled = pool.get(attributes);
+    if (pooled != null) {
+      return pooled;
+    }
+    Attributes frozen = attributes.freeze();
+    if (pool.size() >= maxSize) {
+      return frozen;
+    }
+    pooled = pool.putIfAbsent(frozen, frozen);
+    return pooled != null ? pooled : frozen;
+  }
+
+  /** @return The number of distinct sets of attributes in the pool. */
+  public int size() {
+    return pool.size();
+  }
+}
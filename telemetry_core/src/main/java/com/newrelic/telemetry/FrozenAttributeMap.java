@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The unmodifiable map behind frozen {@link Attributes}.
+ *
+ * <p>Keys are kept sorted in one array, so that lookups are a binary search. Values are stored
+ * unboxed where possible: whole numbers and booleans in a {@code long[]}, doubles in a {@code
+ * double[]}, and everything else in an {@code Object[]}, at the same position as their key, with a
+ * tag recording which. Writers can read the values by position, through {@link #getType(int)} and
+ * the typed getters, without boxing them. Reading them through the {@link Map} interface boxes them
+ * again, as the same type they were put in as.
+ */
+public final class FrozenAttributeMap extends AbstractMap<String, Object> {
+
+  /** How the value at a position is stored, and so which getter reads it without boxing. */
+  public enum ValueType {
+    /** A String, read by {@link #getString(int)}. */
+    STRING,
+    /** A whole number, read by {@link #getLong(int)}. */
+    LONG,
+    /** A double, read by {@link #getDouble(int)}. */
+    DOUBLE,
+    /** A boolean, read by {@link #getBoolean(int)}. */
+    BOOLEAN,
+    /** Any other value, including null, read by {@link #getObject(int)}. */
+    OBJECT
+  }
+
+  private static final Comparator<String> KEY_ORDER =
+      Comparator.nullsFirst(Comparator.naturalOrder());
+
+  // The tags also record the boxed type of whole numbers, so that they are boxed as the same type.
+  private static final byte OBJECT = 0;
+  private static final byte STRING = 1;
+  private static final byte BOOLEAN = 2;
+  private static final byte DOUBLE = 3;
+  private static final byte LONG = 4;
+  private static final byte INTEGER = 5;
+  private static final byte SHORT = 6;
+  private static final byte BYTE = 7;
+
+  private final String[] keys;
+  private final byte[] tags;
+  private final long[] longs; // null if there are no whole numbers or booleans
+  private final double[] doubles; // null if there are no doubles
+  private final Object[] objects; // null if there are no strings or other values
+  private final int hash;
+  private Set<Entry<String, Object>> entrySet;
+
+  FrozenAttributeMap(Map<String, Object> attributes) {
+    int size = attributes.size();
+    keys = attributes.keySet().toArray(new String[size]);
+    Arrays.sort(keys, KEY_ORDER);
+    tags = new byte[size];
+    long[] longs = null;
+    double[] doubles = null;
+    Object[] objects = null;
+    int hash = 0;
+    for (int i = 0; i < size; i++) {
+      Object value = attributes.get(keys[i]);
+      byte tag = tagOf(value);
+      tags[i] = tag;
+      switch (tag) {
+        case DOUBLE:
+          doubles = doubles == null ? new double[size] : doubles;
+          doubles[i] = (Double) value;
+          break;
+        case BOOLEAN:
+          longs = longs == null ? new long[size] : longs;
+          longs[i] = (Boolean) value ? 1 : 0;
+          break;
+        case LONG:
+        case INTEGER:
+        case SHORT:
+        case BYTE:
+          longs = longs == null ? new long[size] : longs;
+          longs[i] = ((Number) value).longValue();
+          break;
+        default:
+          objects = objects == null ? new Object[size] : objects;
+          objects[i] = value;
+      }
+      // The same as Map.Entry#hashCode, so that the hash matches a HashMap with the same contents.
+      hash += (keys[i] == null ? 0 : keys[i].hashCode()) ^ (value == null ? 0 : value.hashCode());
+    }
+    this.longs = longs;
+    this.doubles = doubles;
+    this.objects = objects;
+    this.hash = hash;
+  }
+
+  private static byte tagOf(Object value) {
+    if (value instanceof String) return STRING;
+    if (value instanceof Boolean) return BOOLEAN;
+    if (value instanceof Double) return DOUBLE;
+    if (value instanceof Long) return LONG;
+    if (value instanceof Integer) return INTEGER;
+    if (value instanceof Short) return SHORT;
+    if (value instanceof Byte) return BYTE;
+    return OBJECT;
+  }
+
+  /**
+   * @param index A position, from 0 to {@link #size()} exclusive, in key order.
+   * @return The key at the position.
+   */
+  public String getKey(int index) {
+    return keys[index];
+  }
+
+  /**
+   * @param index A position, from 0 to {@link #size()} exclusive, in key order.
+   * @return How the value at the position is stored.
+   */
+  public ValueType getType(int index) {
+    switch (tags[index]) {
+      case STRING:
+        return ValueType.STRING;
+      case BOOLEAN:
+        return ValueType.BOOLEAN;
+      case DOUBLE:
+        return ValueType.DOUBLE;
+      case OBJECT:
+        return ValueType.OBJECT;
+      default:
+        return ValueType.LONG;
+    }
+  }
+
+  /** @return The string at a position whose type is {@link ValueType#STRING}. */
+  public String getString(int index) {
+    return (String) objects[index];
+  }
+
+  /** @return The whole number at a position whose type is {@link ValueType#LONG}. */
+  public long getLong(int index) {
+    return longs[index];
+  }
+
+  /** @return The double at a position whose type is {@link ValueType#DOUBLE}. */
+  public double getDouble(int index) {
+    return doubles[index];
+  }
+
+  /** @return The boolean at a position whose type is {@link ValueType#BOOLEAN}. */
+  public boolean getBoolean(int index) {
+    return longs[index] != 0;
+  }
+
+  /** @return The value at any position, boxed if it is stored unboxed. */
+  public Object getObject(int index) {
+    switch (tags[index]) {
+      case BOOLEAN:
+        return longs[index] != 0;
+      case DOUBLE:
+        return doubles[index];
+      case LONG:
+        return longs[index];
+      case INTEGER:
+        return (int) longs[index];
+      case SHORT:
+        return (short) longs[index];
+      case BYTE:
+        return (byte) longs[index];
+      default:
+        return objects[index];
+    }
+  }
+
+  private int indexOf(Object key) {
+    if (key != null && !(key instanceof String)) {
+      return -1;
+    }
+    return Arrays.binarySearch(keys, (String) key, KEY_ORDER);
+  }
+
+  @Override
+  public Object get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : getObject(index);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return keys.length;
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    Set<Entry<String, Object>> entries = entrySet;
+    if (entries == null) {
+      entries = new EntrySet();
+      entrySet = entries;
+    }
+    return entries;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof FrozenAttributeMap) {
+      FrozenAttributeMap that = (FrozenAttributeMap) o;
+      return hash == that.hash
+          && Arrays.equals(keys, that.keys)
+          && Arrays.equals(tags, that.tags)
+          && Arrays.equals(longs, that.longs)
+          && Arrays.equals(doubles, that.doubles)
+          && Arrays.equals(objects, that.objects);
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+    @Override
+    public Iterator<Entry<String, Object>> iterator() {
+      return new Iterator<Entry<String, Object>>() {
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() {
+          return next < keys.length;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+          if (next >= keys.length) {
+            throw new NoSuchElementException();
+          }
+          int index = next++;
+          return new SimpleImmutableEntry<>(keys[index], getObject(index));
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return keys.length;
+    }
+  }
+}
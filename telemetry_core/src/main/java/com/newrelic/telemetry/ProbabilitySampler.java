@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides up front whether to keep each span or event, keeping each with the same probability, so
+ * that dropped items cost nothing further: they are never buffered or serialized.
+ *
+ * <p>The decision for an item with a trace id is a hash of the trace id, so every item of a trace
+ * is kept or dropped together, in every process that uses the same sample rate. Items without a
+ * trace id are kept at random.
+ *
+ * <p>Buffers that use a sampler add the sample rate to their common attributes as {@value
+ * #SAMPLE_RATE_ATTRIBUTE}, so that the kept items can be weighted back up when they are queried,
+ * for example with {@code SELECT sum(1 / sampling.rate) FROM Span}.
+ */
+public final class ProbabilitySampler {
+
+  /** The attribute that holds the sample rate of sampled items. */
+  public static final String SAMPLE_RATE_ATTRIBUTE = "sampling.rate";
+
+  // Decisions compare the top 53 bits of the hash, the precision of a double, with this.
+  private static final double HASH_RANGE = 1L << 53;
+
+  private final double sampleRate;
+  private final long threshold;
+
+  /**
+   * @param sampleRate The probability of keeping each item, greater than 0 and at most 1.
+   */
+  public ProbabilitySampler(double sampleRate) {
+    if (!(sampleRate > 0 && sampleRate <= 1)) {
+      throw new IllegalArgumentException(
+          "sampleRate must be greater than 0 and at most 1: " + sampleRate);
+    }
+    this.sampleRate = sampleRate;
+    this.threshold = (long) (sampleRate * HASH_RANGE);
+  }
+
+  /** @return The probability of keeping each item. */
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * @param traceId The trace id of the item, or null if it has none.
+   * @return true if the item should be kept.
+   */
+  public boolean shouldKeep(String traceId) {
+    if (traceId == null) {
+      return ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+    return (hash(traceId) >>> 11) < threshold;
+  }
+
+  /**
+   * Add the sample rate to a buffer's common attributes.
+   *
+   * @param commonAttributes The attributes, which are not changed.
+   * @return A copy of the attributes, with the sample rate added.
+   */
+  public Attributes addSampleRate(Attributes commonAttributes) {
+    return commonAttributes.copy().put(SAMPLE_RATE_ATTRIBUTE, sampleRate);
+  }
+
+  // FNV-1a over the characters, followed by the MurmurHash3 finalizer to spread the bits.
+  private static long hash(String traceId) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < traceId.length(); i++) {
+      hash ^= traceId.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return "ProbabilitySampler{" + "sampleRate=" + sampleRate + '}';
+  }
+}
@@ -6,6 +6,10 @@
 package com.newrelic.telemetry;
 
 import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.transport.BatchDataSender;
+import com.newrelic.telemetry.transport.Compression;
+import com.newrelic.telemetry.transport.CompressionPool;
+import com.newrelic.telemetry.util.Utils;
 import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -18,6 +22,9 @@ public class SenderConfiguration {
   private final URL endpointUrl;
   private final boolean auditLoggingEnabled;
   private final String secondaryUserAgent;
+  private final CompressionPool compressionPool;
+  private final Compression compression;
+  private final int maxPayloadBytes;
 
   public SenderConfiguration(
       String apiKey,
@@ -25,11 +32,52 @@ public class SenderConfiguration {
       URL endpointUrl,
       boolean auditLoggingEnabled,
       String secondaryUserAgent) {
+    this(
+        apiKey,
+        httpPoster,
+        endpointUrl,
+        auditLoggingEnabled,
+        secondaryUserAgent,
+        CompressionPool.getDefault(),
+        Compression.gzip());
+  }
+
+  public SenderConfiguration(
+      String apiKey,
+      HttpPoster httpPoster,
+      URL endpointUrl,
+      boolean auditLoggingEnabled,
+      String secondaryUserAgent,
+      CompressionPool compressionPool,
+      Compression compression) {
+    this(
+        apiKey,
+        httpPoster,
+        endpointUrl,
+        auditLoggingEnabled,
+        secondaryUserAgent,
+        compressionPool,
+        compression,
+        BatchDataSender.DEFAULT_MAX_PAYLOAD_BYTES);
+  }
+
+  public SenderConfiguration(
+      String apiKey,
+      HttpPoster httpPoster,
+      URL endpointUrl,
+      boolean auditLoggingEnabled,
+      String secondaryUserAgent,
+      CompressionPool compressionPool,
+      Compression compression,
+      int maxPayloadBytes) {
     this.apiKey = apiKey;
     this.httpPoster = httpPoster;
     this.endpointUrl = endpointUrl;
     this.auditLoggingEnabled = auditLoggingEnabled;
     this.secondaryUserAgent = secondaryUserAgent;
+    this.compressionPool = compressionPool;
+    this.compression = compression;
+    this.maxPayloadBytes = maxPayloadBytes;
   }
 
   public String getApiKey() {
@@ -52,6 +100,18 @@ public class SenderConfiguration {
     return secondaryUserAgent;
   }
 
+  public CompressionPool getCompressionPool() {
+    return compressionPool;
+  }
+
+  public Compression getCompression() {
+    return compression;
+  }
+
+  public int getMaxPayloadBytes() {
+    return maxPayloadBytes;
+  }
+
   public static SenderConfigurationBuilder builder(String defaultUrl, String basePath) {
     return new SenderConfigurationBuilder(defaultUrl, basePath);
   }
@@ -66,6 +126,9 @@ public class SenderConfiguration {
     private URL endpointUrl;
     private boolean auditLoggingEnabled = false;
     private String secondaryUserAgent;
+    private CompressionPool compressionPool = CompressionPool.getDefault();
+    private Compression compression = Compression.gzip();
+    private int maxPayloadBytes = BatchDataSender.DEFAULT_MAX_PAYLOAD_BYTES;
 
     public SenderConfigurationBuilder(String defaultUrl, String basePath) {
       this.defaultUrl = defaultUrl;
@@ -135,9 +198,55 @@ public class SenderConfiguration {
       return this;
     }
 
+    /**
+     * Configure the pool of deflaters and buffers used to compress payloads. By default, a
+     * process-wide pool shared by all senders is used. Provide a dedicated pool to size it
+     * independently, or to monitor its hit and miss counts in isolation.
+     *
+     * @return this builder.
+     */
+    public SenderConfigurationBuilder compressionPool(CompressionPool compressionPool) {
+      this.compressionPool = compressionPool;
+      return this;
+    }
+
+    /**
+     * Configure how payloads are compressed before sending. Defaults to gzip at the default level.
+     * Use a low level such as {@code Compression.gzip(Deflater.BEST_SPEED)} to save CPU, or a high
+     * level to save egress bandwidth.
+     *
+     * @return this builder.
+     */
+    public SenderConfigurationBuilder compression(Compression compression) {
+      this.compression = Utils.verifyNonNull(compression, "compression cannot be null");
+      return this;
+    }
+
+    /**
+     * Configure the largest compressed payload that will be sent in a single request. Batches that
+     * compress to more than this are split before sending, rather than being uploaded only to be
+     * rejected by the ingest API. Defaults to 1MB, the limit of the New Relic ingest APIs.
+     *
+     * @return this builder.
+     */
+    public SenderConfigurationBuilder maxPayloadBytes(int maxPayloadBytes) {
+      if (maxPayloadBytes <= 0) {
+        throw new IllegalArgumentException("maxPayloadBytes must be positive");
+      }
+      this.maxPayloadBytes = maxPayloadBytes;
+      return this;
+    }
+
     public SenderConfiguration build() {
       return new SenderConfiguration(
-          apiKey, httpPoster, getOrDefaultSendUrl(), auditLoggingEnabled, secondaryUserAgent);
+          apiKey,
+          httpPoster,
+          getOrDefaultSendUrl(),
+          auditLoggingEnabled,
+          secondaryUserAgent,
+          compressionPool,
+          compression,
+          maxPayloadBytes);
     }
 
     private URL getOrDefaultSendUrl() {
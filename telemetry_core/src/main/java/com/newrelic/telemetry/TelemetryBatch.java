@@ -4,13 +4,13 @@
  */
 package com.newrelic.telemetry;
 
-import static java.util.stream.Collectors.toList;
-
 import com.newrelic.telemetry.util.Utils;
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 /** Represents a collection of {@link Telemetry} instances and some common attributes */
 public abstract class TelemetryBatch<T extends Telemetry> {
@@ -28,18 +28,29 @@ public abstract class TelemetryBatch<T extends Telemetry> {
    * Split this batch into 2 roughly equal pieces. If the initial batch contains no telemetry, this
    * will simply return an empty list of batches.
    *
+   * <p>The telemetry is copied into an array the first time a batch is split. The pieces are
+   * read-only views over ranges of that array, so splitting them again does not copy anything.
+   *
    * @return a List of telemetry batches, roughly split in 2.
    */
   public List<TelemetryBatch<T>> split() {
     if (telemetry.isEmpty()) {
       return Collections.emptyList();
     }
-    int totalSize = telemetry.size();
-    int halfSize = totalSize / 2;
+    RangeView<T> view = asRangeView(telemetry);
+    int halfSize = view.size() / 2;
 
     return Arrays.asList(
-        createSubBatch(telemetry.stream().limit(halfSize).collect(toList())),
-        createSubBatch(telemetry.stream().skip(halfSize).collect(toList())));
+        createSubBatch(view.range(0, halfSize)), createSubBatch(view.range(halfSize, view.size())));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> RangeView<T> asRangeView(Collection<T> telemetry) {
+    if (telemetry instanceof RangeView) {
+      return (RangeView<T>) telemetry;
+    }
+    Object[] items = telemetry.toArray();
+    return new RangeView<>(items, 0, items.length);
   }
 
   /**
@@ -102,4 +113,35 @@ public abstract class TelemetryBatch<T extends Telemetry> {
         + commonAttributes
         + '}';
   }
+
+  /** An unmodifiable view of a range of an array, which can be narrowed without copying. */
+  private static final class RangeView<T> extends AbstractList<T> implements RandomAccess {
+    private final Object[] items;
+    private final int from;
+    private final int to;
+
+    private RangeView(Object[] items, int from, int to) {
+      this.items = items;
+      this.from = from;
+      this.to = to;
+    }
+
+    private RangeView<T> range(int fromIndex, int toIndex) {
+      return new RangeView<>(items, from + fromIndex, from + toIndex);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+      }
+      return (T) items[from + index];
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
 }
@@ -2,26 +2,94 @@ package com.newrelic.telemetry.events;
 
 import com.newrelic.telemetry.Attributes;
 import com.newrelic.telemetry.TelemetryBatch;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 /** Represents a set of {@link Event} instances, to be sent up to the New Relic Metrics API. */
 public class EventBatch extends TelemetryBatch<Event> {
 
+  private final long seenCount;
+
   public EventBatch(Collection<Event> events, Attributes commonAttributes) {
-    super(events, commonAttributes);
+    this(events, commonAttributes, events.size());
   }
 
   public EventBatch(Collection<Event> events) {
-    super(events, new Attributes());
+    this(events, new Attributes());
+  }
+
+  /**
+   * @param events The events kept for this batch.
+   * @param commonAttributes The attributes shared by the events.
+   * @param seenCount The number of events the kept ones were sampled from, at least the number
+   *     kept.
+   */
+  public EventBatch(Collection<Event> events, Attributes commonAttributes, long seenCount) {
+    super(events, commonAttributes);
+    this.seenCount = seenCount;
+  }
+
+  /**
+   * The number of events that were offered for this batch, of which the events in this batch are a
+   * sample. For a batch of every event, as created by an unbounded {@link EventBuffer}, this is the
+   * size of the batch.
+   *
+   * @return The number of events seen.
+   */
+  public long getSeenCount() {
+    return seenCount;
+  }
+
+  /** @return The number of events that were seen but not kept in this batch. */
+  public long getDroppedCount() {
+    return seenCount - size();
+  }
+
+  /**
+   * Split this batch into 2 roughly equal pieces, each standing for its share of the events seen.
+   * The seen counts of the pieces add up to the seen count of this batch.
+   */
+  @Override
+  public List<TelemetryBatch<Event>> split() {
+    List<TelemetryBatch<Event>> pieces = super.split();
+    if (pieces.size() != 2) {
+      return pieces;
+    }
+    EventBatch first = (EventBatch) pieces.get(0);
+    EventBatch second =
+        new EventBatch(
+            pieces.get(1).getTelemetry(), getCommonAttributes(), seenCount - first.getSeenCount());
+    return Arrays.asList(first, second);
   }
 
   @Override
   public TelemetryBatch<Event> createSubBatch(Collection<Event> telemetry) {
-    return new EventBatch(telemetry, getCommonAttributes());
+    // A part of this batch stands for its share of the events seen, rounded down.
+    long subBatchSeenCount = isEmpty() ? telemetry.size() : seenCount * telemetry.size() / size();
+    return new EventBatch(telemetry, getCommonAttributes(), subBatchSeenCount);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    if (!super.equals(o)) return false;
+
+    EventBatch that = (EventBatch) o;
+
+    return getSeenCount() == that.getSeenCount();
+  }
+
+  @Override
+  public int hashCode() {
+    int result = super.hashCode();
+    result = 31 * result + Long.hashCode(getSeenCount());
+    return result;
   }
 
   @Override
   public String toString() {
-    return "EventBatch{} " + super.toString();
+    return "EventBatch{" + "seenCount=" + seenCount + "} " + super.toString();
   }
 }
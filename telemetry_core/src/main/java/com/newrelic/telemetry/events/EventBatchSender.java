@@ -10,14 +10,19 @@ import com.newrelic.telemetry.SenderConfiguration;
 import com.newrelic.telemetry.SenderConfiguration.SenderConfigurationBuilder;
 import com.newrelic.telemetry.TelemetryBatch;
 import com.newrelic.telemetry.events.json.EventBatchMarshaller;
+import com.newrelic.telemetry.exceptions.DiscardBatchException;
 import com.newrelic.telemetry.exceptions.ResponseException;
 import com.newrelic.telemetry.exceptions.RetryWithSplitException;
 import com.newrelic.telemetry.transport.BatchDataSender;
+import com.newrelic.telemetry.transport.CompressedPayload;
 import com.newrelic.telemetry.util.Utils;
 import java.net.URL;
 import java.util.List;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.BiConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,7 +50,8 @@ public class EventBatchSender {
    *     the subclasses of {@link ResponseException} will be thrown. See the documentation on that
    *     hierarchy for details on the recommended ways to respond to those exceptions. This method
    *     will never throw RetryWithSplitException as it automatically handles splitting and retrying
-   *     outsize batches.
+   *     outsize batches. A single event that is too large to send is logged and dropped, and if it
+   *     was the only event in the batch, a response with a 413 status code is returned.
    */
   public Response sendBatch(EventBatch batch) throws ResponseException {
     if (batch == null || batch.size() == 0) {
@@ -55,15 +61,22 @@ public class EventBatchSender {
     logger.debug(
         "Sending an event batch (number of events: {}) to the New Relic event ingest endpoint)",
         batch.size());
-    String json = marshaller.toJson(batch);
-
     try {
-      return sender.send(json);
+      return sender.send(out -> marshaller.toJson(batch, out));
     } catch (RetryWithSplitException splitx) {
+      if (batch.size() <= 1) {
+        logTooLargeEvent();
+        return new Response(413, "Payload Too Large", "A single event was too large to send");
+      }
       return splitBatchAndSend(batch, new LinkedBlockingDeque<>());
     }
   }
 
+  private static void logTooLargeEvent() {
+    logger.error(
+        "A single event is too large to send to the New Relic event ingest endpoint. Dropping it.");
+  }
+
   @SuppressWarnings("unchecked")
   Response splitBatchAndSend(EventBatch batch, BlockingDeque<TelemetryBatch> queue) {
     logger.info(
@@ -77,12 +90,16 @@ public class EventBatchSender {
     queue.addFirst(twoBatches.get(0));
     while (!queue.isEmpty()) {
       final EventBatch eb = (EventBatch) queue.pollFirst();
-      final String json = marshaller.toJson(eb);
 
       try {
-        response = sender.send(json);
+        response = sender.send(out -> marshaller.toJson(eb, out));
       } catch (RetryWithSplitException splitx) {
-        response = splitBatchAndSend(eb, queue);
+        // Splitting a single event again would only send it again, so it is dropped instead.
+        if (eb.size() <= 1) {
+          logTooLargeEvent();
+        } else {
+          response = splitBatchAndSend(eb, queue);
+        }
       } catch (ResponseException rsx) {
         // We have to log and swallow this exception as there may be other split batches
         // might succeed at sending
@@ -100,6 +117,129 @@ public class EventBatchSender {
     return response;
   }
 
+  /**
+   * Marshal and compress a batch of events without sending it. The result can be sent, or sent
+   * again, with {@link #sendPayload(CompressedPayload)} without repeating that work.
+   *
+   * @param batch The batch to compress.
+   * @return The compressed payload.
+   * @throws DiscardBatchException If the batch could not be serialized.
+   * @throws RetryWithSplitException If the batch compresses to more than the configured maximum
+   *     payload size, and should be split.
+   */
+  public CompressedPayload compress(EventBatch batch)
+      throws DiscardBatchException, RetryWithSplitException {
+    return sender.compress(out -> marshaller.toJson(batch, out));
+  }
+
+  /**
+   * Send a payload created by {@link #compress(EventBatch)} to New Relic. Unlike {@link
+   * #sendBatch(EventBatch)}, a payload that is too large can't be split, so this may throw a
+   * RetryWithSplitException.
+   *
+   * @param payload The payload to send.
+   * @return The response from the ingest API.
+   * @throws ResponseException In cases where the payload is unable to be successfully sent, one of
+   *     the subclasses of {@link ResponseException} will be thrown.
+   */
+  public Response sendPayload(CompressedPayload payload) throws ResponseException {
+    logger.debug(
+        "Sending a compressed event payload (size: {}) to the New Relic event ingest endpoint)",
+        payload.size());
+    return sender.send(payload);
+  }
+
+  /**
+   * Send a batch of events to New Relic without blocking on the HTTP round-trip. The batch is
+   * marshalled and compressed on the calling thread.
+   *
+   * @param batch The batch to send.
+   * @return A future holding the response from the ingest API. If the batch could not be sent, the
+   *     future completes exceptionally with one of the subclasses of {@link ResponseException}. As
+   *     with {@link #sendBatch(EventBatch)}, outsize batches are split and retried automatically,
+   *     so this future only completes with a RetryWithSplitException if a single event is too
+   *     large to send.
+   */
+  public CompletableFuture<Response> sendBatchAsync(EventBatch batch) {
+    if (batch == null || batch.size() == 0) {
+      logger.debug("Skipped sending of an empty event batch.");
+      return CompletableFuture.completedFuture(new Response(202, "Ignored", "Empty batch"));
+    }
+    logger.debug(
+        "Sending an event batch asynchronously (number of events: {}) to the New Relic event ingest endpoint)",
+        batch.size());
+
+    CompletableFuture<Response> result = new CompletableFuture<>();
+    sender
+        .sendAsync(out -> marshaller.toJson(batch, out))
+        .whenComplete(
+            (response, error) -> {
+              if (error == null) {
+                result.complete(response);
+              } else if (unwrap(error) instanceof RetryWithSplitException && batch.size() > 1) {
+                splitBatchAndSendAsync(batch).whenComplete(forwardTo(result));
+              } else {
+                result.completeExceptionally(unwrap(error));
+              }
+            });
+    return result;
+  }
+
+  private CompletableFuture<Response> splitBatchAndSendAsync(EventBatch batch) {
+    logger.info(
+        "Tried to send a too-large event batch (number of events: {}) to the New Relic event ingest endpoint. Splitting)",
+        batch.size());
+    List<TelemetryBatch<Event>> twoBatches = batch.split();
+
+    // Preserve in-order processing: the second half is only sent once the first has completed.
+    return sendSplitBatchAsync((EventBatch) twoBatches.get(0))
+        .thenCompose(
+            first ->
+                sendSplitBatchAsync((EventBatch) twoBatches.get(1))
+                    .thenApply(second -> second != null ? second : first))
+        .thenApply(
+            response ->
+                response != null
+                    ? response
+                    : new Response(
+                        200,
+                        "OK",
+                        "Large payload was split - check log in case of dropped sub-batch"));
+  }
+
+  private CompletableFuture<Response> sendSplitBatchAsync(EventBatch batch) {
+    return sendBatchAsync(batch)
+        .handle(
+            (response, error) -> {
+              if (error != null) {
+                // We have to log and swallow this exception as there may be other split batches
+                // might succeed at sending
+                logger.info(
+                    "Failed to send a split event batch to the New Relic event ingest endpoint. Exception: {}",
+                    unwrap(error));
+                return null;
+              }
+              return response;
+            });
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    if (error instanceof CompletionException && error.getCause() != null) {
+      return error.getCause();
+    }
+    return error;
+  }
+
+  private static BiConsumer<Response, Throwable> forwardTo(CompletableFuture<Response> result) {
+    return (response, error) -> {
+      if (error != null) {
+        result.completeExceptionally(unwrap(error));
+      } else {
+        result.complete(response);
+      }
+    };
+  }
+
   public static EventBatchSender create(SenderConfiguration configuration) {
     Utils.verifyNonNull(configuration.getApiKey(), "API key cannot be null");
     Utils.verifyNonNull(configuration.getHttpPoster(), "an HttpPoster implementation is required.");
@@ -114,7 +254,10 @@ public class EventBatchSender {
             configuration.getApiKey(),
             url,
             configuration.isAuditLoggingEnabled(),
-            configuration.getSecondaryUserAgent());
+            configuration.getSecondaryUserAgent(),
+            configuration.getCompressionPool(),
+            configuration.getCompression(),
+            configuration.getMaxPayloadBytes());
 
     return new EventBatchSender(marshaller, sender);
   }
@@ -5,6 +5,7 @@
 package com.newrelic.telemetry.events;
 
 import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.ProbabilitySampler;
 import com.newrelic.telemetry.util.Utils;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -18,6 +19,11 @@ import org.slf4j.LoggerFactory;
  *
  * <p>One instance of this class can collect many {@link Event Events}. To send them to the Events
  * API, call {@link #createBatch()} and then {@link EventBatchSender#sendBatch(EventBatch)}.
+ *
+ * <p>By default the buffer keeps every event. A buffer created with a capacity keeps at most that
+ * many events per batch instead, a uniform random sample of all of the events added since the last
+ * batch, and the batch records how many events were seen. A buffer can also have both a sampler and
+ * a capacity.
  */
 public final class EventBuffer {
   private static final Logger logger = LoggerFactory.getLogger(EventBuffer.class);
@@ -25,6 +31,8 @@ public final class EventBuffer {
   private final Queue<Event> events = new ConcurrentLinkedQueue<>();
 
   private final Attributes commonAttributes;
+  private final ProbabilitySampler sampler;
+  private final EventReservoir reservoir;
 
   /**
    * Create a new buffer with the provided common set of attributes.
@@ -33,18 +41,95 @@ public final class EventBuffer {
    *     {@link Event} in this buffer.
    */
   public EventBuffer(Attributes commonAttributes) {
-    this.commonAttributes = Utils.verifyNonNull(commonAttributes);
+    this(Utils.verifyNonNull(commonAttributes), null, null);
+  }
+
+  /**
+   * Create a new buffer that only keeps the events chosen by a sampler. The sample rate is added to
+   * the common attributes, as {@value ProbabilitySampler#SAMPLE_RATE_ATTRIBUTE}.
+   *
+   * @param commonAttributes These attributes will be appended (by the New Relic backend) to every
+   *     {@link Event} in this buffer.
+   * @param sampler Decides which events to keep, by their {@code trace.id} attributes, if they
+   *     have them.
+   */
+  public EventBuffer(Attributes commonAttributes, ProbabilitySampler sampler) {
+    this(
+        Utils.verifyNonNull(sampler).addSampleRate(Utils.verifyNonNull(commonAttributes)),
+        sampler,
+        null);
+  }
+
+  /**
+   * Create a new buffer that holds at most a fixed number of events, so that its memory stays
+   * bounded however many events are added between batches. Once it is full, each added event
+   * replaces a random one, so that every event added since the last batch is equally likely to be
+   * in the next one. Adding events never blocks, and the batch records how many were seen in {@link
+   * EventBatch#getSeenCount()}.
+   *
+   * @param commonAttributes These attributes will be appended (by the New Relic backend) to every
+   *     {@link Event} in this buffer.
+   * @param capacity The most events to keep for each batch, at least 1.
+   */
+  public EventBuffer(Attributes commonAttributes, int capacity) {
+    this(Utils.verifyNonNull(commonAttributes), null, newReservoir(capacity));
+  }
+
+  /**
+   * Create a new buffer that only keeps the events chosen by a sampler, and holds at most a fixed
+   * number of those. See {@link #EventBuffer(Attributes, ProbabilitySampler)} and {@link
+   * #EventBuffer(Attributes, int)}. The seen count of each batch counts the events the sampler
+   * kept.
+   *
+   * @param commonAttributes These attributes will be appended (by the New Relic backend) to every
+   *     {@link Event} in this buffer.
+   * @param sampler Decides which events to keep, by their {@code trace.id} attributes, if they
+   *     have them.
+   * @param capacity The most events to keep for each batch, at least 1.
+   */
+  public EventBuffer(Attributes commonAttributes, ProbabilitySampler sampler, int capacity) {
+    this(
+        Utils.verifyNonNull(sampler).addSampleRate(Utils.verifyNonNull(commonAttributes)),
+        sampler,
+        newReservoir(capacity));
+  }
+
+  private EventBuffer(
+      Attributes commonAttributes, ProbabilitySampler sampler, EventReservoir reservoir) {
+    this.commonAttributes = commonAttributes;
+    this.sampler = sampler;
+    this.reservoir = reservoir;
+  }
+
+  private static EventReservoir newReservoir(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+    }
+    return new EventReservoir(capacity);
   }
 
   /**
-   * Append a {@link Event} to this buffer, to be sent in the next {@link EventBatch}.
+   * Append a {@link Event} to this buffer, to be sent in the next {@link EventBatch}, unless the
+   * sampler of this buffer drops it.
    *
    * @param event The new {@link Event} instance to be sent.
    */
   public void addEvent(Event event) {
+    if (sampler != null && !sampler.shouldKeep(traceIdOf(event))) {
+      return;
+    }
+    if (reservoir != null) {
+      reservoir.add(event);
+      return;
+    }
     events.add(event);
   }
 
+  private static String traceIdOf(Event event) {
+    Object traceId = event.getAttributes().asMapView().get("trace.id");
+    return traceId instanceof String ? (String) traceId : null;
+  }
+
   /**
    * Creates a new {@link EventBatch} from the contents of this buffer, then clears the contents of
    * this buffer.
@@ -57,6 +142,11 @@ public final class EventBuffer {
    */
   public EventBatch createBatch() {
     logger.debug("Creating Event batch.");
+    if (reservoir != null) {
+      Collection<Event> sample = new ArrayList<>();
+      long seenCount = reservoir.harvest(sample);
+      return new EventBatch(sample, this.commonAttributes, seenCount);
+    }
     Collection<Event> eventsForBatch = new ArrayList<>(this.events.size());
 
     // Drain the Event buffer and return the batch
@@ -76,9 +166,21 @@ public final class EventBuffer {
     return commonAttributes;
   }
 
+  /** @return The most events kept for each batch, or 0 if the buffer keeps every event. */
+  int getCapacity() {
+    return reservoir != null ? reservoir.getCapacity() : 0;
+  }
+
   @Override
   public String toString() {
-    return "EventBuffer{" + "events=" + events + ", commonAttributes=" + commonAttributes + '}';
+    return "EventBuffer{"
+        + "events="
+        + events
+        + ", commonAttributes="
+        + commonAttributes
+        + ", capacity="
+        + getCapacity()
+        + '}';
   }
 
   @Override
@@ -88,6 +190,7 @@ public final class EventBuffer {
 
     EventBuffer that = (EventBuffer) o;
 
+    if (getCapacity() != that.getCapacity()) return false;
     if (getEvents() != null ? !getEvents().equals(that.getEvents()) : that.getEvents() != null)
       return false;
     return getCommonAttributes() != null
@@ -99,6 +202,7 @@ public final class EventBuffer {
   public int hashCode() {
     int result = getEvents() != null ? getEvents().hashCode() : 0;
     result = 31 * result + (getCommonAttributes() != null ? getCommonAttributes().hashCode() : 0);
+    result = 31 * result + getCapacity();
     return result;
   }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.events;
+
+import com.newrelic.telemetry.util.WriterPhaser;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed number of slots that hold a uniform random sample of the events added since the last
+ * harvest, however many there were (reservoir sampling). The first events fill the slots, and each
+ * later one replaces a random slot with a probability of the number of slots over the number of
+ * events seen so far.
+ *
+ * <p>Adding never blocks. Events go to one of two reservoirs, and a harvest switches adding to the
+ * other one with a {@link WriterPhaser} and then waits for the events already being added to
+ * finish.
+ */
+final class EventReservoir {
+  private final Phase[] phases;
+  private final WriterPhaser phaser = new WriterPhaser();
+
+  EventReservoir(int capacity) {
+    this.phases = new Phase[] {new Phase(capacity), new Phase(capacity)};
+  }
+
+  int getCapacity() {
+    return phases[0].slots.length();
+  }
+
+  void add(Event event) {
+    long epoch = phaser.enterWriter();
+    try {
+      phases[WriterPhaser.phaseIndex(epoch)].add(event);
+    } finally {
+      phaser.exitWriter(epoch);
+    }
+  }
+
+  /**
+   * Move the sampled events into a collection, and start a new sample.
+   *
+   * @param events The collection to add the sampled events to.
+   * @return The number of events that were added to the reservoir since the last harvest.
+   */
+  synchronized long harvest(Collection<Event> events) {
+    return phases[phaser.flipPhase()].drain(events);
+  }
+
+  private static final class Phase {
+    private final AtomicReferenceArray<Event> slots;
+    private final AtomicLong seen = new AtomicLong();
+
+    private Phase(int capacity) {
+      this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    private void add(Event event) {
+      long index = seen.getAndIncrement();
+      if (index >= slots.length()) {
+        index = ThreadLocalRandom.current().nextLong(index + 1);
+      }
+      if (index < slots.length()) {
+        slots.set((int) index, event);
+      }
+    }
+
+    private long drain(Collection<Event> events) {
+      long seenCount = seen.getAndSet(0);
+      int filled = (int) Math.min(seenCount, slots.length());
+      for (int i = 0; i < filled; i++) {
+        events.add(slots.getAndSet(i, null));
+      }
+      return seenCount;
+    }
+  }
+}
@@ -5,40 +5,49 @@
 
 package com.newrelic.telemetry.events.json;
 
+import com.google.gson.stream.JsonWriter;
 import com.newrelic.telemetry.events.Event;
 import com.newrelic.telemetry.events.EventBatch;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class EventBatchMarshaller {
 
   private static final Logger logger = LoggerFactory.getLogger(EventBatchMarshaller.class);
+  private final EventToJson eventToJson = new EventToJson();
 
   public String toJson(EventBatch batch) {
+    StringWriter out = new StringWriter();
+    try {
+      toJson(batch, out);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to marshall json for an event batch", e);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Write the json for an event batch directly to the provided {@link Writer}, without building
+   * the whole payload as a String first.
+   *
+   * @param batch The batch to marshall.
+   * @param out The destination for the json. This writer is not closed.
+   */
+  public void toJson(EventBatch batch, Writer out) throws IOException {
     logger.debug("Generating json for event batch.");
 
-    Function<Event, Event> decorator = Function.identity();
-    if (batch.hasCommonAttributes()) {
-      decorator =
-          event -> {
-            Event out = new Event(event);
-            out.getAttributes().putAll(batch.getCommonAttributes());
-            return out;
-          };
+    // The common attributes are merged into each event as it is written, without copying events.
+    Map<String, Object> commonAttributes = batch.getCommonAttributes().asMapView();
+    JsonWriter jsonWriter = new JsonWriter(out);
+    jsonWriter.beginArray();
+    for (Event event : batch.getTelemetry()) {
+      eventToJson.writeJson(event, commonAttributes, jsonWriter);
     }
-
-    StringBuilder builder = new StringBuilder();
-    builder.append("[");
-    builder.append(
-        batch
-            .getTelemetry()
-            .stream()
-            .map(decorator)
-            .map(new EventToJson())
-            .collect(Collectors.joining(",")));
-    builder.append("]");
-    return builder.toString();
+    jsonWriter.endArray();
+    jsonWriter.flush();
   }
 }
@@ -9,6 +9,7 @@ import com.google.gson.stream.JsonWriter;
 import com.newrelic.telemetry.events.Event;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -18,35 +19,57 @@ public class EventToJson implements Function<Event, String> {
   public String apply(Event event) {
     try {
       StringWriter out = new StringWriter();
-      JsonWriter jsonWriter = new JsonWriter(out);
-      jsonWriter.beginObject();
-
-      jsonWriter.name("eventType").value(event.getEventType());
-      jsonWriter.name("timestamp").value(event.getTimestamp());
-
-      for (Map.Entry<String, Object> entry : event.getAttributes().asMap().entrySet()) {
-        Object value = entry.getValue();
-        if (value instanceof String) {
-          String sValue = (String) value;
-          jsonWriter.name(entry.getKey()).value(sValue);
-        } else if (value instanceof Number) {
-          Number nValue = (Number) value;
-          jsonWriter.name(entry.getKey()).value(nValue);
-        } else if (value instanceof Boolean) {
-          Boolean bValue = (Boolean) value;
-          jsonWriter.name(entry.getKey()).value(bValue);
-        } else {
-          throw new RuntimeException(
-              String.format(
-                  "Failed to generate json type %s encountered with value %s",
-                  value.getClass(), value));
-        }
-      }
-
-      jsonWriter.endObject();
+      writeJson(event, Collections.emptyMap(), new JsonWriter(out));
       return out.toString();
     } catch (IOException e) {
       throw new RuntimeException("Failed to generate summary json", e);
     }
   }
+
+  /**
+   * Write an event as a JSON object into a shared writer, merging in the common attributes of its
+   * batch as it goes, rather than copying them into the event. A common attribute takes the place
+   * of an attribute of the event with the same key.
+   *
+   * @param event The event to write.
+   * @param commonAttributes The attributes shared by every event in the batch.
+   * @param jsonWriter The writer, positioned where a value can be written, such as in an array.
+   * @throws IOException If the writer fails.
+   */
+  public void writeJson(Event event, Map<String, Object> commonAttributes, JsonWriter jsonWriter)
+      throws IOException {
+    jsonWriter.beginObject();
+
+    jsonWriter.name("eventType").value(event.getEventType());
+    jsonWriter.name("timestamp").value(event.getTimestamp());
+
+    for (Map.Entry<String, Object> entry : event.getAttributes().asMapView().entrySet()) {
+      if (!commonAttributes.containsKey(entry.getKey())) {
+        writeAttribute(entry.getKey(), entry.getValue(), jsonWriter);
+      }
+    }
+    for (Map.Entry<String, Object> entry : commonAttributes.entrySet()) {
+      writeAttribute(entry.getKey(), entry.getValue(), jsonWriter);
+    }
+
+    jsonWriter.endObject();
+  }
+
+  private void writeAttribute(String key, Object value, JsonWriter jsonWriter) throws IOException {
+    if (value instanceof String) {
+      String sValue = (String) value;
+      jsonWriter.name(key).value(sValue);
+    } else if (value instanceof Number) {
+      Number nValue = (Number) value;
+      jsonWriter.name(key).value(nValue);
+    } else if (value instanceof Boolean) {
+      Boolean bValue = (Boolean) value;
+      jsonWriter.name(key).value(bValue);
+    } else {
+      throw new RuntimeException(
+          String.format(
+              "Failed to generate json type %s encountered with value %s",
+              value.getClass(), value));
+    }
+  }
 }
@@ -7,6 +7,7 @@ package com.newrelic.telemetry.http;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * In order to provide your own implementation of an HTTP client, an implementation of this
@@ -17,4 +18,23 @@ public interface HttpPoster {
   /** Post data to the provided URL. */
   HttpResponse post(URL url, Map<String, String> headers, byte[] body, String mediaType)
       throws IOException;
+
+  /**
+   * Post data to the provided URL without blocking the calling thread on the HTTP round-trip.
+   *
+   * <p>The default implementation simply calls {@link #post} on the calling thread, and so does
+   * block. Implementations backed by a non-blocking HTTP client should override this.
+   *
+   * @return A future holding the response. It completes exceptionally if the request fails.
+   */
+  default CompletableFuture<HttpResponse> postAsync(
+      URL url, Map<String, String> headers, byte[] body, String mediaType) {
+    CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+    try {
+      result.complete(post(url, headers, body, mediaType));
+    } catch (IOException | RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
 }
@@ -5,53 +5,108 @@
 package com.newrelic.telemetry.json;
 
 import com.google.gson.stream.JsonWriter;
+import com.newrelic.telemetry.FrozenAttributeMap;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
+/**
+ * Writes attributes as a JSON object. Null values and non-finite numbers are left out, as the
+ * ingest APIs reject them.
+ */
 public class AttributesJson {
 
   public String toJson(Map<String, Object> attributes) {
     StringWriter out = new StringWriter();
-    Map<String, Object> filteredAttributes = filterIllegalValues(attributes);
-    filterIllegalValues(filteredAttributes);
-    if (filteredAttributes.isEmpty()) {
-      return "{}";
-    }
     try {
-      JsonWriter jsonWriter = new JsonWriter(out);
-      jsonWriter.beginObject();
-
-      for (Map.Entry<String, Object> attribute : filteredAttributes.entrySet()) {
-        Object value = attribute.getValue();
-
-        if (value instanceof Boolean) {
-          jsonWriter.name(attribute.getKey()).value((boolean) value);
-        } else if (value instanceof Number) {
-          Number num = (Number) value;
-          jsonWriter.name(attribute.getKey()).value(num);
-        } else {
-          jsonWriter.name(attribute.getKey()).value(String.valueOf(value));
-        }
-      }
-      jsonWriter.endObject();
+      writeJson(attributes, new JsonWriter(out));
     } catch (IOException e) {
       throw new RuntimeException("Failed to generate attributes json");
     }
     return out.toString();
   }
 
-  private Map<String, Object> filterIllegalValues(Map<String, Object> attributes) {
-    return attributes
-        .entrySet()
-        .stream()
-        .filter(entry -> entry.getValue() != null)
-        .filter(
-            entry ->
-                !(entry.getValue() instanceof Number)
-                    || (Double.isFinite(((Number) entry.getValue()).doubleValue())))
-        .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+  /**
+   * Write the attributes as a JSON object straight into a writer, in a single pass over them,
+   * validating each value as it is written.
+   *
+   * @param attributes The attributes to write.
+   * @param jsonWriter The writer, positioned where a value can be written, such as after a name.
+   * @throws IOException If the writer fails.
+   */
+  public void writeJson(Map<String, Object> attributes, JsonWriter jsonWriter) throws IOException {
+    jsonWriter.beginObject();
+    writeMembers(attributes, null, jsonWriter);
+    jsonWriter.endObject();
+  }
+
+  /**
+   * Write the attributes as members of a JSON object that the caller has already begun, so that
+   * other members can be written alongside them without merging them into one map first.
+   *
+   * @param attributes The attributes to write.
+   * @param excludedKey The key of an attribute to leave out, because the caller writes its own
+   *     value for it, or null to write every attribute.
+   * @param jsonWriter The writer, positioned inside an object.
+   * @throws IOException If the writer fails.
+   */
+  public void writeMembers(
+      Map<String, Object> attributes, String excludedKey, JsonWriter jsonWriter)
+      throws IOException {
+    if (attributes instanceof FrozenAttributeMap) {
+      writeFrozen((FrozenAttributeMap) attributes, excludedKey, jsonWriter);
+    } else {
+      for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+        if (!isExcluded(attribute.getKey(), excludedKey)) {
+          writeAttribute(attribute.getKey(), attribute.getValue(), jsonWriter);
+        }
+      }
+    }
+  }
+
+  private static boolean isExcluded(String key, String excludedKey) {
+    return excludedKey != null && excludedKey.equals(key);
+  }
+
+  // Frozen attributes store numbers and booleans unboxed, so they are written without boxing.
+  private void writeFrozen(FrozenAttributeMap attributes, String excludedKey, JsonWriter jsonWriter)
+      throws IOException {
+    for (int i = 0; i < attributes.size(); i++) {
+      if (isExcluded(attributes.getKey(i), excludedKey)) {
+        continue;
+      }
+      switch (attributes.getType(i)) {
+        case STRING:
+          jsonWriter.name(attributes.getKey(i)).value(attributes.getString(i));
+          break;
+        case LONG:
+          jsonWriter.name(attributes.getKey(i)).value(attributes.getLong(i));
+          break;
+        case DOUBLE:
+          double number = attributes.getDouble(i);
+          if (Double.isFinite(number)) {
+            jsonWriter.name(attributes.getKey(i)).value(number);
+          }
+          break;
+        case BOOLEAN:
+          jsonWriter.name(attributes.getKey(i)).value(attributes.getBoolean(i));
+          break;
+        default:
+          writeAttribute(attributes.getKey(i), attributes.getObject(i), jsonWriter);
+      }
+    }
+  }
+
+  private void writeAttribute(String key, Object value, JsonWriter jsonWriter) throws IOException {
+    if (value instanceof Boolean) {
+      jsonWriter.name(key).value((boolean) value);
+    } else if (value instanceof Number) {
+      Number num = (Number) value;
+      if (Double.isFinite(num.doubleValue())) {
+        jsonWriter.name(key).value(num);
+      }
+    } else if (value != null) {
+      jsonWriter.name(key).value(String.valueOf(value));
+    }
   }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.json;
+
+import com.newrelic.telemetry.Attributes;
+
+/**
+ * Remembers the JSON of the last {@link Attributes#freeze() frozen} attributes it rendered, so that
+ * attributes shared by every batch, such as the common attributes of a buffer, are only serialized
+ * once. Frozen attributes cannot change, so the same instance always renders the same JSON.
+ * Attributes that are not frozen are rendered every time.
+ */
+public final class AttributesJsonCache {
+
+  private final AttributesJson attributesJson;
+  private volatile Rendered last;
+
+  public AttributesJsonCache(AttributesJson attributesJson) {
+    this.attributesJson = attributesJson;
+  }
+
+  /**
+   * @param attributes The attributes to render.
+   * @return The attributes as a JSON object.
+   */
+  public String toJson(Attributes attributes) {
+    if (!attributes.isFrozen()) {
+      return attributesJson.toJson(attributes.asMap());
+    }
+    Rendered rendered = last;
+    if (rendered == null || rendered.attributes != attributes) {
+      rendered = new Rendered(attributes, attributesJson.toJson(attributes.asMap()));
+      last = rendered;
+    }
+    return rendered.json;
+  }
+
+  private static final class Rendered {
+    private final Attributes attributes;
+    private final String json;
+
+    private Rendered(Attributes attributes, String json) {
+      this.attributes = attributes;
+      this.json = json;
+    }
+  }
+}
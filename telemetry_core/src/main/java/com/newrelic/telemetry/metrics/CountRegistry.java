@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import com.newrelic.telemetry.Attributes;
+import java.util.Collection;
+import java.util.function.LongSupplier;
+
+/**
+ * Pre-aggregates {@link Count} metrics. Each distinct name and set of attributes gets one {@link
+ * Counter}, and increments to it are summed in place, so that a counter which is incremented a
+ * million times in an interval is reported as a single {@link Count}.
+ *
+ * <p>Each {@link MetricBuffer} has a registry, which is harvested by {@link
+ * MetricBuffer#createBatch()}. Counters that were not incremented during an interval are not
+ * reported for it. Counters are never removed, so that handles held by callers stay valid.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class CountRegistry extends MetricRegistry<Counter> {
+
+  CountRegistry(LongSupplier clock) {
+    super(clock);
+  }
+
+  /**
+   * Find or create the counter for a name and set of attributes. The attributes are copied, so
+   * changing them afterwards does not affect the counter.
+   *
+   * @param name The name of the {@link Count} metrics to report.
+   * @param attributes The attributes of the {@link Count} metrics to report.
+   * @return The counter for this series.
+   */
+  public Counter counter(String name, Attributes attributes) {
+    return getOrCreate(name, attributes, Counter::new);
+  }
+
+  @Override
+  void harvest(Counter counter, long startTimeMs, long endTimeMs, Collection<Metric> metrics) {
+    double value = counter.harvest();
+    if (value != 0) {
+      MetricKey key = counter.getKey();
+      metrics.add(new Count(key.getName(), value, startTimeMs, endTimeMs, key.getAttributes()));
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A handle to one series of a {@link CountRegistry}. Increments are added to striped cells in
+ * place, and are reported as a single {@link Count} per harvest interval.
+ *
+ * <p>Keep a reference to the counter for a hot code path, rather than looking it up in the registry
+ * each time.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class Counter {
+  private final MetricKey key;
+  private final LongAdder whole = new LongAdder();
+  private final AtomicReference<DoubleAdder> fractional =
+      new AtomicReference<>(new DoubleAdder());
+  // The adder taken by the last harvest, and the amount it held then. Guarded by this.
+  private DoubleAdder retired = new DoubleAdder();
+  private double retiredAmount;
+
+  Counter(MetricKey key) {
+    this.key = key;
+  }
+
+  /** Add 1 to this counter. */
+  public void increment() {
+    whole.increment();
+  }
+
+  /**
+   * Add a whole amount to this counter.
+   *
+   * @param amount The amount to add.
+   */
+  public void add(long amount) {
+    whole.add(amount);
+  }
+
+  /**
+   * Add an amount to this counter.
+   *
+   * @param amount The amount to add.
+   */
+  public void add(double amount) {
+    fractional.get().add(amount);
+  }
+
+  /** @return The name of the {@link Count} metrics reported by this counter. */
+  public String getName() {
+    return key.getName();
+  }
+
+  MetricKey getKey() {
+    return key;
+  }
+
+  /**
+   * Take the amount added since the last harvest. Whole amounts are exact, so the amount taken is
+   * subtracted. Subtracting a sum of doubles from a striped adder can leave a rounding residue, so
+   * fractional amounts are instead added to a fresh adder from each harvest on. Amounts that were
+   * still being added to the adder taken by a harvest are picked up by the next one.
+   *
+   * @return The amount added since the last harvest.
+   */
+  synchronized double harvest() {
+    long wholeAmount = whole.sum();
+    whole.add(-wholeAmount);
+    // Unchanged cells sum to exactly the same amount, so this is 0 unless something was added late.
+    double lateAmount = retired.sum() - retiredAmount;
+    retired = fractional.getAndSet(new DoubleAdder());
+    retiredAmount = retired.sum();
+    return wholeAmount + retiredAmount + lateAmount;
+  }
+
+  @Override
+  public String toString() {
+    return "Counter{" + "key=" + key + '}';
+  }
+}
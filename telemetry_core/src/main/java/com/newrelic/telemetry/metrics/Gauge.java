@@ -36,6 +36,14 @@ public final class Gauge implements Metric {
     this.attributes = Utils.verifyNonNull(attributes).asMap();
   }
 
+  /** Create a Gauge for a registered series, sharing the series' unmodifiable attribute map. */
+  Gauge(MetricKey key, double value, long timestamp) {
+    this.name = key.getName();
+    this.value = value;
+    this.timestamp = timestamp;
+    this.attributes = key.getAttributeMap();
+  }
+
   /** @return The value of this Gauge, recorded at the point in time. */
   public double getValue() {
     return value;
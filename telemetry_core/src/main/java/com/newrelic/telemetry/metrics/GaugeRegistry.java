@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.util.Utils;
+import java.util.Collection;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples {@link Gauge} metrics from callbacks. Each distinct name and set of attributes is
+ * registered once, with a {@link DoubleSupplier} that is called for the current value every time
+ * the registry is harvested, so that nothing has to be built or copied for the gauge in between.
+ *
+ * <p>Each {@link MetricBuffer} has a registry, which is harvested by {@link
+ * MetricBuffer#createBatch()}. A supplier that returns {@link Double#NaN} has no value to report,
+ * and is skipped for that harvest. A supplier that throws is logged and skipped.
+ *
+ * <p>This class is thread-safe. Suppliers are called on the thread that creates the batch.
+ */
+public final class GaugeRegistry extends MetricRegistry<GaugeRegistry.Callback> {
+  private static final Logger logger = LoggerFactory.getLogger(GaugeRegistry.class);
+
+  GaugeRegistry(LongSupplier clock) {
+    super(clock);
+  }
+
+  /**
+   * Register the callback that supplies the value of a gauge. Registering the same name and
+   * attributes again replaces the callback. The attributes are copied, so changing them afterwards
+   * does not affect the gauge.
+   *
+   * @param name The name of the {@link Gauge} metrics to report.
+   * @param attributes The attributes of the {@link Gauge} metrics to report.
+   * @param value Supplies the value of the gauge at harvest time.
+   */
+  public void register(String name, Attributes attributes, DoubleSupplier value) {
+    Utils.verifyNonNull(value, "value supplier cannot be null");
+    getOrCreate(name, attributes, key -> new Callback(key, value)).value = value;
+  }
+
+  @Override
+  void harvest(Callback callback, long startTimeMs, long endTimeMs, Collection<Metric> metrics) {
+    double value;
+    try {
+      value = callback.value.getAsDouble();
+    } catch (RuntimeException e) {
+      logger.warn("Failed to sample gauge " + callback.key.getName(), e);
+      return;
+    }
+    if (!Double.isNaN(value)) {
+      metrics.add(new Gauge(callback.key, value, endTimeMs));
+    }
+  }
+
+  static final class Callback {
+    private final MetricKey key;
+    private volatile DoubleSupplier value;
+
+    private Callback(MetricKey key, DoubleSupplier value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
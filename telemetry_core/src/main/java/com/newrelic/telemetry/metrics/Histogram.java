@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.util.Utils;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A {@link Metric} that represents the distribution of a set of observations over an interval, as
+ * a {@link HistogramSketch}.
+ *
+ * <p>The Metric API has no distribution type, so a histogram is sent as a summary with the count,
+ * sum, minimum and maximum of the observations, and a gauge named {@code <name>.percentiles} for
+ * each of the requested percentiles, with a {@code percentile} attribute holding the percentile
+ * (for example, 99.0).
+ *
+ * <p><b>Important</b>: Values are not validated on construction, and this class's methods do not
+ * throw.
+ */
+public final class Histogram implements Metric {
+
+  /** The quantiles reported by default: the median, and the 90th and 99th percentiles. */
+  static final double[] DEFAULT_QUANTILES = {0.5, 0.9, 0.99};
+
+  private final String name;
+  private final HistogramSketch sketch;
+  private final double[] quantiles;
+  private final long startTimeMs;
+  private final long endTimeMs;
+  private final Map<String, Object> attributes;
+
+  /**
+   * Create a new instance of a histogram metric.
+   *
+   * @param name The name for this Histogram metric.
+   * @param sketch The distribution of the observations. The sketch is copied.
+   * @param quantiles The quantiles to report, each between 0 and 1.
+   * @param startTimeMs The start time for the interval over which this Histogram applies, in
+   *     milliseconds since epoch.
+   * @param endTimeMs The end time for the interval over which this Histogram applies, in
+   *     milliseconds since epoch.
+   * @param attributes Dimensional attributes, as key-value pairs, associated with this instance.
+   */
+  public Histogram(
+      String name,
+      HistogramSketch sketch,
+      double[] quantiles,
+      long startTimeMs,
+      long endTimeMs,
+      Attributes attributes) {
+    this.name = Utils.verifyNonNull(name);
+    this.sketch = Utils.verifyNonNull(sketch).copy();
+    this.quantiles = Utils.verifyNonNull(quantiles).clone();
+    this.startTimeMs = startTimeMs;
+    this.endTimeMs = endTimeMs;
+    this.attributes = Utils.verifyNonNull(attributes).asMap();
+  }
+
+  /** Create a Histogram for a registered series, taking ownership of the sketch. */
+  Histogram(MetricKey key, HistogramSketch sketch, double[] quantiles, long start, long end) {
+    this.name = key.getName();
+    this.sketch = sketch;
+    this.quantiles = quantiles;
+    this.startTimeMs = start;
+    this.endTimeMs = end;
+    this.attributes = key.getAttributeMap();
+  }
+
+  /** @return The name for this Histogram metric. */
+  public String getName() {
+    return name;
+  }
+
+  /** @return The number of observations in the interval. */
+  public long getCount() {
+    return sketch.getCount();
+  }
+
+  /** @return The total of the observations in the interval. */
+  public double getSum() {
+    return sketch.getSum();
+  }
+
+  /** @return The minimum of the observations in the interval. */
+  public double getMin() {
+    return sketch.getMin();
+  }
+
+  /** @return The maximum of the observations in the interval. */
+  public double getMax() {
+    return sketch.getMax();
+  }
+
+  /**
+   * Estimate the value at a quantile of the observations in the interval.
+   *
+   * @param quantile The quantile, between 0 and 1 inclusive.
+   * @return The estimated value, or NaN if there were no observations.
+   */
+  public double getValueAtQuantile(double quantile) {
+    return sketch.getValueAtQuantile(quantile);
+  }
+
+  /** @return The quantiles that are reported for this histogram. */
+  public double[] getQuantiles() {
+    return quantiles.clone();
+  }
+
+  /**
+   * @return The start time for the interval over which this Histogram applies, in milliseconds
+   *     since epoch.
+   */
+  public long getStartTimeMs() {
+    return startTimeMs;
+  }
+
+  /**
+   * @return The end time for the interval over which this Histogram applies, in milliseconds since
+   *     epoch.
+   */
+  public long getEndTimeMs() {
+    return endTimeMs;
+  }
+
+  /** @return Dimensional attributes, as key-value pairs, associated with this Histogram. */
+  public Map<String, Object> getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    Histogram histogram = (Histogram) o;
+
+    if (getStartTimeMs() != histogram.getStartTimeMs()) return false;
+    if (getEndTimeMs() != histogram.getEndTimeMs()) return false;
+    if (!getName().equals(histogram.getName())) return false;
+    if (!sketch.equals(histogram.sketch)) return false;
+    if (!Arrays.equals(quantiles, histogram.quantiles)) return false;
+    return getAttributes().equals(histogram.getAttributes());
+  }
+
+  @Override
+  public int hashCode() {
+    int result = getName().hashCode();
+    result = 31 * result + sketch.hashCode();
+    result = 31 * result + Arrays.hashCode(quantiles);
+    result = 31 * result + (int) (getStartTimeMs() ^ (getStartTimeMs() >>> 32));
+    result = 31 * result + (int) (getEndTimeMs() ^ (getEndTimeMs() >>> 32));
+    result = 31 * result + getAttributes().hashCode();
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "Histogram{"
+        + "name='"
+        + name
+        + '\''
+        + ", sketch="
+        + sketch
+        + ", quantiles="
+        + Arrays.toString(quantiles)
+        + ", startTimeMs="
+        + startTimeMs
+        + ", endTimeMs="
+        + endTimeMs
+        + ", attributes="
+        + attributes
+        + '}';
+  }
+}
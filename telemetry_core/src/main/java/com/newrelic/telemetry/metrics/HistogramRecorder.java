@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+/**
+ * A handle to one series of a {@link HistogramRegistry}. Observations are recorded into a {@link
+ * HistogramSketch}, and are reported as a single {@link Histogram} per harvest interval.
+ *
+ * <p>To keep recording threads from contending with each other, observations are spread over a
+ * few stripes, each with its own sketch and lock, chosen by thread. The stripes are merged when the
+ * recorder is harvested.
+ *
+ * <p>Keep a reference to the recorder for a hot code path, rather than looking it up in the
+ * registry each time.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class HistogramRecorder {
+  private static final int MAX_STRIPES = 16;
+
+  private final MetricKey key;
+  private final double[] quantiles;
+  private final HistogramSketch[] stripes;
+
+  HistogramRecorder(MetricKey key, double[] quantiles) {
+    this.key = key;
+    this.quantiles = quantiles;
+    int processors = Runtime.getRuntime().availableProcessors();
+    int stripeCount = Integer.highestOneBit(Math.min(MAX_STRIPES, Math.max(1, processors)));
+    this.stripes = new HistogramSketch[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new HistogramSketch();
+    }
+  }
+
+  /**
+   * Record an observation. Non-finite values are ignored.
+   *
+   * @param value The observed value.
+   */
+  public void record(double value) {
+    HistogramSketch stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+    synchronized (stripe) {
+      stripe.record(value);
+    }
+  }
+
+  /** @return The name of the {@link Histogram} metrics reported by this recorder. */
+  public String getName() {
+    return key.getName();
+  }
+
+  MetricKey getKey() {
+    return key;
+  }
+
+  double[] getQuantiles() {
+    return quantiles;
+  }
+
+  /**
+   * Move the observations since the last harvest into a new sketch.
+   *
+   * @return The observations since the last harvest.
+   */
+  HistogramSketch harvest() {
+    HistogramSketch merged = new HistogramSketch();
+    for (HistogramSketch stripe : stripes) {
+      synchronized (stripe) {
+        merged.merge(stripe);
+        stripe.clear();
+      }
+    }
+    return merged;
+  }
+
+  @Override
+  public String toString() {
+    return "HistogramRecorder{" + "key=" + key + '}';
+  }
+}
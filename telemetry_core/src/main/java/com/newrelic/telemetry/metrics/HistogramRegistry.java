@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.util.Utils;
+import java.util.Collection;
+import java.util.function.LongSupplier;
+
+/**
+ * Aggregates raw observations into {@link Histogram} metrics, so that percentiles can be reported
+ * without sending every observation. Each distinct name and set of attributes gets one {@link
+ * HistogramRecorder}, which records into a bounded-memory {@link HistogramSketch} and is reported
+ * as one {@link Histogram} per interval.
+ *
+ * <p>Each {@link MetricBuffer} has a registry, which is harvested by {@link
+ * MetricBuffer#createBatch()}. Recorders with no observations during an interval are not reported
+ * for it. Recorders are never removed, so that handles held by callers stay valid.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class HistogramRegistry extends MetricRegistry<HistogramRecorder> {
+
+  HistogramRegistry(LongSupplier clock) {
+    super(clock);
+  }
+
+  /**
+   * Find or create the recorder for a name and set of attributes, reporting the median and the
+   * 90th and 99th percentiles. The attributes are copied, so changing them afterwards does not
+   * affect the recorder.
+   *
+   * @param name The name of the {@link Histogram} metrics to report.
+   * @param attributes The attributes of the {@link Histogram} metrics to report.
+   * @return The recorder for this series.
+   */
+  public HistogramRecorder histogram(String name, Attributes attributes) {
+    return histogram(name, attributes, Histogram.DEFAULT_QUANTILES);
+  }
+
+  /**
+   * Find or create the recorder for a name and set of attributes. The quantiles only take effect
+   * when the recorder is created.
+   *
+   * @param name The name of the {@link Histogram} metrics to report.
+   * @param attributes The attributes of the {@link Histogram} metrics to report.
+   * @param quantiles The quantiles to report, each between 0 and 1. For example, 0.99 for the 99th
+   *     percentile.
+   * @return The recorder for this series.
+   */
+  public HistogramRecorder histogram(String name, Attributes attributes, double... quantiles) {
+    Utils.verifyNonNull(quantiles, "quantiles cannot be null");
+    for (double quantile : quantiles) {
+      if (!(quantile >= 0 && quantile <= 1)) {
+        throw new IllegalArgumentException("quantiles must be between 0 and 1");
+      }
+    }
+    double[] copy = quantiles.clone();
+    return getOrCreate(name, attributes, key -> new HistogramRecorder(key, copy));
+  }
+
+  @Override
+  void harvest(
+      HistogramRecorder recorder, long startTimeMs, long endTimeMs, Collection<Metric> metrics) {
+    HistogramSketch sketch = recorder.harvest();
+    if (sketch.getCount() > 0) {
+      double[] quantiles = recorder.getQuantiles();
+      metrics.add(new Histogram(recorder.getKey(), sketch, quantiles, startTimeMs, endTimeMs));
+    }
+  }
+}
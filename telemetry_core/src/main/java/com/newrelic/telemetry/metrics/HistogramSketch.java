@@ -0,0 +1,394 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable, bounded-memory summary of a distribution of values, from which quantiles can be
+ * estimated with a fixed relative accuracy.
+ *
+ * <p>Values are counted in buckets whose boundaries grow exponentially (DDSketch-style), so that
+ * any quantile is estimated to within the relative accuracy of its true value, however many values
+ * are recorded. Positive and negative values are counted in separate arrays of buckets, and each
+ * array is limited to a maximum number of buckets. When a distribution spans more buckets than
+ * that, the lowest buckets are merged, which only loses accuracy for the smallest values.
+ *
+ * <p>Non-finite values are ignored.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class HistogramSketch {
+
+  /** The default relative accuracy of quantile estimates, 1%. */
+  public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+  /** The default maximum number of buckets for each of the positive and negative values. */
+  public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+  private final double relativeAccuracy;
+  private final double gamma;
+  private final double logGamma;
+  private final Buckets positive;
+  private final Buckets negative;
+  private long zeroCount;
+  private long count;
+  private double sum;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  /** Create an empty sketch with the default relative accuracy and maximum number of buckets. */
+  public HistogramSketch() {
+    this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+  }
+
+  /**
+   * Create an empty sketch.
+   *
+   * @param relativeAccuracy The relative accuracy of quantile estimates, between 0 and 1
+   *     exclusive.
+   * @param maxBuckets The maximum number of buckets for each of the positive and negative values.
+   */
+  public HistogramSketch(double relativeAccuracy, int maxBuckets) {
+    if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+      throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1");
+    }
+    if (maxBuckets < 1) {
+      throw new IllegalArgumentException("maxBuckets must be positive");
+    }
+    this.relativeAccuracy = relativeAccuracy;
+    this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    this.logGamma = Math.log(gamma);
+    this.positive = new Buckets(maxBuckets);
+    this.negative = new Buckets(maxBuckets);
+  }
+
+  private HistogramSketch(HistogramSketch original) {
+    this.relativeAccuracy = original.relativeAccuracy;
+    this.gamma = original.gamma;
+    this.logGamma = original.logGamma;
+    this.positive = new Buckets(original.positive);
+    this.negative = new Buckets(original.negative);
+    this.zeroCount = original.zeroCount;
+    this.count = original.count;
+    this.sum = original.sum;
+    this.min = original.min;
+    this.max = original.max;
+  }
+
+  /** Creates a copy. Changes to the new copy will not affect the original and vice versa. */
+  public HistogramSketch copy() {
+    return new HistogramSketch(this);
+  }
+
+  /**
+   * Record a value. Non-finite values are ignored.
+   *
+   * @param value The value to record.
+   */
+  public void record(double value) {
+    if (!Double.isFinite(value)) {
+      return;
+    }
+    if (value > 0) {
+      positive.add(index(value), 1);
+    } else if (value < 0) {
+      negative.add(index(-value), 1);
+    } else {
+      zeroCount++;
+    }
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Add all of the values recorded by another sketch to this one.
+   *
+   * @param other A sketch with the same relative accuracy as this one.
+   */
+  public void merge(HistogramSketch other) {
+    if (other.relativeAccuracy != relativeAccuracy) {
+      throw new IllegalArgumentException("Cannot merge sketches with different accuracies");
+    }
+    if (other.count == 0) {
+      return;
+    }
+    positive.addAll(other.positive);
+    negative.addAll(other.negative);
+    zeroCount += other.zeroCount;
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /** Remove all recorded values, keeping the memory allocated for buckets. */
+  public void clear() {
+    positive.clear();
+    negative.clear();
+    zeroCount = 0;
+    count = 0;
+    sum = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Estimate the value at a quantile of the recorded values.
+   *
+   * @param quantile The quantile, between 0 and 1 inclusive. For example, 0.99 for the 99th
+   *     percentile.
+   * @return The estimated value, or NaN if no values have been recorded.
+   */
+  public double getValueAtQuantile(double quantile) {
+    if (!(quantile >= 0 && quantile <= 1)) {
+      throw new IllegalArgumentException("quantile must be between 0 and 1");
+    }
+    if (count == 0) {
+      return Double.NaN;
+    }
+    long rank = (long) (quantile * (count - 1));
+    double value;
+    if (rank < negative.total) {
+      value = -value(negative.indexAtRank(negative.total - 1 - rank));
+    } else if (rank < negative.total + zeroCount) {
+      value = 0;
+    } else {
+      value = value(positive.indexAtRank(rank - negative.total - zeroCount));
+    }
+    return Math.max(min, Math.min(max, value));
+  }
+
+  /** @return The number of values recorded. */
+  public long getCount() {
+    return count;
+  }
+
+  /** @return The total of the values recorded. */
+  public double getSum() {
+    return sum;
+  }
+
+  /** @return The smallest value recorded, or positive infinity if there are none. */
+  public double getMin() {
+    return min;
+  }
+
+  /** @return The largest value recorded, or negative infinity if there are none. */
+  public double getMax() {
+    return max;
+  }
+
+  /** @return The relative accuracy of quantile estimates. */
+  public double getRelativeAccuracy() {
+    return relativeAccuracy;
+  }
+
+  // Bucket i holds the values in (gamma^(i-1), gamma^i].
+  private int index(double value) {
+    return (int) Math.ceil(Math.log(value) / logGamma);
+  }
+
+  // The point of bucket i with the same relative distance to both of its bounds.
+  private double value(int index) {
+    return 2 * Math.pow(gamma, index) / (gamma + 1);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    HistogramSketch that = (HistogramSketch) o;
+
+    return Double.compare(that.relativeAccuracy, relativeAccuracy) == 0
+        && zeroCount == that.zeroCount
+        && count == that.count
+        && Double.compare(that.sum, sum) == 0
+        && Double.compare(that.min, min) == 0
+        && Double.compare(that.max, max) == 0
+        && positive.equals(that.positive)
+        && negative.equals(that.negative);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Double.hashCode(relativeAccuracy);
+    result = 31 * result + Long.hashCode(count);
+    result = 31 * result + Double.hashCode(sum);
+    result = 31 * result + positive.hashCode();
+    result = 31 * result + negative.hashCode();
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "HistogramSketch{"
+        + "count="
+        + count
+        + ", sum="
+        + sum
+        + ", min="
+        + min
+        + ", max="
+        + max
+        + ", relativeAccuracy="
+        + relativeAccuracy
+        + '}';
+  }
+
+  /**
+   * A dense array of bucket counts, covering a contiguous range of bucket indexes. The array grows
+   * as needed, up to the maximum number of buckets, after which the lowest buckets are merged.
+   */
+  private static final class Buckets {
+    private static final int INITIAL_BUCKETS = 64;
+
+    private final int maxBuckets;
+    private long[] counts;
+    private int offset; // The bucket index of counts[0]
+    private int minIndex = Integer.MAX_VALUE;
+    private int maxIndex = Integer.MIN_VALUE;
+    private long total;
+
+    private Buckets(int maxBuckets) {
+      this.maxBuckets = maxBuckets;
+      this.counts = new long[0];
+    }
+
+    private Buckets(Buckets original) {
+      this.maxBuckets = original.maxBuckets;
+      this.counts = original.counts.clone();
+      this.offset = original.offset;
+      this.minIndex = original.minIndex;
+      this.maxIndex = original.maxIndex;
+      this.total = original.total;
+    }
+
+    private boolean isEmpty() {
+      return total == 0;
+    }
+
+    private void add(int index, long n) {
+      if (isEmpty()) {
+        minIndex = index;
+        maxIndex = index;
+        ensureRange(index, index);
+      } else if (index < minIndex) {
+        // Too low to keep without exceeding the maximum: count it in the lowest bucket allowed.
+        index = Math.max(index, maxIndex - maxBuckets + 1);
+        if (index < minIndex) {
+          ensureRange(index, maxIndex);
+          minIndex = index;
+        }
+      } else if (index > maxIndex) {
+        int lowest = index - maxBuckets + 1;
+        if (lowest > minIndex) {
+          collapseBelow(lowest, index);
+        } else {
+          ensureRange(minIndex, index);
+        }
+        maxIndex = index;
+      }
+      counts[index - offset] += n;
+      total += n;
+    }
+
+    /** Merge all buckets below the lowest index into the lowest index, to make room up to high. */
+    private void collapseBelow(int lowest, int high) {
+      long collapsed = 0;
+      int end = Math.min(lowest - 1, maxIndex);
+      for (int i = minIndex; i <= end; i++) {
+        collapsed += counts[i - offset];
+        counts[i - offset] = 0;
+      }
+      minIndex = lowest;
+      maxIndex = Math.max(maxIndex, lowest);
+      ensureRange(lowest, high);
+      counts[lowest - offset] += collapsed;
+    }
+
+    /** Make sure the array covers the range of indexes from low to high, inclusive. */
+    private void ensureRange(int low, int high) {
+      if (low >= offset && high < offset + counts.length) {
+        return;
+      }
+      int needed = high - low + 1;
+      int grown = Math.min(Math.max(INITIAL_BUCKETS, counts.length * 2), maxBuckets);
+      int length = Math.max(needed, grown);
+      int newOffset = low - (length - needed) / 2;
+      long[] newCounts = new long[length];
+      int from = Math.max(minIndex, offset);
+      int to = Math.min(maxIndex, offset + counts.length - 1);
+      if (!isEmpty() && from <= to) {
+        System.arraycopy(counts, from - offset, newCounts, from - newOffset, to - from + 1);
+      }
+      counts = newCounts;
+      offset = newOffset;
+    }
+
+    private void addAll(Buckets other) {
+      if (other.isEmpty()) {
+        return;
+      }
+      // Highest first, so that collapsing happens at most once.
+      for (int i = other.maxIndex; i >= other.minIndex; i--) {
+        long n = other.counts[i - other.offset];
+        if (n != 0) {
+          add(i, n);
+        }
+      }
+    }
+
+    /** @return The index of the bucket holding the value of the given rank, counting from 0. */
+    private int indexAtRank(long rank) {
+      long seen = 0;
+      for (int i = minIndex; i < maxIndex; i++) {
+        seen += counts[i - offset];
+        if (seen > rank) {
+          return i;
+        }
+      }
+      return maxIndex;
+    }
+
+    private void clear() {
+      if (!isEmpty()) {
+        Arrays.fill(counts, minIndex - offset, maxIndex - offset + 1, 0);
+      }
+      minIndex = Integer.MAX_VALUE;
+      maxIndex = Integer.MIN_VALUE;
+      total = 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Buckets that = (Buckets) o;
+
+      if (total != that.total) return false;
+      if (isEmpty()) return true;
+      if (minIndex != that.minIndex || maxIndex != that.maxIndex) return false;
+      for (int i = minIndex; i <= maxIndex; i++) {
+        if (counts[i - offset] != that.counts[i - that.offset]) return false;
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = Long.hashCode(total);
+      if (!isEmpty()) {
+        for (int i = minIndex; i <= maxIndex; i++) {
+          result = 31 * result + Long.hashCode(counts[i - offset]);
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -17,5 +17,6 @@ import com.newrelic.telemetry.Telemetry;
  * @see Gauge
  * @see Count
  * @see Summary
+ * @see Histogram
  */
 public interface Metric extends Telemetry {}
@@ -16,6 +16,19 @@ public class MetricBatch extends TelemetryBatch<Metric> {
     super(metrics, commonAttributes);
   }
 
+  /**
+   * The attributes shared by every metric in this batch. Batches created by a {@link MetricBuffer}
+   * share the buffer's {@link Attributes#freeze() frozen} common attributes, so changing them
+   * throws {@link UnsupportedOperationException}. Change a {@link Attributes#copy() copy} and
+   * create a new batch with it instead.
+   *
+   * @return The common attributes of this batch.
+   */
+  @Override
+  public Attributes getCommonAttributes() {
+    return super.getCommonAttributes();
+  }
+
   @Override
   public TelemetryBatch<Metric> createSubBatch(Collection<Metric> telemetry) {
     return new MetricBatch(telemetry, getCommonAttributes());
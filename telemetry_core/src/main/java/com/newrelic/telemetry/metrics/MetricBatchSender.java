@@ -7,15 +7,19 @@ package com.newrelic.telemetry.metrics;
 import com.newrelic.telemetry.Response;
 import com.newrelic.telemetry.SenderConfiguration;
 import com.newrelic.telemetry.SenderConfiguration.SenderConfigurationBuilder;
+import com.newrelic.telemetry.exceptions.DiscardBatchException;
 import com.newrelic.telemetry.exceptions.ResponseException;
+import com.newrelic.telemetry.exceptions.RetryWithSplitException;
 import com.newrelic.telemetry.json.AttributesJson;
 import com.newrelic.telemetry.metrics.json.MetricBatchJsonCommonBlockWriter;
 import com.newrelic.telemetry.metrics.json.MetricBatchJsonTelemetryBlockWriter;
 import com.newrelic.telemetry.metrics.json.MetricBatchMarshaller;
 import com.newrelic.telemetry.metrics.json.MetricToJson;
 import com.newrelic.telemetry.transport.BatchDataSender;
+import com.newrelic.telemetry.transport.CompressedPayload;
 import com.newrelic.telemetry.util.Utils;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,8 +67,56 @@ public class MetricBatchSender {
     logger.debug(
         "Sending a metric batch (number of metrics: {}) to the New Relic metric ingest endpoint)",
         batch.size());
-    String json = marshaller.toJson(batch);
-    return sender.send(json);
+    return sender.send(out -> marshaller.toJson(batch, out));
+  }
+
+  /**
+   * Marshal and compress a batch of metrics without sending it. The result can be sent, or sent
+   * again, with {@link #sendPayload(CompressedPayload)} without repeating that work.
+   *
+   * @param batch The batch to compress.
+   * @return The compressed payload.
+   * @throws DiscardBatchException If the batch could not be serialized.
+   * @throws RetryWithSplitException If the batch compresses to more than the configured maximum
+   *     payload size, and should be split.
+   */
+  public CompressedPayload compress(MetricBatch batch)
+      throws DiscardBatchException, RetryWithSplitException {
+    return sender.compress(out -> marshaller.toJson(batch, out));
+  }
+
+  /**
+   * Send a payload created by {@link #compress(MetricBatch)} to New Relic.
+   *
+   * @param payload The payload to send.
+   * @return The response from the ingest API.
+   * @throws ResponseException In cases where the payload is unable to be successfully sent, one of
+   *     the subclasses of {@link ResponseException} will be thrown.
+   */
+  public Response sendPayload(CompressedPayload payload) throws ResponseException {
+    logger.debug(
+        "Sending a compressed metric payload (size: {}) to the New Relic metric ingest endpoint)",
+        payload.size());
+    return sender.send(payload);
+  }
+
+  /**
+   * Send a batch of metrics to New Relic without blocking on the HTTP round-trip. The batch is
+   * marshalled and compressed on the calling thread.
+   *
+   * @param batch The batch to send.
+   * @return A future holding the response from the ingest API. If the batch could not be sent, the
+   *     future completes exceptionally with one of the subclasses of {@link ResponseException}.
+   */
+  public CompletableFuture<Response> sendBatchAsync(MetricBatch batch) {
+    if (batch == null || batch.size() == 0) {
+      logger.debug("Skipped sending of an empty metric batch.");
+      return CompletableFuture.completedFuture(new Response(202, "Ignored", "Empty batch"));
+    }
+    logger.debug(
+        "Sending a metric batch asynchronously (number of metrics: {}) to the New Relic metric ingest endpoint)",
+        batch.size());
+    return sender.sendAsync(out -> marshaller.toJson(batch, out));
   }
 
   /**
@@ -88,7 +140,10 @@ public class MetricBatchSender {
             configuration.getApiKey(),
             url,
             configuration.isAuditLoggingEnabled(),
-            configuration.getSecondaryUserAgent());
+            configuration.getSecondaryUserAgent(),
+            configuration.getCompressionPool(),
+            configuration.getCompression(),
+            configuration.getMaxPayloadBytes());
 
     return new MetricBatchSender(marshaller, sender);
   }
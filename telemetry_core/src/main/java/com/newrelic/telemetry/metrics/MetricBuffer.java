@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -19,6 +20,14 @@ import org.slf4j.LoggerFactory;
  * Metrics API, call {@link #createBatch()} and then {@link
  * MetricBatchSender#sendBatch(MetricBatch)}.
  *
+ * <p>Counts that are incremented often should be recorded through the buffer's {@link
+ * #getCountRegistry() count registry} instead, which sums the increments to each series in place
+ * and adds one {@link Count} per series to each batch. Likewise, raw observations can be recorded
+ * through the {@link #getSummaryRegistry() summary registry}, which folds them into one {@link
+ * Summary} per series, or through the {@link #getHistogramRegistry() histogram registry}, which
+ * sketches their distribution and reports percentiles. Gauges can be registered once with the
+ * {@link #getGaugeRegistry() gauge registry}, which samples them for every batch.
+ *
  * <p>This class is thread-safe.
  */
 public final class MetricBuffer {
@@ -28,14 +37,33 @@ public final class MetricBuffer {
 
   private final Attributes commonAttributes;
 
+  private final CountRegistry countRegistry;
+
+  private final SummaryRegistry summaryRegistry;
+
+  private final GaugeRegistry gaugeRegistry;
+
+  private final HistogramRegistry histogramRegistry;
+
   /**
    * Create a new buffer with the provided common set of attributes.
    *
    * @param commonAttributes These attributes will be appended (by the New Relic backend) to every
-   *     {@link Metric} in this buffer.
+   *     {@link Metric} in this buffer. They are {@link Attributes#freeze() frozen}, so that every
+   *     batch shares them, and their JSON is only built once. The buffer keeps a frozen copy:
+   *     changing these attributes afterwards does not change the common attributes of its batches,
+   *     and the common attributes of its batches cannot be changed.
    */
   public MetricBuffer(Attributes commonAttributes) {
-    this.commonAttributes = Utils.verifyNonNull(commonAttributes);
+    this(commonAttributes, System::currentTimeMillis);
+  }
+
+  MetricBuffer(Attributes commonAttributes, LongSupplier clock) {
+    this.commonAttributes = Utils.verifyNonNull(commonAttributes).freeze();
+    this.countRegistry = new CountRegistry(clock);
+    this.summaryRegistry = new SummaryRegistry(clock);
+    this.gaugeRegistry = new GaugeRegistry(clock);
+    this.histogramRegistry = new HistogramRegistry(clock);
   }
 
   /**
@@ -47,29 +75,77 @@ public final class MetricBuffer {
     metrics.add(metric);
   }
 
+  /**
+   * @return The registry of pre-aggregated counters, which are reported in each {@link
+   *     MetricBatch} created by this buffer.
+   */
+  public CountRegistry getCountRegistry() {
+    return countRegistry;
+  }
+
+  /**
+   * @return The registry of summary recorders, which are reported in each {@link MetricBatch}
+   *     created by this buffer.
+   */
+  public SummaryRegistry getSummaryRegistry() {
+    return summaryRegistry;
+  }
+
+  /**
+   * @return The registry of gauge callbacks, which are sampled for each {@link MetricBatch} created
+   *     by this buffer.
+   */
+  public GaugeRegistry getGaugeRegistry() {
+    return gaugeRegistry;
+  }
+
+  /**
+   * @return The registry of histogram recorders, which are reported in each {@link MetricBatch}
+   *     created by this buffer.
+   */
+  public HistogramRegistry getHistogramRegistry() {
+    return histogramRegistry;
+  }
+
   /**
    * Creates a new {@link MetricBatch} from the contents of this buffer, then clears the contents of
    * this buffer.
    *
    * <p>{@link Metric Metrics} added to this buffer by other threads during this method call will
    * either be added to the {@link MetricBatch} being created, or will be saved for the next {@link
-   * MetricBatch}.
+   * MetricBatch}. The batch also holds a {@link Count} for each counter in the {@link
+   * #getCountRegistry() count registry} that was incremented since the previous batch, and a {@link
+   * Summary} for each recorder in the {@link #getSummaryRegistry() summary registry} with
+   * observations since then, and likewise a {@link Histogram} for each recorder in the {@link
+   * #getHistogramRegistry() histogram registry}. Every gauge in the {@link #getGaugeRegistry()
+   * gauge registry} is sampled, and added as a {@link Gauge}.
    *
    * @return A new {@link MetricBatch} with an immutable collection of {@link Metric Metrics}.
    */
   public MetricBatch createBatch() {
     logger.debug("Creating metric batch.");
-    Collection<Metric> metrics = new ArrayList<>(this.metrics.size());
+    Collection<Metric> metrics = new ArrayList<>(this.metrics.size() + registeredSeries());
 
     // Drain the metric buffer and return the batch
     Metric metric;
     while ((metric = this.metrics.poll()) != null) {
       metrics.add(metric);
     }
+    countRegistry.harvest(metrics);
+    summaryRegistry.harvest(metrics);
+    gaugeRegistry.harvest(metrics);
+    histogramRegistry.harvest(metrics);
 
     return new MetricBatch(metrics, this.commonAttributes);
   }
 
+  private int registeredSeries() {
+    return countRegistry.size()
+        + summaryRegistry.size()
+        + gaugeRegistry.size()
+        + histogramRegistry.size();
+  }
+
   Queue<Metric> getMetrics() {
     return metrics;
   }
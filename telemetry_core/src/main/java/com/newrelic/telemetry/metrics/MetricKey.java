@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.util.Utils;
+import java.util.Map;
+
+/**
+ * Identifies one time series in a metric registry: a metric name, and the attributes it was
+ * registered with. The attributes are frozen, so that later changes by the caller do not move the
+ * series to a different key, and so that their hash and map form are only computed once.
+ */
+final class MetricKey {
+  private final String name;
+  private final Attributes attributes;
+  private final int hash;
+
+  MetricKey(String name, Attributes attributes) {
+    this.name = Utils.verifyNonNull(name);
+    this.attributes = Utils.verifyNonNull(attributes).freeze();
+    this.hash = 31 * name.hashCode() + this.attributes.hashCode();
+  }
+
+  String getName() {
+    return name;
+  }
+
+  Attributes getAttributes() {
+    return attributes;
+  }
+
+  /** @return The attributes as an unmodifiable map, which is shared rather than copied. */
+  Map<String, Object> getAttributeMap() {
+    return attributes.asMap();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    MetricKey that = (MetricKey) o;
+
+    return hash == that.hash && name.equals(that.name) && attributes.equals(that.attributes);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return "MetricKey{" + "name='" + name + '\'' + ", attributes=" + attributes + '}';
+  }
+}
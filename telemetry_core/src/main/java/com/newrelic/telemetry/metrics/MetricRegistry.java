@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import com.newrelic.telemetry.Attributes;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * The common part of the registries of a {@link MetricBuffer}: one instrument per name and set of
+ * attributes, harvested into {@link Metric Metrics} covering the interval since the previous
+ * harvest. Instruments are never removed, so that handles held by callers stay valid.
+ *
+ * @param <I> The type of instrument held by the registry.
+ */
+abstract class MetricRegistry<I> {
+  private final ConcurrentMap<MetricKey, I> instruments = new ConcurrentHashMap<>();
+  private final LongSupplier clock;
+  private long intervalStartMs;
+
+  MetricRegistry(LongSupplier clock) {
+    this.clock = clock;
+    this.intervalStartMs = clock.getAsLong();
+  }
+
+  I getOrCreate(String name, Attributes attributes, Function<MetricKey, I> factory) {
+    MetricKey key = new MetricKey(name, attributes);
+    I instrument = instruments.get(key);
+    if (instrument != null) {
+      return instrument;
+    }
+    return instruments.computeIfAbsent(key, factory);
+  }
+
+  /** @return The number of series in this registry. */
+  public int size() {
+    return instruments.size();
+  }
+
+  /** Add the metrics for every instrument, covering the interval since the last harvest. */
+  synchronized void harvest(Collection<Metric> metrics) {
+    long startTimeMs = intervalStartMs;
+    long endTimeMs = clock.getAsLong();
+    intervalStartMs = endTimeMs;
+    for (I instrument : instruments.values()) {
+      harvest(instrument, startTimeMs, endTimeMs, metrics);
+    }
+  }
+
+  abstract void harvest(I instrument, long startTimeMs, long endTimeMs, Collection<Metric> metrics);
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import com.newrelic.telemetry.util.WriterPhaser;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A handle to one series of a {@link SummaryRegistry}. Observations are folded into a count, sum,
+ * minimum and maximum, and are reported as a single {@link Summary} per harvest interval.
+ *
+ * <p>Recording never blocks. Observations go to one of two sets of cells, and a harvest switches
+ * recording to the other set and then waits for observations already in progress to finish, so
+ * that each {@link Summary} is consistent: every observation is counted in exactly one interval,
+ * with its value in the same interval's sum, minimum and maximum.
+ *
+ * <p>Keep a reference to the recorder for a hot code path, rather than looking it up in the
+ * registry each time.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class SummaryRecorder {
+  private final MetricKey key;
+  private final Cell[] cells = {new Cell(), new Cell()};
+  private final WriterPhaser phaser = new WriterPhaser();
+
+  SummaryRecorder(MetricKey key) {
+    this.key = key;
+  }
+
+  /**
+   * Record an observation.
+   *
+   * @param value The observed value.
+   */
+  public void record(double value) {
+    long epoch = phaser.enterWriter();
+    try {
+      cells[WriterPhaser.phaseIndex(epoch)].record(value);
+    } finally {
+      phaser.exitWriter(epoch);
+    }
+  }
+
+  /** @return The name of the {@link Summary} metrics reported by this recorder. */
+  public String getName() {
+    return key.getName();
+  }
+
+  MetricKey getKey() {
+    return key;
+  }
+
+  /**
+   * Switch recording to the other set of cells, and wait for the observations that were already
+   * being recorded to finish. Must only be called by one thread at a time.
+   *
+   * @return The cell holding the observations since the last flip. It must be {@link Cell#reset()
+   *     reset} before the next flip.
+   */
+  Cell flip() {
+    return cells[phaser.flipPhase()];
+  }
+
+  @Override
+  public String toString() {
+    return "SummaryRecorder{" + "key=" + key + '}';
+  }
+
+  /** The count, sum, minimum and maximum of the observations of one phase. */
+  static final class Cell {
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final AtomicLong minBits = new AtomicLong();
+    private final AtomicLong maxBits = new AtomicLong();
+
+    private Cell() {
+      reset();
+    }
+
+    private void record(double value) {
+      count.increment();
+      sum.add(value);
+      long bits = Double.doubleToLongBits(value);
+      long current;
+      while (value < Double.longBitsToDouble(current = minBits.get())) {
+        if (minBits.compareAndSet(current, bits)) {
+          break;
+        }
+      }
+      while (value > Double.longBitsToDouble(current = maxBits.get())) {
+        if (maxBits.compareAndSet(current, bits)) {
+          break;
+        }
+      }
+    }
+
+    long getCount() {
+      return count.sum();
+    }
+
+    double getSum() {
+      return sum.sum();
+    }
+
+    double getMin() {
+      return Double.longBitsToDouble(minBits.get());
+    }
+
+    double getMax() {
+      return Double.longBitsToDouble(maxBits.get());
+    }
+
+    void reset() {
+      count.reset();
+      sum.reset();
+      minBits.set(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+      maxBits.set(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import com.newrelic.telemetry.Attributes;
+import java.util.Collection;
+import java.util.function.LongSupplier;
+
+/**
+ * Aggregates raw observations into {@link Summary} metrics. Each distinct name and set of
+ * attributes gets one {@link SummaryRecorder}, which any number of threads can record into without
+ * locking, and which is reported as one {@link Summary} per interval.
+ *
+ * <p>Each {@link MetricBuffer} has a registry, which is harvested by {@link
+ * MetricBuffer#createBatch()}. Recorders with no observations during an interval are not reported
+ * for it. Recorders are never removed, so that handles held by callers stay valid.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class SummaryRegistry extends MetricRegistry<SummaryRecorder> {
+
+  SummaryRegistry(LongSupplier clock) {
+    super(clock);
+  }
+
+  /**
+   * Find or create the recorder for a name and set of attributes. The attributes are copied, so
+   * changing them afterwards does not affect the recorder.
+   *
+   * @param name The name of the {@link Summary} metrics to report.
+   * @param attributes The attributes of the {@link Summary} metrics to report.
+   * @return The recorder for this series.
+   */
+  public SummaryRecorder summary(String name, Attributes attributes) {
+    return getOrCreate(name, attributes, SummaryRecorder::new);
+  }
+
+  @Override
+  void harvest(
+      SummaryRecorder recorder, long startTimeMs, long endTimeMs, Collection<Metric> metrics) {
+    SummaryRecorder.Cell cell = recorder.flip();
+    long count = cell.getCount();
+    if (count > 0) {
+      MetricKey key = recorder.getKey();
+      metrics.add(
+          new Summary(
+              key.getName(),
+              (int) Math.min(count, Integer.MAX_VALUE),
+              cell.getSum(),
+              cell.getMin(),
+              cell.getMax(),
+              startTimeMs,
+              endTimeMs,
+              key.getAttributes()));
+    }
+    cell.reset();
+  }
+}
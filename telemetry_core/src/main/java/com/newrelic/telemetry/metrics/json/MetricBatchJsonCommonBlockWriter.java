@@ -4,24 +4,51 @@
  */
 package com.newrelic.telemetry.metrics.json;
 
+import com.google.gson.stream.JsonWriter;
 import com.newrelic.telemetry.json.AttributesJson;
+import com.newrelic.telemetry.json.AttributesJsonCache;
 import com.newrelic.telemetry.metrics.MetricBatch;
+import java.io.IOException;
 
 public class MetricBatchJsonCommonBlockWriter {
 
-  private final AttributesJson attributesJson;
+  private final AttributesJsonCache attributesJsonCache;
 
   public MetricBatchJsonCommonBlockWriter(AttributesJson attributesJson) {
-    this.attributesJson = attributesJson;
+    this.attributesJsonCache = new AttributesJsonCache(attributesJson);
   }
 
+  /**
+   * Write the common attributes of a batch as a {@code "common"} block into a shared writer, if it
+   * has any. Frozen common attributes, such as those of a {@link
+   * com.newrelic.telemetry.metrics.MetricBuffer}, are only serialized the first time.
+   *
+   * @param batch The batch to write.
+   * @param jsonWriter The writer, positioned inside an object.
+   * @throws IOException If the writer fails.
+   */
+  public void appendCommonJson(MetricBatch batch, JsonWriter jsonWriter) throws IOException {
+    if (batch.hasCommonAttributes()) {
+      jsonWriter.name("common");
+      jsonWriter.beginObject();
+      jsonWriter.name("attributes");
+      jsonWriter.jsonValue(attributesJsonCache.toJson(batch.getCommonAttributes()));
+      jsonWriter.endObject();
+    }
+  }
+
+  /**
+   * @deprecated Write the common block into a shared {@link JsonWriter} with {@link
+   *     #appendCommonJson(MetricBatch, JsonWriter)}.
+   */
+  @Deprecated
   public void appendCommonJson(MetricBatch batch, StringBuilder builder) {
     if (batch.hasCommonAttributes()) {
       builder
           .append("\"common\":")
           .append("{")
           .append("\"attributes\":")
-          .append(attributesJson.toJson(batch.getCommonAttributes().asMap()))
+          .append(attributesJsonCache.toJson(batch.getCommonAttributes()))
           .append("}");
     }
   }
@@ -6,11 +6,11 @@ package com.newrelic.telemetry.metrics.json;
 
 import static java.lang.Double.isFinite;
 
+import com.google.gson.stream.JsonWriter;
 import com.newrelic.telemetry.metrics.*;
+import java.io.IOException;
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,26 +24,65 @@ public class MetricBatchJsonTelemetryBlockWriter {
     this.metricToJson = metricToJson;
   }
 
+  /**
+   * Write the metrics of a batch as a {@code "metrics"} array into a shared writer, leaving out
+   * metrics whose values cannot be represented.
+   *
+   * @param batch The batch to write.
+   * @param jsonWriter The writer, positioned inside an object.
+   * @throws IOException If the writer fails.
+   */
+  public void appendTelemetryJson(MetricBatch batch, JsonWriter jsonWriter) throws IOException {
+    jsonWriter.name("metrics");
+    jsonWriter.beginArray();
+    Collection<Metric> metrics = batch.getTelemetry();
+
+    int retainedCount = 0;
+    for (Metric metric : metrics) {
+      if (!isValid(metric)) {
+        continue;
+      }
+      writeJson(metric, jsonWriter);
+      retainedCount++;
+    }
+
+    logDropped(metrics.size() - retainedCount);
+    jsonWriter.endArray();
+  }
+
+  /**
+   * @deprecated Write the metrics into a shared {@link JsonWriter} with {@link
+   *     #appendTelemetryJson(MetricBatch, JsonWriter)}, which doesn't render each metric to a
+   *     String first.
+   */
+  @Deprecated
   public void appendTelemetryJson(MetricBatch batch, StringBuilder builder) {
     builder.append("\"metrics\":").append("[");
     Collection<Metric> metrics = batch.getTelemetry();
 
-    AtomicInteger retainedCount = new AtomicInteger();
-    builder.append(
-        metrics
-            .stream()
-            .filter(this::isValid)
-            .map(this::toJsonString)
-            .peek(x -> retainedCount.getAndIncrement())
-            .collect(Collectors.joining(",")));
+    int retainedCount = 0;
+    for (Metric metric : metrics) {
+      if (!isValid(metric)) {
+        continue;
+      }
+      if (retainedCount > 0) {
+        builder.append(",");
+      }
+      builder.append(toJsonString(metric));
+      retainedCount++;
+    }
+
+    logDropped(metrics.size() - retainedCount);
+    builder.append("]");
+  }
 
-    if (retainedCount.get() != metrics.size()) {
+  private void logDropped(int droppedCount) {
+    if (droppedCount != 0) {
       logger.info(
           "Dropped "
-              + (metrics.size() - retainedCount.get())
+              + droppedCount
               + " metrics from batch due to invalid metric contents (you should fix this)");
     }
-    builder.append("]");
   }
 
   private boolean isValid(Metric metric) {
@@ -51,7 +90,8 @@ public class MetricBatchJsonTelemetryBlockWriter {
         metric,
         count -> isFinite((count.getValue())),
         gauge -> isFinite((gauge.getValue())),
-        summary -> isFinite(summary.getSum()));
+        summary -> isFinite(summary.getSum()),
+        histogram -> isFinite(histogram.getSum()));
   }
 
   private String toJsonString(Metric metric) {
@@ -59,14 +99,30 @@ public class MetricBatchJsonTelemetryBlockWriter {
         metric,
         metricToJson::writeCountJson,
         metricToJson::writeGaugeJson,
-        metricToJson::writeSummaryJson);
+        metricToJson::writeSummaryJson,
+        metricToJson::writeHistogramJson);
+  }
+
+  private void writeJson(Metric metric, JsonWriter jsonWriter) throws IOException {
+    if (metric instanceof Count) {
+      metricToJson.writeCountJson((Count) metric, jsonWriter);
+    } else if (metric instanceof Gauge) {
+      metricToJson.writeGaugeJson((Gauge) metric, jsonWriter);
+    } else if (metric instanceof Summary) {
+      metricToJson.writeSummaryJson((Summary) metric, jsonWriter);
+    } else if (metric instanceof Histogram) {
+      metricToJson.writeHistogramJson((Histogram) metric, jsonWriter);
+    } else {
+      throw new UnsupportedOperationException("Unknown metric type: " + metric.getClass());
+    }
   }
 
   private <T> T typeDispatch(
       Metric metric,
       Function<Count, T> countFunction,
       Function<Gauge, T> gaugeFunction,
-      Function<Summary, T> summaryFunction) {
+      Function<Summary, T> summaryFunction,
+      Function<Histogram, T> histogramFunction) {
     if (metric instanceof Count) {
       return countFunction.apply((Count) metric);
     }
@@ -76,6 +132,9 @@ public class MetricBatchJsonTelemetryBlockWriter {
     if (metric instanceof Summary) {
       return summaryFunction.apply((Summary) metric);
     }
+    if (metric instanceof Histogram) {
+      return histogramFunction.apply((Histogram) metric);
+    }
     throw new UnsupportedOperationException("Unknown metric type: " + metric.getClass());
   }
 }
@@ -4,7 +4,11 @@
  */
 package com.newrelic.telemetry.metrics.json;
 
+import com.google.gson.stream.JsonWriter;
 import com.newrelic.telemetry.metrics.MetricBatch;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,19 +26,30 @@ public class MetricBatchMarshaller {
   }
 
   public String toJson(MetricBatch batch) {
-    logger.debug("Generating json for metric batch.");
-    StringBuilder builder = new StringBuilder();
-
-    builder.append("[").append("{");
-
-    int lengthBefore = builder.length();
-    commonBlockWriter.appendCommonJson(batch, builder);
-    if (builder.length() > lengthBefore) {
-      builder.append(",");
+    StringWriter out = new StringWriter();
+    try {
+      toJson(batch, out);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to marshall json for a metric batch", e);
     }
-    telemetryBlockWriter.appendTelemetryJson(batch, builder);
+    return out.toString();
+  }
+
+  /**
+   * Write the json for a metric batch directly to the provided {@link Writer}, without building
+   * the whole payload as a String first.
+   *
+   * @param batch The batch to marshall.
+   * @param out The destination for the json. This writer is not closed.
+   */
+  public void toJson(MetricBatch batch, Writer out) throws IOException {
+    logger.debug("Generating json for metric batch.");
 
-    builder.append("}").append("]");
-    return builder.toString();
+    JsonWriter jsonWriter = new JsonWriter(out);
+    jsonWriter.beginArray().beginObject();
+    commonBlockWriter.appendCommonJson(batch, jsonWriter);
+    telemetryBlockWriter.appendTelemetryJson(batch, jsonWriter);
+    jsonWriter.endObject().endArray();
+    jsonWriter.flush();
   }
 }
@@ -8,11 +8,19 @@ import com.google.gson.stream.JsonWriter;
 import com.newrelic.telemetry.json.AttributesJson;
 import com.newrelic.telemetry.metrics.Count;
 import com.newrelic.telemetry.metrics.Gauge;
+import com.newrelic.telemetry.metrics.Histogram;
 import com.newrelic.telemetry.metrics.Summary;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 
-/** This class turns Metrics into JSON via an embedded JsonWriter from the gson project. */
+/**
+ * This class turns Metrics into JSON via an embedded JsonWriter from the gson project.
+ *
+ * <p>Each metric can be written into a shared {@link JsonWriter}, which is how whole batches are
+ * written, or rendered to a String of its own.
+ */
 public class MetricToJson {
 
   private final AttributesJson attributeJson = new AttributesJson();
@@ -20,76 +28,168 @@ public class MetricToJson {
   public String writeSummaryJson(Summary summary) {
     try {
       StringWriter out = new StringWriter();
-      JsonWriter jsonWriter = new JsonWriter(out);
-      jsonWriter.beginObject();
-      jsonWriter.name("name").value(summary.getName());
-      jsonWriter.name("type").value("summary");
-
-      jsonWriter.name("value");
-      jsonWriter.beginObject();
-      jsonWriter.name("count").value(summary.getCount());
-      jsonWriter.name("sum").value(summary.getSum());
-      jsonWriter.name("min");
-      writeDouble(jsonWriter, summary.getMin());
-      jsonWriter.name("max");
-      writeDouble(jsonWriter, summary.getMax());
-      jsonWriter.endObject();
-
-      jsonWriter.name("timestamp").value(summary.getStartTimeMs());
-      jsonWriter.name("interval.ms").value(summary.getEndTimeMs() - summary.getStartTimeMs());
-      String attributes = attributeJson.toJson(summary.getAttributes());
-      if (!attributes.isEmpty()) {
-        jsonWriter.name("attributes").jsonValue(attributes);
-      }
-      jsonWriter.endObject();
+      writeSummaryJson(summary, new JsonWriter(out));
       return out.toString();
     } catch (IOException e) {
       throw new RuntimeException("Failed to generate summary json", e);
     }
   }
 
+  /**
+   * Write a summary as a JSON object into a shared writer.
+   *
+   * @param summary The summary to write.
+   * @param jsonWriter The writer, positioned where a value can be written, such as in an array.
+   * @throws IOException If the writer fails.
+   */
+  public void writeSummaryJson(Summary summary, JsonWriter jsonWriter) throws IOException {
+    jsonWriter.beginObject();
+    jsonWriter.name("name").value(summary.getName());
+    jsonWriter.name("type").value("summary");
+
+    jsonWriter.name("value");
+    jsonWriter.beginObject();
+    jsonWriter.name("count").value(summary.getCount());
+    jsonWriter.name("sum").value(summary.getSum());
+    jsonWriter.name("min");
+    writeDouble(jsonWriter, summary.getMin());
+    jsonWriter.name("max");
+    writeDouble(jsonWriter, summary.getMax());
+    jsonWriter.endObject();
+
+    jsonWriter.name("timestamp").value(summary.getStartTimeMs());
+    jsonWriter.name("interval.ms").value(summary.getEndTimeMs() - summary.getStartTimeMs());
+    jsonWriter.name("attributes");
+    attributeJson.writeJson(summary.getAttributes(), jsonWriter);
+    jsonWriter.endObject();
+  }
+
   public String writeGaugeJson(Gauge gauge) {
     try {
       StringWriter out = new StringWriter();
-      JsonWriter jsonWriter = new JsonWriter(out);
-      jsonWriter.beginObject();
-      jsonWriter.name("name").value(gauge.getName());
-      jsonWriter.name("type").value("gauge");
-      jsonWriter.name("value").value(gauge.getValue());
-      jsonWriter.name("timestamp").value(gauge.getTimestamp());
-      String attributes = attributeJson.toJson(gauge.getAttributes());
-      if (!attributes.isEmpty()) {
-        jsonWriter.name("attributes").jsonValue(attributes);
-      }
-      jsonWriter.endObject();
+      writeGaugeJson(gauge, new JsonWriter(out));
       return out.toString();
     } catch (IOException e) {
       throw new RuntimeException("Failed to generate gauge json", e);
     }
   }
 
+  /**
+   * Write a gauge as a JSON object into a shared writer.
+   *
+   * @param gauge The gauge to write.
+   * @param jsonWriter The writer, positioned where a value can be written, such as in an array.
+   * @throws IOException If the writer fails.
+   */
+  public void writeGaugeJson(Gauge gauge, JsonWriter jsonWriter) throws IOException {
+    jsonWriter.beginObject();
+    jsonWriter.name("name").value(gauge.getName());
+    jsonWriter.name("type").value("gauge");
+    jsonWriter.name("value").value(gauge.getValue());
+    jsonWriter.name("timestamp").value(gauge.getTimestamp());
+    jsonWriter.name("attributes");
+    attributeJson.writeJson(gauge.getAttributes(), jsonWriter);
+    jsonWriter.endObject();
+  }
+
   public String writeCountJson(Count count) {
     try {
       StringWriter out = new StringWriter();
-      JsonWriter jsonWriter = new JsonWriter(out);
-      jsonWriter.beginObject();
-      jsonWriter.name("name").value(count.getName());
-      jsonWriter.name("type").value("count");
-      jsonWriter.name("value").value(count.getValue());
-      jsonWriter.name("timestamp").value(count.getStartTimeMs());
-      jsonWriter.name("interval.ms").value(count.getEndTimeMs() - count.getStartTimeMs());
-
-      String attributes = attributeJson.toJson(count.getAttributes());
-      if (!attributes.isEmpty()) {
-        jsonWriter.name("attributes").jsonValue(attributes);
-      }
-      jsonWriter.endObject();
+      writeCountJson(count, new JsonWriter(out));
       return out.toString();
     } catch (IOException e) {
       throw new RuntimeException("Failed to generate count json");
     }
   }
 
+  /**
+   * Write a count as a JSON object into a shared writer.
+   *
+   * @param count The count to write.
+   * @param jsonWriter The writer, positioned where a value can be written, such as in an array.
+   * @throws IOException If the writer fails.
+   */
+  public void writeCountJson(Count count, JsonWriter jsonWriter) throws IOException {
+    jsonWriter.beginObject();
+    jsonWriter.name("name").value(count.getName());
+    jsonWriter.name("type").value("count");
+    jsonWriter.name("value").value(count.getValue());
+    jsonWriter.name("timestamp").value(count.getStartTimeMs());
+    jsonWriter.name("interval.ms").value(count.getEndTimeMs() - count.getStartTimeMs());
+    jsonWriter.name("attributes");
+    attributeJson.writeJson(count.getAttributes(), jsonWriter);
+    jsonWriter.endObject();
+  }
+
+  /**
+   * Write a histogram as a summary of its observations, followed by a gauge for each of its
+   * percentiles, separated by commas.
+   */
+  public String writeHistogramJson(Histogram histogram) {
+    try {
+      StringWriter out = new StringWriter();
+      JsonWriter jsonWriter = new JsonWriter(out);
+      jsonWriter.beginArray();
+      writeHistogramJson(histogram, jsonWriter);
+      jsonWriter.endArray();
+      // The metrics are separated by commas, without the array around them.
+      return out.getBuffer().substring(1, out.getBuffer().length() - 1);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to generate histogram json", e);
+    }
+  }
+
+  /**
+   * Write a histogram into a shared writer, as a summary of its observations followed by a gauge
+   * for each of its percentiles.
+   *
+   * @param histogram The histogram to write.
+   * @param jsonWriter The writer, positioned in an array, as this writes more than one value.
+   * @throws IOException If the writer fails.
+   */
+  public void writeHistogramJson(Histogram histogram, JsonWriter jsonWriter) throws IOException {
+    jsonWriter.beginObject();
+    jsonWriter.name("name").value(histogram.getName());
+    jsonWriter.name("type").value("summary");
+
+    jsonWriter.name("value");
+    jsonWriter.beginObject();
+    jsonWriter.name("count").value(histogram.getCount());
+    jsonWriter.name("sum").value(histogram.getSum());
+    jsonWriter.name("min");
+    writeDouble(jsonWriter, histogram.getMin());
+    jsonWriter.name("max");
+    writeDouble(jsonWriter, histogram.getMax());
+    jsonWriter.endObject();
+
+    jsonWriter.name("timestamp").value(histogram.getStartTimeMs());
+    jsonWriter.name("interval.ms").value(histogram.getEndTimeMs() - histogram.getStartTimeMs());
+    jsonWriter.name("attributes");
+    attributeJson.writeJson(histogram.getAttributes(), jsonWriter);
+    jsonWriter.endObject();
+
+    Map<String, Object> percentileAttributes = null;
+    for (double quantile : histogram.getQuantiles()) {
+      double value = histogram.getValueAtQuantile(quantile);
+      if (!Double.isFinite(value)) {
+        continue;
+      }
+      if (percentileAttributes == null) {
+        percentileAttributes = new HashMap<>(histogram.getAttributes());
+      }
+      // Rounded, so that 0.29 is reported as 29.0 rather than 28.999999999999996.
+      percentileAttributes.put("percentile", Math.round(quantile * 1_000_000) / 10_000d);
+      jsonWriter.beginObject();
+      jsonWriter.name("name").value(histogram.getName() + ".percentiles");
+      jsonWriter.name("type").value("gauge");
+      jsonWriter.name("value").value(value);
+      jsonWriter.name("timestamp").value(histogram.getEndTimeMs());
+      jsonWriter.name("attributes");
+      attributeJson.writeJson(percentileAttributes, jsonWriter);
+      jsonWriter.endObject();
+    }
+  }
+
   private void writeDouble(final JsonWriter jsonWriter, final double value) throws IOException {
     if (Double.isFinite(value)) {
       jsonWriter.value(value);
@@ -13,6 +13,7 @@ import java.util.Optional;
 public class SpanBatch extends TelemetryBatch<Span> {
 
   private final String traceId;
+  private final boolean groupedByTrace;
 
   public SpanBatch(Collection<Span> telemetry, Attributes commonAttributes) {
     this(telemetry, commonAttributes, null);
@@ -20,18 +21,45 @@ public class SpanBatch extends TelemetryBatch<Span> {
 
   @Override
   public TelemetryBatch<Span> createSubBatch(Collection<Span> telemetry) {
-    return new SpanBatch(telemetry, getCommonAttributes(), traceId);
+    return new SpanBatch(telemetry, getCommonAttributes(), traceId, groupedByTrace);
   }
 
   public SpanBatch(Collection<Span> telemetry, Attributes commonAttributes, String traceId) {
+    this(telemetry, commonAttributes, traceId, false);
+  }
+
+  private SpanBatch(
+      Collection<Span> telemetry,
+      Attributes commonAttributes,
+      String traceId,
+      boolean groupedByTrace) {
     super(telemetry, commonAttributes);
     this.traceId = traceId;
+    this.groupedByTrace = groupedByTrace;
+  }
+
+  /**
+   * Create a batch that is sent as a block per trace, each with the trace id in its common block,
+   * all in one request. The spans of a trace that is too small for its own block to pay off are
+   * sent together in one more block, each with its own trace id.
+   *
+   * @param telemetry The spans, with the spans of each trace next to each other.
+   * @param commonAttributes The attributes shared by all of the spans, sent in every block.
+   * @return A new batch.
+   */
+  public static SpanBatch groupedByTrace(Collection<Span> telemetry, Attributes commonAttributes) {
+    return new SpanBatch(telemetry, commonAttributes, null, true);
   }
 
   public Optional<String> getTraceId() {
     return Optional.ofNullable(traceId);
   }
 
+  /** @return true if this batch is sent as a block per trace. */
+  public boolean isGroupedByTrace() {
+    return groupedByTrace;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -40,6 +68,7 @@ public class SpanBatch extends TelemetryBatch<Span> {
 
     SpanBatch spanBatch = (SpanBatch) o;
 
+    if (isGroupedByTrace() != spanBatch.isGroupedByTrace()) return false;
     return getTraceId() != null
         ? getTraceId().equals(spanBatch.getTraceId())
         : spanBatch.getTraceId() == null;
@@ -49,11 +78,19 @@ public class SpanBatch extends TelemetryBatch<Span> {
   public int hashCode() {
     int result = super.hashCode();
     result = 31 * result + (getTraceId() != null ? getTraceId().hashCode() : 0);
+    result = 31 * result + (isGroupedByTrace() ? 1 : 0);
     return result;
   }
 
   @Override
   public String toString() {
-    return "SpanBatch{" + "traceId='" + traceId + '\'' + "} " + super.toString();
+    return "SpanBatch{"
+        + "traceId='"
+        + traceId
+        + '\''
+        + ", groupedByTrace="
+        + groupedByTrace
+        + "} "
+        + super.toString();
   }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.spans;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.ProbabilitySampler;
+import com.newrelic.telemetry.util.Utils;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A buffer for collecting {@link Span Spans}.
+ *
+ * <p>One instance of this class can collect many {@link Span Spans}, from any number of threads. To
+ * send them to the Trace API, call {@link #createBatch()} and then {@link
+ * SpanBatchSender#sendBatch(SpanBatch)}.
+ *
+ * <p>The spans are grouped by trace, so that the trace id can be sent once for each trace rather
+ * than with every span. All of the traces are still sent in one request.
+ */
+public final class SpanBuffer {
+  private static final Logger logger = LoggerFactory.getLogger(SpanBuffer.class);
+
+  private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+
+  private final Attributes commonAttributes;
+  private final ProbabilitySampler sampler;
+
+  /**
+   * Create a new buffer with the provided common set of attributes.
+   *
+   * @param commonAttributes These attributes will be appended (by the New Relic backend) to every
+   *     {@link Span} in this buffer. They are {@link Attributes#freeze() frozen}, so that every
+   *     batch shares them, and their JSON is only built once.
+   */
+  public SpanBuffer(Attributes commonAttributes) {
+    this.commonAttributes = Utils.verifyNonNull(commonAttributes).freeze();
+    this.sampler = null;
+  }
+
+  /**
+   * Create a new buffer that only keeps the spans chosen by a sampler. The sample rate is added to
+   * the common attributes, as {@value ProbabilitySampler#SAMPLE_RATE_ATTRIBUTE}.
+   *
+   * @param commonAttributes These attributes will be appended (by the New Relic backend) to every
+   *     {@link Span} in this buffer.
+   * @param sampler Decides which spans to keep, by their trace ids.
+   */
+  public SpanBuffer(Attributes commonAttributes, ProbabilitySampler sampler) {
+    this.sampler = Utils.verifyNonNull(sampler);
+    this.commonAttributes = sampler.addSampleRate(Utils.verifyNonNull(commonAttributes)).freeze();
+  }
+
+  /**
+   * Append a {@link Span} to this buffer, to be sent in the next batches, unless the sampler of
+   * this buffer drops it.
+   *
+   * @param span The new {@link Span} instance to be sent.
+   */
+  public void addSpan(Span span) {
+    if (sampler != null && !sampler.shouldKeep(span.getTraceId())) {
+      return;
+    }
+    spans.add(span);
+  }
+
+  /**
+   * Creates a new {@link SpanBatch} from the contents of this buffer, then clears the contents of
+   * this buffer.
+   *
+   * <p>If all of the spans have the same trace id, it is set on the batch, so that it is only sent
+   * once. Otherwise the spans are {@link SpanBatch#groupedByTrace(java.util.Collection,
+   * Attributes) grouped by trace}, in the order in which each trace's first span was added, and
+   * sent as a block per trace in one request.
+   *
+   * <p>{@link Span Spans} added to this buffer by other threads during this method call will either
+   * be added to the {@link SpanBatch} being created, or will be saved for the next {@link
+   * SpanBatch}.
+   *
+   * @return A new {@link SpanBatch} with an immutable collection of {@link Span Spans}.
+   */
+  public SpanBatch createBatch() {
+    logger.debug("Creating span batch.");
+    // Traces are looked up by id; spans without one are kept under the null key.
+    Map<String, List<Span>> traces = new LinkedHashMap<>();
+
+    // Drain the span buffer and group the spans by trace
+    int spanCount = 0;
+    Span span;
+    while ((span = this.spans.poll()) != null) {
+      traces.computeIfAbsent(span.getTraceId(), traceId -> new ArrayList<>()).add(span);
+      spanCount++;
+    }
+
+    if (traces.size() == 1 && !traces.containsKey(null)) {
+      Map.Entry<String, List<Span>> trace = traces.entrySet().iterator().next();
+      return new SpanBatch(trace.getValue(), this.commonAttributes, trace.getKey());
+    }
+    List<Span> spansForBatch = new ArrayList<>(spanCount);
+    for (List<Span> trace : traces.values()) {
+      spansForBatch.addAll(trace);
+    }
+    return SpanBatch.groupedByTrace(spansForBatch, this.commonAttributes);
+  }
+
+  Queue<Span> getSpans() {
+    return spans;
+  }
+
+  Attributes getCommonAttributes() {
+    return commonAttributes;
+  }
+
+  @Override
+  public String toString() {
+    return "SpanBuffer{" + "spans=" + spans + ", commonAttributes=" + commonAttributes + '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    SpanBuffer that = (SpanBuffer) o;
+
+    if (getSpans() != null ? !getSpans().equals(that.getSpans()) : that.getSpans() != null)
+      return false;
+    return getCommonAttributes() != null
+        ? getCommonAttributes().equals(that.getCommonAttributes())
+        : that.getCommonAttributes() == null;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = getSpans() != null ? getSpans().hashCode() : 0;
+    result = 31 * result + (getCommonAttributes() != null ? getCommonAttributes().hashCode() : 0);
+    return result;
+  }
+}
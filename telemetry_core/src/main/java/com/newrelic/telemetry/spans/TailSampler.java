@@ -0,0 +1,383 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.spans;
+
+import com.newrelic.telemetry.util.Utils;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the spans of each trace until the whole trace can be judged, and passes only the traces
+ * worth keeping on to a {@link SpanBuffer}.
+ *
+ * <p>A trace is judged once its root span (a span without a parent id) arrives, or once it has
+ * waited for the {@link Builder#decisionWaitMs(long) decision wait} since its first span, whichever
+ * comes first. If more traces are waiting than the {@link Builder#maxTraces(int) maximum}, the one
+ * that has waited longest is judged early. A trace is kept if any of its spans is an error, if its
+ * root span (or, without one, its longest span) lasted at least the {@link
+ * Builder#latencyThresholdMs(double) latency threshold}, or otherwise at random, with the {@link
+ * Builder#sampleRate(double) sample rate} as the probability. Spans that arrive after their trace
+ * was judged follow the same decision, as long as it is still remembered. Spans without a trace id
+ * are judged on their own.
+ *
+ * <p>This class starts no threads. Traces are judged as spans are added, and timeouts are checked
+ * whenever a new trace starts. {@link #expire()} should be called before each {@link
+ * SpanBuffer#createBatch()}, so that traces that time out while no new traces arrive are not held
+ * back. Any number of threads can add spans concurrently. Adding a span to a trace that has already
+ * started, or already been judged, takes no lock shared with other traces.
+ */
+public final class TailSampler {
+
+  private final SpanBuffer downstream;
+  private final int maxTraces;
+  private final long decisionWaitMs;
+  private final double latencyThresholdMs;
+  private final double sampleRate;
+  private final LongSupplier clock;
+
+  private final Map<String, PendingTrace> pending = new ConcurrentHashMap<>();
+  // The pending traces in the order they started, which is also the order they time out in. Traces
+  // are removed as soon as they are judged. Guarded by itself.
+  private final Set<PendingTrace> arrivalOrder = new LinkedHashSet<>();
+  private final DecisionCache decisions;
+  private final LongAdder keptTraces = new LongAdder();
+  private final LongAdder droppedTraces = new LongAdder();
+
+  private TailSampler(Builder builder, LongSupplier clock) {
+    this.downstream = builder.downstream;
+    this.maxTraces = builder.maxTraces;
+    this.decisionWaitMs = builder.decisionWaitMs;
+    this.latencyThresholdMs = builder.latencyThresholdMs;
+    this.sampleRate = builder.sampleRate;
+    this.clock = clock;
+    this.decisions = new DecisionCache(builder.maxTraces);
+  }
+
+  /**
+   * @param downstream The buffer that the spans of kept traces are added to.
+   * @return A builder for a sampler that adds the spans it keeps to the buffer.
+   */
+  public static Builder builder(SpanBuffer downstream) {
+    return new Builder(downstream);
+  }
+
+  /**
+   * Hold a span until its trace is judged, or pass it on or drop it at once if its trace has
+   * already been judged.
+   *
+   * @param span The span to sample.
+   */
+  public void addSpan(Span span) {
+    String traceId = span.getTraceId();
+    if (traceId == null) {
+      PendingTrace trace = new PendingTrace(null, clock.getAsLong());
+      trace.add(span);
+      decide(trace);
+      return;
+    }
+    while (true) {
+      Boolean decision = decisions.get(traceId);
+      if (decision != null) {
+        if (decision) {
+          downstream.addSpan(span);
+        }
+        return;
+      }
+      PendingTrace trace = pending.get(traceId);
+      boolean started = false;
+      if (trace == null) {
+        PendingTrace newTrace = new PendingTrace(traceId, clock.getAsLong());
+        trace = pending.putIfAbsent(traceId, newTrace);
+        if (trace == null) {
+          trace = newTrace;
+          started = true;
+        }
+      }
+      if (trace.add(span)) {
+        if (span.getParentId() == null) {
+          decide(trace);
+        }
+        if (started) {
+          track(trace);
+        }
+        return;
+      }
+      // The trace was judged while this span was being added, so follow its decision.
+    }
+  }
+
+  /** Judge every trace that has waited for the decision wait since its first span. */
+  public void expire() {
+    decide(takeOverdue(maxTraces, clock.getAsLong() - decisionWaitMs));
+  }
+
+  /** Judge every pending trace now, without waiting, for example before shutting down. */
+  public void flush() {
+    decide(takeOverdue(0, Long.MAX_VALUE));
+  }
+
+  /** @return The number of traces that are waiting to be judged. */
+  public int getPendingTraceCount() {
+    return pending.size();
+  }
+
+  /** @return The number of traces that have been kept. */
+  public long getKeptTraceCount() {
+    return keptTraces.sum();
+  }
+
+  /** @return The number of traces that have been dropped. */
+  public long getDroppedTraceCount() {
+    return droppedTraces.sum();
+  }
+
+  int getTrackedTraceCount() {
+    synchronized (arrivalOrder) {
+      return arrivalOrder.size();
+    }
+  }
+
+  /**
+   * Start timing out a new trace, unless it has already been judged, then judge the traces that
+   * have timed out, or that are over the maximum.
+   */
+  private void track(PendingTrace trace) {
+    synchronized (arrivalOrder) {
+      // A trace is marked judged before it is removed from the arrival order, so it is either
+      // skipped here or removed afterwards.
+      if (!trace.isDecided()) {
+        arrivalOrder.add(trace);
+      }
+    }
+    expire();
+  }
+
+  /**
+   * Remove the oldest traces from the arrival order while there are more than a maximum, or they
+   * started at or before a cutoff. They are judged by the caller, outside of the lock.
+   */
+  private List<PendingTrace> takeOverdue(int maxTraces, long cutoffMs) {
+    List<PendingTrace> overdue = new ArrayList<>();
+    synchronized (arrivalOrder) {
+      Iterator<PendingTrace> oldest = arrivalOrder.iterator();
+      while (oldest.hasNext()) {
+        PendingTrace trace = oldest.next();
+        if (arrivalOrder.size() <= maxTraces && trace.startTimeMs > cutoffMs) {
+          break;
+        }
+        oldest.remove();
+        overdue.add(trace);
+      }
+    }
+    return overdue;
+  }
+
+  private void decide(List<PendingTrace> traces) {
+    for (PendingTrace trace : traces) {
+      decide(trace);
+    }
+  }
+
+  private void decide(PendingTrace trace) {
+    List<Span> spans;
+    boolean keep;
+    synchronized (trace) {
+      if (trace.decided) {
+        return;
+      }
+      keep = shouldKeep(trace);
+      trace.decided = true;
+      // Recorded before the trace is released, so that spans still arriving follow the decision.
+      if (trace.traceId != null) {
+        decisions.put(trace.traceId, keep);
+      }
+      spans = trace.spans;
+      trace.spans = null;
+    }
+    if (trace.traceId != null) {
+      pending.remove(trace.traceId, trace);
+      synchronized (arrivalOrder) {
+        arrivalOrder.remove(trace);
+      }
+    }
+    if (keep) {
+      keptTraces.increment();
+      for (Span span : spans) {
+        downstream.addSpan(span);
+      }
+    } else {
+      droppedTraces.increment();
+    }
+  }
+
+  private boolean shouldKeep(PendingTrace trace) {
+    if (trace.error) {
+      return true;
+    }
+    double durationMs = trace.rootDurationMs >= 0 ? trace.rootDurationMs : trace.maxDurationMs;
+    if (durationMs >= latencyThresholdMs) {
+      return true;
+    }
+    return ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  private static final class PendingTrace {
+    private final String traceId;
+    private final long startTimeMs;
+    // Guarded by this
+    private List<Span> spans = new ArrayList<>();
+    private boolean decided;
+    private boolean error;
+    private double rootDurationMs = -1;
+    private double maxDurationMs = -1;
+
+    private PendingTrace(String traceId, long startTimeMs) {
+      this.traceId = traceId;
+      this.startTimeMs = startTimeMs;
+    }
+
+    /** @return false if the trace has already been judged, so the span was not added. */
+    private synchronized boolean add(Span span) {
+      if (decided) {
+        return false;
+      }
+      spans.add(span);
+      error |= span.isError();
+      Double durationMs = span.getDurationMs();
+      if (durationMs != null) {
+        maxDurationMs = Math.max(maxDurationMs, durationMs);
+        if (span.getParentId() == null) {
+          rootDurationMs = durationMs;
+        }
+      }
+      return true;
+    }
+
+    private synchronized boolean isDecided() {
+      return decided;
+    }
+  }
+
+  /**
+   * Remembers the decisions for the most recently judged traces. Lookups take no lock, and the
+   * oldest decisions are forgotten once there are more than the maximum.
+   */
+  private static final class DecisionCache {
+    private final int maxSize;
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private DecisionCache(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    private Boolean get(String traceId) {
+      return decisions.get(traceId);
+    }
+
+    private void put(String traceId, boolean keep) {
+      if (decisions.put(traceId, keep) != null) {
+        return;
+      }
+      insertionOrder.add(traceId);
+      while (decisions.size() > maxSize) {
+        String eldest = insertionOrder.poll();
+        if (eldest == null) {
+          break;
+        }
+        decisions.remove(eldest);
+      }
+    }
+  }
+
+  public static class Builder {
+    private final SpanBuffer downstream;
+    private int maxTraces = 10_000;
+    private long decisionWaitMs = 30_000;
+    private double latencyThresholdMs = Double.POSITIVE_INFINITY;
+    private double sampleRate = 0.1;
+
+    private Builder(SpanBuffer downstream) {
+      this.downstream = Utils.verifyNonNull(downstream);
+    }
+
+    /**
+     * Optional. The most traces to hold at once; 10,000 by default. The sampler also remembers the
+     * decisions for this many of the most recently judged traces.
+     *
+     * @param maxTraces The maximum number of pending traces, at least 1.
+     * @return this builder
+     */
+    public Builder maxTraces(int maxTraces) {
+      if (maxTraces < 1) {
+        throw new IllegalArgumentException("maxTraces must be at least 1: " + maxTraces);
+      }
+      this.maxTraces = maxTraces;
+      return this;
+    }
+
+    /**
+     * Optional. How long to wait, from the first span of a trace, for its root span before judging
+     * it anyway; 30 seconds by default.
+     *
+     * @param decisionWaitMs The wait, in milliseconds.
+     * @return this builder
+     */
+    public Builder decisionWaitMs(long decisionWaitMs) {
+      if (decisionWaitMs < 0) {
+        throw new IllegalArgumentException(
+            "decisionWaitMs must not be negative: " + decisionWaitMs);
+      }
+      this.decisionWaitMs = decisionWaitMs;
+      return this;
+    }
+
+    /**
+     * Optional. Keep every trace whose root span lasted at least this long. By default traces are
+     * not kept for their duration.
+     *
+     * @param latencyThresholdMs The threshold, in milliseconds.
+     * @return this builder
+     */
+    public Builder latencyThresholdMs(double latencyThresholdMs) {
+      this.latencyThresholdMs = latencyThresholdMs;
+      return this;
+    }
+
+    /**
+     * Optional. The probability of keeping a trace that has no errors and is faster than the
+     * latency threshold; 0.1 by default.
+     *
+     * @param sampleRate The probability, between 0 and 1.
+     * @return this builder
+     */
+    public Builder sampleRate(double sampleRate) {
+      if (!(sampleRate >= 0 && sampleRate <= 1)) {
+        throw new IllegalArgumentException("sampleRate must be between 0 and 1: " + sampleRate);
+      }
+      this.sampleRate = sampleRate;
+      return this;
+    }
+
+    /** @return A new sampler, configured with the settings of this builder. */
+    public TailSampler build() {
+      return build(System::currentTimeMillis);
+    }
+
+    TailSampler build(LongSupplier clock) {
+      return new TailSampler(this, clock);
+    }
+  }
+}
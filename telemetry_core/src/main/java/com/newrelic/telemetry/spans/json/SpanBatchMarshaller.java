@@ -5,15 +5,22 @@
 package com.newrelic.telemetry.spans.json;
 
 import com.google.gson.stream.JsonWriter;
+import com.newrelic.telemetry.spans.Span;
 import com.newrelic.telemetry.spans.SpanBatch;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class SpanBatchMarshaller {
 
   private static final Logger logger = LoggerFactory.getLogger(SpanBatchMarshaller.class);
+  // The length of {"common":{"attributes":},"spans":[]}, with the comma between blocks.
+  private static final int BLOCK_FRAMING_LENGTH = 40;
   private final SpanJsonCommonBlockWriter commonBlockWriter;
   private final SpanJsonTelemetryBlockWriter telemetryBlockWriter;
 
@@ -25,20 +32,82 @@ public class SpanBatchMarshaller {
   }
 
   public String toJson(SpanBatch batch) {
-    logger.debug("Generating json for span batch.");
-
     StringWriter out = new StringWriter();
-    JsonWriter jsonWriter = new JsonWriter(out);
-
     try {
-      jsonWriter.beginArray().beginObject();
-      commonBlockWriter.appendCommonJson(batch, jsonWriter);
-      telemetryBlockWriter.appendTelemetryJson(batch, jsonWriter);
-      jsonWriter.endObject().endArray();
+      toJson(batch, out);
     } catch (IOException e) {
       throw new RuntimeException("Failed to marshall json for a span batch");
     }
-
     return out.toString();
   }
+
+  /**
+   * Write the json for a span batch directly to the provided {@link Writer}, without building the
+   * whole payload as a String first.
+   *
+   * @param batch The batch to marshall.
+   * @param out The destination for the json. This writer is not closed.
+   */
+  public void toJson(SpanBatch batch, Writer out) throws IOException {
+    logger.debug("Generating json for span batch.");
+
+    JsonWriter jsonWriter = new JsonWriter(out);
+    jsonWriter.beginArray();
+    if (batch.isGroupedByTrace()) {
+      writeBlocksByTrace(batch, jsonWriter);
+    } else {
+      writeBlock(batch, jsonWriter);
+    }
+    jsonWriter.endArray();
+    jsonWriter.flush();
+  }
+
+  private void writeBlock(SpanBatch batch, JsonWriter jsonWriter) throws IOException {
+    jsonWriter.beginObject();
+    commonBlockWriter.appendCommonJson(batch, jsonWriter);
+    telemetryBlockWriter.appendTelemetryJson(batch, jsonWriter);
+    jsonWriter.endObject();
+  }
+
+  /**
+   * Write a block for each run of spans with the same trace id that is long enough for hoisting its
+   * trace id to save more than repeating the common attributes costs. The other spans are written
+   * first, in one block, each with its own trace id.
+   */
+  private void writeBlocksByTrace(SpanBatch batch, JsonWriter jsonWriter) throws IOException {
+    List<Span> spans = new ArrayList<>(batch.getTelemetry());
+    int commonAttributesLength = commonBlockWriter.commonAttributesJsonLength(batch);
+    List<Span> ungrouped = new ArrayList<>();
+    List<SpanBatch> traces = new ArrayList<>();
+    int start = 0;
+    while (start < spans.size()) {
+      String traceId = spans.get(start).getTraceId();
+      int end = start + 1;
+      while (end < spans.size() && Objects.equals(traceId, spans.get(end).getTraceId())) {
+        end++;
+      }
+      List<Span> run = spans.subList(start, end);
+      if (traceId != null && blockPaysOff(run.size(), traceId, commonAttributesLength)) {
+        traces.add(new SpanBatch(run, batch.getCommonAttributes(), traceId));
+      } else {
+        ungrouped.addAll(run);
+      }
+      start = end;
+    }
+
+    if (!ungrouped.isEmpty() || traces.isEmpty()) {
+      writeBlock(new SpanBatch(ungrouped, batch.getCommonAttributes()), jsonWriter);
+    }
+    for (SpanBatch trace : traces) {
+      writeBlock(trace, jsonWriter);
+    }
+  }
+
+  // A block saves the "trace.id":"...", member of all but one of its spans, and costs its framing
+  // and a copy of the common attributes.
+  private static boolean blockPaysOff(int spanCount, String traceId, int commonAttributesLength) {
+    int traceIdMemberLength = traceId.length() + 14;
+    int blockOverhead = commonAttributesLength + BLOCK_FRAMING_LENGTH;
+    return (long) (spanCount - 1) * traceIdMemberLength > blockOverhead;
+  }
 }
@@ -6,15 +6,18 @@ package com.newrelic.telemetry.spans.json;
 
 import com.google.gson.stream.JsonWriter;
 import com.newrelic.telemetry.json.AttributesJson;
+import com.newrelic.telemetry.json.AttributesJsonCache;
 import com.newrelic.telemetry.spans.SpanBatch;
 import java.io.IOException;
 
 public class SpanJsonCommonBlockWriter {
 
   private AttributesJson attributesJson;
+  private final AttributesJsonCache attributesJsonCache;
 
   public SpanJsonCommonBlockWriter(AttributesJson attributesJson) {
     this.attributesJson = attributesJson;
+    this.attributesJsonCache = new AttributesJsonCache(attributesJson);
   }
 
   public void appendCommonJson(SpanBatch batch, JsonWriter jsonWriter) {
@@ -38,10 +41,18 @@ public class SpanJsonCommonBlockWriter {
     }
   }
 
+  /** @return The length of the JSON of the common attributes of a batch, or 0 if it has none. */
+  int commonAttributesJsonLength(SpanBatch batch) {
+    return batch.hasCommonAttributes()
+        ? attributesJsonCache.toJson(batch.getCommonAttributes()).length()
+        : 0;
+  }
+
   private void appendAttributes(SpanBatch batch, JsonWriter jsonWriter) throws IOException {
     if (batch.hasCommonAttributes()) {
       jsonWriter.name("attributes");
-      jsonWriter.jsonValue(attributesJson.toJson(batch.getCommonAttributes().asMap()));
+      // Frozen common attributes are only serialized the first time.
+      jsonWriter.jsonValue(attributesJsonCache.toJson(batch.getCommonAttributes()));
     }
   }
 
@@ -10,7 +10,6 @@ import com.newrelic.telemetry.spans.Span;
 import com.newrelic.telemetry.spans.SpanBatch;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
 public final class SpanJsonTelemetryBlockWriter {
@@ -26,14 +25,17 @@ public final class SpanJsonTelemetryBlockWriter {
       jsonWriter.name("spans");
       jsonWriter.beginArray();
       Collection<Span> telemetry = batch.getTelemetry();
+      // A trace id sent in the common block is not repeated for every span of that trace.
+      String commonTraceId = batch.getTraceId().orElse(null);
       for (Span span : telemetry) {
         jsonWriter.beginObject();
         jsonWriter.name("id").value(span.getId());
-        if (span.getTraceId() != null) {
+        if (span.getTraceId() != null && !span.getTraceId().equals(commonTraceId)) {
           jsonWriter.name("trace.id").value(span.getTraceId());
         }
         jsonWriter.name("timestamp").value(span.getTimestamp());
-        jsonWriter.name("attributes").jsonValue(attributesJson.toJson(enhanceAttributes(span)));
+        jsonWriter.name("attributes");
+        writeAttributes(span, jsonWriter);
         jsonWriter.endObject();
       }
       jsonWriter.endArray();
@@ -42,16 +44,39 @@ public final class SpanJsonTelemetryBlockWriter {
     }
   }
 
-  private Map<String, Object> enhanceAttributes(Span span) {
-    Map<String, Object> result = new HashMap<>(span.getAttributes().asMap());
-    result.putIfAbsent("name", span.getName());
-    result.putIfAbsent("parent.id", span.getParentId());
-    result.putIfAbsent("duration.ms", span.getDurationMs());
-    result.putIfAbsent("service.name", span.getServiceName());
+  /**
+   * Write the span's attributes, along with the fields of the span that are sent as attributes,
+   * straight into the writer. An attribute with a value takes precedence over the field of the same
+   * name, except that an error span is always sent with {@code error} set to true.
+   */
+  private void writeAttributes(Span span, JsonWriter jsonWriter) throws IOException {
+    Map<String, Object> attributes = span.getAttributes().asMapView();
+    jsonWriter.beginObject();
+    attributesJson.writeMembers(attributes, span.isError() ? "error" : null, jsonWriter);
+    writeUnlessSet(attributes, "name", span.getName(), jsonWriter);
+    writeUnlessSet(attributes, "parent.id", span.getParentId(), jsonWriter);
+    Double durationMs = span.getDurationMs();
+    if (durationMs != null && Double.isFinite(durationMs) && isUnset(attributes, "duration.ms")) {
+      jsonWriter.name("duration.ms").value((double) durationMs);
+    }
+    writeUnlessSet(attributes, "service.name", span.getServiceName(), jsonWriter);
     if (span.isError()) {
-      result.put("error", true);
+      jsonWriter.name("error").value(true);
+    }
+    jsonWriter.endObject();
+  }
+
+  private static void writeUnlessSet(
+      Map<String, Object> attributes, String key, String value, JsonWriter jsonWriter)
+      throws IOException {
+    if (value != null && isUnset(attributes, key)) {
+      jsonWriter.name(key).value(value);
     }
-    return result;
+  }
+
+  // An attribute set to null counts as unset, so the span's own field is sent in its place.
+  private static boolean isUnset(Map<String, Object> attributes, String key) {
+    return attributes.get(key) == null;
   }
 
   public AttributesJson getAttributesJson() {
@@ -8,26 +8,35 @@ import static java.util.Collections.emptyList;
 
 import com.newrelic.telemetry.Response;
 import com.newrelic.telemetry.exceptions.DiscardBatchException;
+import com.newrelic.telemetry.exceptions.ResponseException;
 import com.newrelic.telemetry.exceptions.RetryWithBackoffException;
 import com.newrelic.telemetry.exceptions.RetryWithRequestedWaitException;
 import com.newrelic.telemetry.exceptions.RetryWithSplitException;
 import com.newrelic.telemetry.http.HttpPoster;
 import com.newrelic.telemetry.http.HttpResponse;
-import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class BatchDataSender {
 
+  /** The largest compressed payload accepted by the New Relic ingest APIs. */
+  public static final int DEFAULT_MAX_PAYLOAD_BYTES = 1_000_000;
+
   private static final Logger logger = LoggerFactory.getLogger(BatchDataSender.class);
   private static final String MEDIA_TYPE = "application/json; charset=utf-8";
 
@@ -38,6 +47,9 @@ public class BatchDataSender {
   private final URL endpointURl;
   private final boolean auditLoggingEnabled;
   private final String userAgent;
+  private final CompressionPool compressionPool;
+  private final Compression compression;
+  private final int maxPayloadBytes;
 
   static {
     Package thisPackage = BatchDataSender.class.getPackage();
@@ -52,12 +64,59 @@ public class BatchDataSender {
       URL endpointURl,
       boolean auditLoggingEnabled,
       String secondaryUserAgent) {
+    this(
+        client,
+        apiKey,
+        endpointURl,
+        auditLoggingEnabled,
+        secondaryUserAgent,
+        CompressionPool.getDefault(),
+        Compression.gzip());
+  }
+
+  public BatchDataSender(
+      HttpPoster client,
+      String apiKey,
+      URL endpointURl,
+      boolean auditLoggingEnabled,
+      String secondaryUserAgent,
+      CompressionPool compressionPool,
+      Compression compression) {
+    this(
+        client,
+        apiKey,
+        endpointURl,
+        auditLoggingEnabled,
+        secondaryUserAgent,
+        compressionPool,
+        compression,
+        DEFAULT_MAX_PAYLOAD_BYTES);
+  }
+
+  /**
+   * @param maxPayloadBytes The largest compressed payload to send. Payloads that compress to more
+   *     than this are not sent; instead, a {@link RetryWithSplitException} is thrown, just as if
+   *     the ingest API had rejected the payload as too large.
+   */
+  public BatchDataSender(
+      HttpPoster client,
+      String apiKey,
+      URL endpointURl,
+      boolean auditLoggingEnabled,
+      String secondaryUserAgent,
+      CompressionPool compressionPool,
+      Compression compression,
+      int maxPayloadBytes) {
     this.client = client;
     this.apiKey = apiKey;
     this.endpointURl = endpointURl;
     this.auditLoggingEnabled = auditLoggingEnabled;
     this.userAgent = buildUserAgent(secondaryUserAgent);
-    logger.info("BatchDataSender configured with endpoint {}", endpointURl);
+    this.compressionPool = compressionPool;
+    this.compression = compression;
+    this.maxPayloadBytes = maxPayloadBytes;
+    logger.info(
+        "BatchDataSender configured with endpoint {} and compression {}", endpointURl, compression);
     if (auditLoggingEnabled) {
       logger.info("BatchDataSender configured with audit logging enabled.");
     }
@@ -73,18 +132,120 @@ public class BatchDataSender {
   public Response send(String json)
       throws DiscardBatchException, RetryWithSplitException, RetryWithBackoffException,
           RetryWithRequestedWaitException {
+    byte[] payload = generatePayload(json);
+
+    return sendPayload(payload, compression.getContentEncoding());
+  }
+
+  /**
+   * Send a JSON payload that is streamed straight into the compressed request body. Unlike {@link
+   * #send(String)}, the uncompressed JSON is never held in memory as a whole, unless audit logging
+   * is enabled.
+   *
+   * @param payloadWriter Writes the JSON payload to be sent.
+   * @return The response from the ingest API.
+   */
+  public Response send(JsonPayloadWriter payloadWriter)
+      throws DiscardBatchException, RetryWithSplitException, RetryWithBackoffException,
+          RetryWithRequestedWaitException {
+    byte[] payload = generatePayload(payloadWriter);
+
+    return sendPayload(payload, compression.getContentEncoding());
+  }
+
+  /**
+   * Marshal and compress a JSON payload without sending it, so that it can be sent later with
+   * {@link #send(CompressedPayload)}.
+   *
+   * @param payloadWriter Writes the JSON payload to be compressed.
+   * @return The compressed payload.
+   * @throws DiscardBatchException If the payload could not be serialized.
+   * @throws RetryWithSplitException If the compressed payload is larger than the maximum payload
+   *     size.
+   */
+  public CompressedPayload compress(JsonPayloadWriter payloadWriter)
+      throws DiscardBatchException, RetryWithSplitException {
+    return new CompressedPayload(generatePayload(payloadWriter), compression.getContentEncoding());
+  }
+
+  /**
+   * Send a payload that has already been compressed, for instance by {@link
+   * #compress(JsonPayloadWriter)}.
+   *
+   * @param payload The payload to send. It is sent with its own Content-Encoding, which need not
+   *     match this sender's {@link Compression}.
+   * @return The response from the ingest API.
+   */
+  public Response send(CompressedPayload payload)
+      throws DiscardBatchException, RetryWithSplitException, RetryWithBackoffException,
+          RetryWithRequestedWaitException {
+    return sendPayload(payload.getBytes(), payload.getContentEncoding());
+  }
+
+  /**
+   * Send a JSON payload without blocking on the HTTP round-trip. The payload is marshalled and
+   * compressed on the calling thread, then posted with {@link HttpPoster#postAsync}.
+   *
+   * @param payloadWriter Writes the JSON payload to be sent.
+   * @return A future holding the response from the ingest API. If the batch could not be sent, the
+   *     future completes exceptionally with one of the subclasses of {@link ResponseException}.
+   */
+  public CompletableFuture<Response> sendAsync(JsonPayloadWriter payloadWriter) {
+    byte[] payload;
+    try {
+      payload = generatePayload(payloadWriter);
+    } catch (DiscardBatchException | RetryWithSplitException e) {
+      CompletableFuture<Response> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+    return sendPayloadAsync(payload);
+  }
+
+  /**
+   * Send a JSON payload without blocking on the HTTP round-trip.
+   *
+   * @see #sendAsync(JsonPayloadWriter)
+   */
+  public CompletableFuture<Response> sendAsync(String json) {
+    return sendAsync(out -> out.write(json));
+  }
+
+  private byte[] generatePayload(String json)
+      throws DiscardBatchException, RetryWithSplitException {
     if (auditLoggingEnabled) {
       logger.debug("Sending json: " + json);
     }
-    byte[] payload = generatePayload(json);
+    return compressPayload(out -> out.write(json));
+  }
 
-    return sendPayload(payload);
+  private byte[] generatePayload(JsonPayloadWriter payloadWriter)
+      throws DiscardBatchException, RetryWithSplitException {
+    if (auditLoggingEnabled) {
+      StringWriter json = new StringWriter();
+      try {
+        payloadWriter.writeTo(json);
+      } catch (IOException e) {
+        logger.error(
+            "Failed to serialize the batch for sending to the ingest API. Discard batch recommended.",
+            e);
+        throw new DiscardBatchException();
+      }
+      return generatePayload(json.toString());
+    }
+    return compressPayload(payloadWriter);
   }
 
-  private byte[] generatePayload(String json) throws DiscardBatchException {
+  private byte[] compressPayload(JsonPayloadWriter payloadWriter)
+      throws DiscardBatchException, RetryWithSplitException {
     byte[] payload;
     try {
-      payload = compressJson(json);
+      payload = compressJson(payloadWriter);
+    } catch (PayloadTooLargeException e) {
+      logger.info(
+          "Compressed payload exceeds the maximum of {} bytes. Retry with split recommended.",
+          maxPayloadBytes);
+      throw new RetryWithSplitException();
     } catch (IOException e) {
       logger.error(
           "Failed to serialize the batch for sending to the ingest API. Discard batch recommended.",
@@ -94,59 +255,83 @@ public class BatchDataSender {
     return payload;
   }
 
-  private byte[] compressJson(String result) throws IOException {
-    ByteArrayOutputStream compressedOutput = new ByteArrayOutputStream();
-    GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressedOutput);
-    gzipOutputStream.write(result.getBytes(StandardCharsets.UTF_8));
-    gzipOutputStream.close();
-    return compressedOutput.toByteArray();
+  private byte[] compressJson(JsonPayloadWriter payloadWriter) throws IOException {
+    CompressionPool.PooledBuffer compressedOutput = compressionPool.acquireBuffer();
+    Deflater deflater = compression.usesDeflater() ? compressionPool.acquireDeflater() : null;
+    try {
+      // The OutputStreamWriter encodes to UTF-8 through its own small buffer, so the JSON goes
+      // straight into the compressor without an intermediate String or byte[] copy.
+      // Marshalling stops as soon as the compressed output grows past the limit, so an oversize
+      // batch costs no more than one maximum-size payload of work before it is split.
+      OutputStream limitedOutput = new SizeLimitedOutputStream(compressedOutput, maxPayloadBytes);
+      try (Writer writer =
+          new OutputStreamWriter(
+              compression.wrap(limitedOutput, deflater), StandardCharsets.UTF_8)) {
+        payloadWriter.writeTo(writer);
+      }
+      return compressedOutput.toByteArray();
+    } finally {
+      if (deflater != null) {
+        compressionPool.releaseDeflater(deflater);
+      }
+      compressionPool.releaseBuffer(compressedOutput);
+    }
   }
 
-  private Response sendPayload(byte[] payload)
-      throws DiscardBatchException, RetryWithSplitException, RetryWithBackoffException,
-          RetryWithRequestedWaitException {
+  /** Thrown when the compressed payload grows past the maximum payload size. */
+  private static final class PayloadTooLargeException extends IOException {}
+
+  private static final class SizeLimitedOutputStream extends FilterOutputStream {
+    private final int limit;
+    private long written = 0;
+
+    private SizeLimitedOutputStream(OutputStream out, int limit) {
+      super(out);
+      this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      checkLimit(1);
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      checkLimit(len);
+      out.write(b, off, len);
+    }
+
+    private void checkLimit(int len) throws PayloadTooLargeException {
+      written += len;
+      if (written > limit) {
+        throw new PayloadTooLargeException();
+      }
+    }
+  }
+
+  /** @return The pool of deflaters and buffers used to compress payloads. */
+  public CompressionPool getCompressionPool() {
+    return compressionPool;
+  }
+
+  private Map<String, String> buildHeaders(String contentEncoding) {
     Map<String, String> headers = new HashMap<>();
     headers.put("Api-Key", apiKey);
-    headers.put("Content-Encoding", "gzip");
+    if (contentEncoding != null) {
+      headers.put("Content-Encoding", contentEncoding);
+    }
     headers.put("User-Agent", userAgent);
+    return headers;
+  }
+
+  private Response sendPayload(byte[] payload, String contentEncoding)
+      throws DiscardBatchException, RetryWithSplitException, RetryWithBackoffException,
+          RetryWithRequestedWaitException {
     try {
-      HttpResponse response = client.post(endpointURl, headers, payload, MEDIA_TYPE);
-      String responseBody = response.getBody();
-      logger.debug(
-          "Response from New Relic ingest API: code: {}, body: {}",
-          response.getCode(),
-          response.getBody());
-      // Both response codes need to be catered for at this point - the events endpoint uses 200
-      // whereas the metrics endpoint uses 202
-      if (response.getCode() == 202 || response.getCode() == 200) {
-        return new Response(response.getCode(), response.getMessage(), responseBody);
-      }
-      switch (response.getCode()) {
-        case 400:
-        case 403:
-        case 404:
-        case 405:
-        case 411:
-          logger.warn(
-              "Response from New Relic ingest API. Discarding batch recommended.: code: {}, body: {}",
-              response.getCode(),
-              responseBody);
-          throw new DiscardBatchException();
-        case 413:
-          logger.warn(
-              "Response from New Relic ingest API. Retry with split recommended.: code: {}, body: {}",
-              response.getCode(),
-              responseBody);
-          throw new RetryWithSplitException();
-        case 429:
-          return handle429(response, responseBody);
-        default:
-          logger.error(
-              "Response from New Relic ingest API. Batch retry recommended. : code: {}, body: {}",
-              response.getCode(),
-              responseBody);
-          throw new RetryWithBackoffException();
-      }
+      HttpResponse response =
+          client.post(endpointURl, buildHeaders(contentEncoding), payload, MEDIA_TYPE);
+      return handleResponse(response);
     } catch (IOException e) {
       logger.warn(
           "IOException while trying to send data to New Relic. Batch retry recommended.", e);
@@ -154,6 +339,78 @@ public class BatchDataSender {
     }
   }
 
+  private CompletableFuture<Response> sendPayloadAsync(byte[] payload) {
+    CompletableFuture<Response> result = new CompletableFuture<>();
+    CompletableFuture<HttpResponse> posted;
+    try {
+      posted =
+          client.postAsync(
+              endpointURl, buildHeaders(compression.getContentEncoding()), payload, MEDIA_TYPE);
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+      return result;
+    }
+    posted.whenComplete(
+        (response, error) -> {
+          if (error != null) {
+            logger.warn(
+                "Exception while trying to send data to New Relic. Batch retry recommended.",
+                error);
+            result.completeExceptionally(new RetryWithBackoffException());
+            return;
+          }
+          // Anything thrown here would only fail the stage returned by whenComplete, which nobody
+          // waits on, so every failure must complete the result.
+          try {
+            result.complete(handleResponse(response));
+          } catch (ResponseException | RuntimeException e) {
+            result.completeExceptionally(e);
+          }
+        });
+    return result;
+  }
+
+  private Response handleResponse(HttpResponse response)
+      throws DiscardBatchException, RetryWithSplitException, RetryWithBackoffException,
+          RetryWithRequestedWaitException {
+    String responseBody = response.getBody();
+    logger.debug(
+        "Response from New Relic ingest API: code: {}, body: {}",
+        response.getCode(),
+        response.getBody());
+    // Both response codes need to be catered for at this point - the events endpoint uses 200
+    // whereas the metrics endpoint uses 202
+    if (response.getCode() == 202 || response.getCode() == 200) {
+      return new Response(response.getCode(), response.getMessage(), responseBody);
+    }
+    switch (response.getCode()) {
+      case 400:
+      case 403:
+      case 404:
+      case 405:
+      case 411:
+        logger.warn(
+            "Response from New Relic ingest API. Discarding batch recommended.: code: {}, body: {}",
+            response.getCode(),
+            responseBody);
+        throw new DiscardBatchException();
+      case 413:
+        logger.warn(
+            "Response from New Relic ingest API. Retry with split recommended.: code: {}, body: {}",
+            response.getCode(),
+            responseBody);
+        throw new RetryWithSplitException();
+      case 429:
+        return handle429(response, responseBody);
+      default:
+        logger.error(
+            "Response from New Relic ingest API. Batch retry recommended. : code: {}, body: {}",
+            response.getCode(),
+            responseBody);
+        throw new RetryWithBackoffException();
+    }
+  }
+
   private List<String> findHeader(Map<String, List<String>> responseHeaders, String headerName) {
     return responseHeaders
         .keySet()
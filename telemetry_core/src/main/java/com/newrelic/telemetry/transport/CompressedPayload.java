@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+/**
+ * A marshalled and compressed request body, ready to be posted to an ingest API as-is. Holding on
+ * to one of these allows a batch to be sent again, or stored and sent later, without marshalling
+ * and compressing it again.
+ */
+public final class CompressedPayload {
+
+  private final byte[] bytes;
+  private final String contentEncoding;
+
+  /**
+   * @param bytes The request body. This array is not copied, and must not be modified afterwards.
+   * @param contentEncoding The Content-Encoding of the body, or null if it is not compressed.
+   */
+  public CompressedPayload(byte[] bytes, String contentEncoding) {
+    this.bytes = bytes;
+    this.contentEncoding = contentEncoding;
+  }
+
+  /** @return The request body. The returned array must not be modified. */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /** @return The Content-Encoding of the body, or null if it is not compressed. */
+  public String getContentEncoding() {
+    return contentEncoding;
+  }
+
+  /** @return The size of the request body, in bytes. */
+  public int size() {
+    return bytes.length;
+  }
+
+  @Override
+  public String toString() {
+    return "CompressedPayload{"
+        + "size="
+        + bytes.length
+        + ", contentEncoding='"
+        + contentEncoding
+        + '\''
+        + '}';
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * The compression applied to payloads before they are sent to the New Relic ingest APIs.
+ *
+ * <p>Lower levels trade payload size for CPU: {@link Deflater#BEST_SPEED} is a good choice on
+ * CPU-bound hosts, while {@link Deflater#BEST_COMPRESSION} minimizes egress. {@link #identity()}
+ * disables compression entirely, and is intended for loopback endpoints and testing.
+ */
+public final class Compression {
+
+  private enum Type {
+    GZIP("gzip"),
+    DEFLATE("deflate"),
+    IDENTITY(null);
+
+    private final String contentEncoding;
+
+    Type(String contentEncoding) {
+      this.contentEncoding = contentEncoding;
+    }
+  }
+
+  private static final Compression DEFAULT_GZIP =
+      new Compression(Type.GZIP, Deflater.DEFAULT_COMPRESSION);
+  private static final Compression IDENTITY =
+      new Compression(Type.IDENTITY, Deflater.NO_COMPRESSION);
+
+  private final Type type;
+  private final int level;
+
+  private Compression(Type type, int level) {
+    this.type = type;
+    this.level = level;
+  }
+
+  /** @return gzip compression at the default level. This is the default for all senders. */
+  public static Compression gzip() {
+    return DEFAULT_GZIP;
+  }
+
+  /**
+   * @param level The compression level, from {@link Deflater#BEST_SPEED} to {@link
+   *     Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+   * @return gzip compression at the provided level.
+   */
+  public static Compression gzip(int level) {
+    return new Compression(Type.GZIP, verifyLevel(level));
+  }
+
+  /** @return zlib ("deflate" content-encoding) compression at the default level. */
+  public static Compression deflate() {
+    return new Compression(Type.DEFLATE, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * @param level The compression level, from {@link Deflater#BEST_SPEED} to {@link
+   *     Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+   * @return zlib ("deflate" content-encoding) compression at the provided level.
+   */
+  public static Compression deflate(int level) {
+    return new Compression(Type.DEFLATE, verifyLevel(level));
+  }
+
+  /** @return No compression at all. Payloads are sent as plain json. */
+  public static Compression identity() {
+    return IDENTITY;
+  }
+
+  private static int verifyLevel(int level) {
+    if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+        && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    return level;
+  }
+
+  /**
+   * @return The value of the Content-Encoding header for payloads compressed this way, or null if
+   *     the payload is not compressed.
+   */
+  public String getContentEncoding() {
+    return type.contentEncoding;
+  }
+
+  /** @return The deflate compression level. */
+  public int getLevel() {
+    return level;
+  }
+
+  /** @return true if this compression requires a {@link Deflater}. */
+  boolean usesDeflater() {
+    return type != Type.IDENTITY;
+  }
+
+  /**
+   * Wrap the provided stream so that data written to the result is compressed into it.
+   *
+   * @param out The destination for compressed data.
+   * @param deflater A raw ({@code nowrap}) deflater, or null if {@link #usesDeflater()} is false.
+   */
+  OutputStream wrap(OutputStream out, Deflater deflater) throws IOException {
+    switch (type) {
+      case GZIP:
+        deflater.setLevel(level);
+        return new GzipDeflaterOutputStream(out, deflater);
+      case DEFLATE:
+        deflater.setLevel(level);
+        return new ZlibDeflaterOutputStream(out, deflater, level);
+      default:
+        return out;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    Compression that = (Compression) o;
+
+    if (level != that.level) return false;
+    return type == that.type;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = type.hashCode();
+    result = 31 * result + level;
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "Compression{" + "type=" + type + ", level=" + level + '}';
+  }
+}
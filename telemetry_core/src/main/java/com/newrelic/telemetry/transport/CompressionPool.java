@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * A bounded pool of {@link Deflater} instances and growable output buffers, used by {@link
+ * BatchDataSender} to compress payloads without allocating native zlib memory and a fresh buffer
+ * for every request.
+ *
+ * <p>When the pool is empty a new instance is created (a "miss"). When it is full, returned
+ * instances are discarded, so the pool never holds more than {@code maxPooled} of each. Buffers
+ * that have grown beyond {@code maxRetainedBufferBytes} are also discarded instead of being
+ * retained.
+ *
+ * <p>This class is thread-safe. A single pool may be shared by several senders.
+ */
+public final class CompressionPool {
+
+  private static final int DEFAULT_MAX_POOLED = 8;
+  private static final int DEFAULT_MAX_RETAINED_BUFFER_BYTES = 2 * 1024 * 1024;
+  private static final int INITIAL_BUFFER_BYTES = 8 * 1024;
+
+  private static final CompressionPool DEFAULT_POOL =
+      new CompressionPool(DEFAULT_MAX_POOLED, DEFAULT_MAX_RETAINED_BUFFER_BYTES);
+
+  private final BlockingQueue<Deflater> deflaters;
+  private final BlockingQueue<PooledBuffer> buffers;
+  private final int maxRetainedBufferBytes;
+
+  private final AtomicLong deflaterHits = new AtomicLong();
+  private final AtomicLong deflaterMisses = new AtomicLong();
+  private final AtomicLong bufferHits = new AtomicLong();
+  private final AtomicLong bufferMisses = new AtomicLong();
+
+  /**
+   * Create a new pool.
+   *
+   * @param maxPooled The maximum number of idle deflaters, and of idle buffers, retained by the
+   *     pool. This is roughly the number of concurrent compressions that can be served without
+   *     allocation.
+   * @param maxRetainedBufferBytes Buffers larger than this are released to the garbage collector
+   *     rather than returned to the pool.
+   */
+  public CompressionPool(int maxPooled, int maxRetainedBufferBytes) {
+    if (maxPooled < 1) {
+      throw new IllegalArgumentException("maxPooled must be at least 1");
+    }
+    this.deflaters = new ArrayBlockingQueue<>(maxPooled);
+    this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    this.maxRetainedBufferBytes = maxRetainedBufferBytes;
+  }
+
+  /** @return The process-wide pool used by senders that are not configured with their own. */
+  public static CompressionPool getDefault() {
+    return DEFAULT_POOL;
+  }
+
+  Deflater acquireDeflater() {
+    Deflater deflater = deflaters.poll();
+    if (deflater != null) {
+      deflaterHits.incrementAndGet();
+      return deflater;
+    }
+    deflaterMisses.incrementAndGet();
+    return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  }
+
+  void releaseDeflater(Deflater deflater) {
+    deflater.reset();
+    if (!deflaters.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  PooledBuffer acquireBuffer() {
+    PooledBuffer buffer = buffers.poll();
+    if (buffer != null) {
+      bufferHits.incrementAndGet();
+      buffer.reset();
+      return buffer;
+    }
+    bufferMisses.incrementAndGet();
+    return new PooledBuffer(INITIAL_BUFFER_BYTES);
+  }
+
+  void releaseBuffer(PooledBuffer buffer) {
+    if (buffer.capacity() <= maxRetainedBufferBytes) {
+      buffers.offer(buffer);
+    }
+  }
+
+  /** @return The number of times a pooled {@link Deflater} was reused. */
+  public long getDeflaterHits() {
+    return deflaterHits.get();
+  }
+
+  /** @return The number of times a new {@link Deflater} had to be created. */
+  public long getDeflaterMisses() {
+    return deflaterMisses.get();
+  }
+
+  /** @return The number of times a pooled output buffer was reused. */
+  public long getBufferHits() {
+    return bufferHits.get();
+  }
+
+  /** @return The number of times a new output buffer had to be allocated. */
+  public long getBufferMisses() {
+    return bufferMisses.get();
+  }
+
+  @Override
+  public String toString() {
+    return "CompressionPool{"
+        + "deflaterHits="
+        + deflaterHits
+        + ", deflaterMisses="
+        + deflaterMisses
+        + ", bufferHits="
+        + bufferHits
+        + ", bufferMisses="
+        + bufferMisses
+        + '}';
+  }
+
+  /** A {@link ByteArrayOutputStream} that keeps its backing array across {@link #reset()}. */
+  static final class PooledBuffer extends ByteArrayOutputStream {
+
+    PooledBuffer(int initialSize) {
+      super(initialSize);
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the gzip format using a caller-supplied {@link Deflater}. Unlike {@link
+ * java.util.zip.GZIPOutputStream}, this allows the deflater to be pooled and reused. The deflater
+ * must have been created with {@code nowrap} set to true, and is not ended when this stream is
+ * closed.
+ */
+final class GzipDeflaterOutputStream extends DeflaterOutputStream {
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int BUFFER_SIZE = 8192;
+
+  private final CRC32 crc = new CRC32();
+  private boolean finished = false;
+
+  GzipDeflaterOutputStream(OutputStream out, Deflater deflater) throws IOException {
+    super(out, deflater, BUFFER_SIZE);
+    writeHeader();
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    super.write(b, off, len);
+    crc.update(b, off, len);
+  }
+
+  @Override
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    super.finish();
+    writeInt((int) crc.getValue());
+    writeInt((int) def.getBytesRead());
+    finished = true;
+  }
+
+  private void writeHeader() throws IOException {
+    out.write(
+        new byte[] {
+          (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+        });
+  }
+
+  private void writeInt(int value) throws IOException {
+    out.write(value & 0xff);
+    out.write((value >> 8) & 0xff);
+    out.write((value >> 16) & 0xff);
+    out.write((value >> 24) & 0xff);
+  }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a JSON payload directly to a character stream. This allows a batch to be marshalled
+ * straight into the compressed request body, without ever being materialized as a single String.
+ */
+@FunctionalInterface
+public interface JsonPayloadWriter {
+
+  /**
+   * Write the full JSON payload to the provided {@link Writer}. Implementations must not close the
+   * writer.
+   *
+   * @param out The destination for the JSON payload.
+   * @throws IOException If writing to the underlying stream fails.
+   */
+  void writeTo(Writer out) throws IOException;
+}
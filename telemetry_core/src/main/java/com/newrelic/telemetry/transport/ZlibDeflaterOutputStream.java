@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the zlib format (the HTTP "deflate" content-encoding) using a caller-supplied raw {@link
+ * Deflater}, so that the same pooled deflaters can serve both gzip and deflate. The deflater must
+ * have been created with {@code nowrap} set to true, and is not ended when this stream is closed.
+ */
+final class ZlibDeflaterOutputStream extends DeflaterOutputStream {
+
+  private static final int CMF_DEFLATE_32K_WINDOW = 0x78;
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Adler32 adler = new Adler32();
+  private boolean finished = false;
+
+  ZlibDeflaterOutputStream(OutputStream out, Deflater deflater, int level) throws IOException {
+    super(out, deflater, BUFFER_SIZE);
+    writeHeader(level);
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    super.write(b, off, len);
+    adler.update(b, off, len);
+  }
+
+  @Override
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    super.finish();
+    int checksum = (int) adler.getValue();
+    out.write((checksum >> 24) & 0xff);
+    out.write((checksum >> 16) & 0xff);
+    out.write((checksum >> 8) & 0xff);
+    out.write(checksum & 0xff);
+    finished = true;
+  }
+
+  private void writeHeader(int level) throws IOException {
+    // The level hint is informational only, but follows zlib's own mapping.
+    int levelHint;
+    if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+      levelHint = 2;
+    } else if (level < 2) {
+      levelHint = 0;
+    } else if (level < 6) {
+      levelHint = 1;
+    } else {
+      levelHint = 3;
+    }
+    int flags = levelHint << 6;
+    flags += 31 - ((CMF_DEFLATE_32K_WINDOW << 8) + flags) % 31;
+    out.write(CMF_DEFLATE_32K_WINDOW);
+    out.write(flags);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Switches writers between two phases without ever blocking them, so that a reader can take what
+ * was written in one phase while writing carries on in the other.
+ *
+ * <p>A writer brackets each write with {@link #enterWriter()} and {@link #exitWriter(long)}, and
+ * writes to the state of the phase given by {@link #phaseIndex(long)}. The reader calls {@link
+ * #flipPhase()}, which switches new writes to the other phase and waits for the writes already in
+ * progress in the previous one to finish.
+ */
+public final class WriterPhaser {
+  // Writers increment the start epoch when they begin writing in the current phase, and the end
+  // epoch of that phase once they are done. The sign of the start epoch is the current phase.
+  private final AtomicLong startEpoch = new AtomicLong(0);
+  private final AtomicLong evenEndEpoch = new AtomicLong(0);
+  private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+
+  /**
+   * Begin a write.
+   *
+   * @return The epoch of the write, to pass to {@link #phaseIndex(long)} and {@link
+   *     #exitWriter(long)}.
+   */
+  public long enterWriter() {
+    return startEpoch.getAndIncrement();
+  }
+
+  /**
+   * Finish a write.
+   *
+   * @param epoch The epoch returned by {@link #enterWriter()} when the write began.
+   */
+  public void exitWriter(long epoch) {
+    (epoch < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+  }
+
+  /**
+   * @param epoch The epoch returned by {@link #enterWriter()}.
+   * @return The phase to write to, 0 or 1.
+   */
+  public static int phaseIndex(long epoch) {
+    return epoch < 0 ? 1 : 0;
+  }
+
+  /**
+   * Switch writers to the other phase, and wait for the writes that were already in progress to
+   * finish. Must only be called by one thread at a time.
+   *
+   * @return The phase that was written to since the last flip, 0 or 1, which no writer uses until
+   *     the next flip.
+   */
+  public int flipPhase() {
+    boolean nextPhaseIsEven = startEpoch.get() < 0;
+    long nextPhaseStart = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+    (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(nextPhaseStart);
+    long previousPhaseEnd = startEpoch.getAndSet(nextPhaseStart);
+    AtomicLong previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+    while (previousEndEpoch.get() != previousPhaseEnd) {
+      Thread.yield();
+    }
+    return nextPhaseIsEven ? 1 : 0;
+  }
+}
@@ -6,8 +6,14 @@ package com.newrelic.telemetry;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 class AttributesTest {
@@ -47,4 +53,111 @@ class AttributesTest {
     assertTrue(copyOfA.asMap().containsKey("keyOnlyInCopy"));
     assertFalse(a.asMap().containsKey("keyOnlyInCopy"));
   }
+
+  @Test
+  void testFrozenAttributesCannotChange() {
+    Attributes a = new Attributes().put("superFoo", "openBar");
+    Attributes frozen = a.freeze();
+    a.put("hello", "goodbye");
+
+    assertTrue(frozen.isFrozen());
+    assertFalse(a.isFrozen());
+    assertSame(frozen, frozen.freeze());
+    assertEquals(new Attributes().put("superFoo", "openBar"), frozen);
+    assertThrows(UnsupportedOperationException.class, () -> frozen.put("hello", "goodbye"));
+    assertThrows(UnsupportedOperationException.class, () -> frozen.put("count", 1));
+    assertThrows(UnsupportedOperationException.class, () -> frozen.put("flag", true));
+    assertThrows(UnsupportedOperationException.class, () -> frozen.putAll(a));
+    assertThrows(UnsupportedOperationException.class, () -> frozen.asMap().put("a", "b"));
+
+    Attributes thawed = frozen.copy().put("hello", "goodbye");
+    assertEquals(a, thawed);
+  }
+
+  @Test
+  void testFrozenAttributesEqualTheirOriginal() {
+    Attributes a =
+        new Attributes()
+            .put("string", "value")
+            .put("number", 12.5)
+            .put("boolean", false)
+            .put(null, "nullKey")
+            .put("null", (String) null);
+    Attributes frozen = a.freeze();
+
+    assertEquals(a, frozen);
+    assertEquals(frozen, a);
+    assertEquals(a.hashCode(), frozen.hashCode());
+    assertEquals(a.asMap(), frozen.asMap());
+    assertEquals(frozen.asMap(), a.asMap());
+    assertSame(frozen.asMap(), frozen.asMap());
+    assertEquals("nullKey", frozen.asMap().get(null));
+    assertTrue(frozen.asMap().containsKey("null"));
+    assertFalse(frozen.asMap().containsKey("missing"));
+    assertEquals(
+        Arrays.asList(null, "boolean", "null", "number", "string"),
+        Arrays.asList(frozen.asMap().keySet().toArray()));
+  }
+
+  @Test
+  void testFrozenAttributesAsMapKeys() {
+    Map<Attributes, String> series = new HashMap<>();
+    series.put(new Attributes().put("host", "a").put("port", 80).freeze(), "a:80");
+
+    assertEquals("a:80", series.get(new Attributes().put("port", 80).put("host", "a")));
+    assertEquals("a:80", series.get(new Attributes().put("port", 80).put("host", "a").freeze()));
+  }
+
+  @Test
+  void testInternerSharesIdenticalAttributes() {
+    AttributesInterner interner = new AttributesInterner(2);
+    Attributes first = interner.intern(new Attributes().put("host", "a"));
+
+    assertTrue(first.isFrozen());
+    assertSame(first, interner.intern(new Attributes().put("host", "a")));
+    assertSame(first, interner.intern(first));
+
+    Attributes second = interner.intern(new Attributes().put("host", "b"));
+    Attributes overflow = interner.intern(new Attributes().put("host", "c"));
+
+    assertEquals(2, interner.size());
+    assertSame(second, interner.intern(new Attributes().put("host", "b")));
+    assertTrue(overflow.isFrozen());
+    assertNotSame(overflow, interner.intern(new Attributes().put("host", "c")));
+  }
+
+  @Test
+  void testFrozenValuesKeepTheirTypes() {
+    Attributes frozen =
+        new Attributes()
+            .put("int", 5)
+            .put("long", 5L)
+            .put("short", (short) 5)
+            .put("byte", (byte) 5)
+            .put("double", 5d)
+            .put("float", 5f)
+            .put("boolean", true)
+            .freeze();
+    Map<String, Object> map = frozen.asMap();
+
+    assertEquals(Integer.valueOf(5), map.get("int"));
+    assertEquals(Long.valueOf(5), map.get("long"));
+    assertEquals(Short.valueOf((short) 5), map.get("short"));
+    assertEquals(Byte.valueOf((byte) 5), map.get("byte"));
+    assertEquals(Double.valueOf(5), map.get("double"));
+    assertEquals(Float.valueOf(5), map.get("float"));
+    assertEquals(Boolean.TRUE, map.get("boolean"));
+  }
+
+  @Test
+  void testMapViewIsNotACopy() {
+    Attributes a = new Attributes().put("superFoo", "openBar");
+    Map<String, Object> view = a.asMapView();
+    a.put("hello", "goodbye");
+
+    assertEquals("goodbye", view.get("hello"));
+    assertThrows(UnsupportedOperationException.class, () -> view.put("a", "b"));
+    Attributes frozen = a.freeze();
+    assertSame(frozen.asMap(), frozen.asMapView());
+  }
 }
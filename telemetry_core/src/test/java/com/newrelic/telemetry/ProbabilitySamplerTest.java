@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.events.Event;
+import com.newrelic.telemetry.events.EventBatch;
+import com.newrelic.telemetry.events.EventBuffer;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class ProbabilitySamplerTest {
+
+  @Test
+  void testTraceIdsAreKeptAtTheSampleRate() {
+    ProbabilitySampler sampler = new ProbabilitySampler(0.25);
+    int kept = 0;
+    for (int i = 0; i < 100_000; i++) {
+      String traceId = UUID.randomUUID().toString();
+      boolean keep = sampler.shouldKeep(traceId);
+      assertEquals(keep, new ProbabilitySampler(0.25).shouldKeep(traceId));
+      kept += keep ? 1 : 0;
+    }
+    assertEquals(25_000, kept, 1_000);
+  }
+
+  @Test
+  void testEveryTraceIsKeptAtFullRate() {
+    ProbabilitySampler sampler = new ProbabilitySampler(1);
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(sampler.shouldKeep(Integer.toHexString(i)));
+      assertTrue(sampler.shouldKeep(null));
+    }
+  }
+
+  @Test
+  void testSampleRateMustBeAProbability() {
+    assertThrows(IllegalArgumentException.class, () -> new ProbabilitySampler(0));
+    assertThrows(IllegalArgumentException.class, () -> new ProbabilitySampler(1.5));
+    assertThrows(IllegalArgumentException.class, () -> new ProbabilitySampler(Double.NaN));
+  }
+
+  @Test
+  void testEventBufferKeepsSampledEventsAndRecordsTheRate() {
+    ProbabilitySampler sampler = new ProbabilitySampler(0.5);
+    EventBuffer buffer = new EventBuffer(new Attributes().put("app", "sampled"), sampler);
+    int expected = 0;
+    for (int i = 0; i < 1000; i++) {
+      String traceId = "trace-" + i;
+      expected += sampler.shouldKeep(traceId) ? 1 : 0;
+      buffer.addEvent(new Event("Sampled", new Attributes().put("trace.id", traceId)));
+    }
+
+    EventBatch batch = buffer.createBatch();
+
+    assertEquals(expected, batch.size());
+    assertEquals(
+        new Attributes().put("app", "sampled").put(ProbabilitySampler.SAMPLE_RATE_ATTRIBUTE, 0.5),
+        batch.getCommonAttributes());
+  }
+}
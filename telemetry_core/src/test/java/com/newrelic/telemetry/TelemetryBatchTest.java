@@ -5,13 +5,18 @@
 package com.newrelic.telemetry;
 
 import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.newrelic.telemetry.metrics.Count;
 import com.newrelic.telemetry.metrics.Metric;
 import com.newrelic.telemetry.metrics.MetricBatch;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class TelemetryBatchTest {
@@ -25,4 +30,40 @@ class TelemetryBatchTest {
     assertTrue(batch1.isEmpty());
     assertFalse(batch2.isEmpty());
   }
+
+  @Test
+  void testRecursiveSplitKeepsOrder() {
+    List<Metric> metrics = new ArrayList<>();
+    for (int i = 0; i < 11; i++) {
+      metrics.add(new Count("m" + i, i, 123, 456, new Attributes()));
+    }
+    TelemetryBatch<Metric> batch = new MetricBatch(new LinkedHashSet<>(metrics), new Attributes());
+
+    List<Metric> flattened = new ArrayList<>();
+    collectLeaves(batch, flattened);
+
+    assertEquals(metrics, flattened);
+  }
+
+  @Test
+  void testSplitDoesNotAllowModification() {
+    Metric metric = new Count("a", 12.0, 123, 456, new Attributes());
+    TelemetryBatch<Metric> batch =
+        new MetricBatch(Collections.nCopies(4, metric), new Attributes());
+
+    TelemetryBatch<Metric> half = batch.split().get(0);
+
+    assertEquals(2, half.size());
+    assertThrows(UnsupportedOperationException.class, () -> half.getTelemetry().add(metric));
+  }
+
+  private static void collectLeaves(TelemetryBatch<Metric> batch, List<Metric> leaves) {
+    if (batch.size() <= 1) {
+      leaves.addAll(batch.getTelemetry());
+      return;
+    }
+    for (TelemetryBatch<Metric> part : batch.split()) {
+      collectLeaves(part, leaves);
+    }
+  }
 }
@@ -9,9 +9,13 @@ import com.newrelic.telemetry.Response;
 import com.newrelic.telemetry.events.json.EventBatchMarshaller;
 import com.newrelic.telemetry.exceptions.RetryWithSplitException;
 import com.newrelic.telemetry.transport.BatchDataSender;
+import com.newrelic.telemetry.transport.JsonPayloadWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 
 public class EventBatchSenderTest {
@@ -28,17 +32,87 @@ public class EventBatchSenderTest {
 
     String json = "{\"a\":\"great document\"}";
     EventBatchMarshaller marshaller = mock(EventBatchMarshaller.class);
-    when(marshaller.toJson(any())).thenReturn(json);
+    doAnswer(
+            invocation -> {
+              invocation.<Writer>getArgument(1).write(json);
+              return null;
+            })
+        .when(marshaller)
+        .toJson(any(EventBatch.class), any(Writer.class));
 
     Response ok = new Response(200, "OK", "yup");
     BatchDataSender sender = mock(BatchDataSender.class);
-    when(sender.send(json)).thenThrow(RetryWithSplitException.class).thenReturn(ok);
+    when(sender.send(any(JsonPayloadWriter.class)))
+        .thenThrow(RetryWithSplitException.class)
+        .thenReturn(ok);
 
     EventBatchSender testClass = new EventBatchSender(marshaller, sender);
 
     Response result = testClass.sendBatch(batch);
     assertEquals(ok, result);
-    verify(sender, times(3)).send(any());
+    verify(sender, times(3)).send(any(JsonPayloadWriter.class));
+  }
+
+  @Test
+  void testSplitSendAsync() throws Exception {
+    Event el = new Event("JitThing1", null, System.currentTimeMillis());
+    Event el2 = new Event("JitThing2", null, System.currentTimeMillis());
+    List<Event> events = new ArrayList<>();
+    events.add(el);
+    events.add(el2);
+    EventBatch batch = new EventBatch(events, new Attributes().put("j", "k"));
+
+    EventBatchMarshaller marshaller = mock(EventBatchMarshaller.class);
+    Response ok = new Response(200, "OK", "yup");
+    CompletableFuture<Response> tooLarge = new CompletableFuture<>();
+    tooLarge.completeExceptionally(new RetryWithSplitException());
+    BatchDataSender sender = mock(BatchDataSender.class);
+    when(sender.sendAsync(any(JsonPayloadWriter.class)))
+        .thenReturn(tooLarge)
+        .thenReturn(CompletableFuture.completedFuture(ok));
+
+    EventBatchSender testClass = new EventBatchSender(marshaller, sender);
+
+    Response result = testClass.sendBatchAsync(batch).get();
+    assertEquals(ok, result);
+    verify(sender, times(3)).sendAsync(any(JsonPayloadWriter.class));
+  }
+
+  @Test
+  void testSingleOversizeEventIsDropped() throws Exception {
+    EventBatch batch =
+        new EventBatch(
+            Collections.singletonList(new Event("Huge", null, System.currentTimeMillis())),
+            new Attributes());
+    EventBatchMarshaller marshaller = mock(EventBatchMarshaller.class);
+    BatchDataSender sender = mock(BatchDataSender.class);
+    when(sender.send(any(JsonPayloadWriter.class))).thenThrow(RetryWithSplitException.class);
+
+    EventBatchSender testClass = new EventBatchSender(marshaller, sender);
+
+    Response result = testClass.sendBatch(batch);
+    assertEquals(413, result.getStatusCode());
+    verify(sender, times(1)).send(any(JsonPayloadWriter.class));
+  }
+
+  @Test
+  void testOversizeEventIsDroppedFromASplitBatch() throws Exception {
+    Event small = new Event("Small", null, System.currentTimeMillis());
+    Event huge = new Event("Huge", null, System.currentTimeMillis());
+    EventBatch batch = new EventBatch(Arrays.asList(small, huge), new Attributes());
+    EventBatchMarshaller marshaller = mock(EventBatchMarshaller.class);
+    Response ok = new Response(200, "OK", "yup");
+    BatchDataSender sender = mock(BatchDataSender.class);
+    when(sender.send(any(JsonPayloadWriter.class)))
+        .thenThrow(RetryWithSplitException.class)
+        .thenReturn(ok)
+        .thenThrow(RetryWithSplitException.class);
+
+    EventBatchSender testClass = new EventBatchSender(marshaller, sender);
+
+    Response result = testClass.sendBatch(batch);
+    assertEquals(ok, result);
+    verify(sender, times(3)).send(any(JsonPayloadWriter.class));
   }
 
   @Test
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.ProbabilitySampler;
+import com.newrelic.telemetry.TelemetryBatch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+class EventBufferTest {
+
+  private final Attributes commonAttributes = new Attributes().put("service.name", "buffered");
+
+  @Test
+  void testUnboundedBufferKeepsEveryEvent() {
+    EventBuffer buffer = new EventBuffer(commonAttributes);
+    Event first = new Event("Test", new Attributes(), 1);
+    Event second = new Event("Test", new Attributes(), 2);
+    buffer.addEvent(first);
+    buffer.addEvent(second);
+
+    EventBatch batch = buffer.createBatch();
+
+    assertEquals(new EventBatch(Arrays.asList(first, second), commonAttributes), batch);
+    assertEquals(2, batch.getSeenCount());
+    assertEquals(0, batch.getDroppedCount());
+  }
+
+  @Test
+  void testBoundedBufferKeepsEventsUntilFull() {
+    EventBuffer buffer = new EventBuffer(commonAttributes, 3);
+    Event first = new Event("Test", new Attributes(), 1);
+    Event second = new Event("Test", new Attributes(), 2);
+    buffer.addEvent(first);
+    buffer.addEvent(second);
+
+    EventBatch batch = buffer.createBatch();
+
+    assertEquals(new EventBatch(Arrays.asList(first, second), commonAttributes, 2), batch);
+    assertTrue(buffer.createBatch().isEmpty());
+  }
+
+  @Test
+  void testBoundedBufferKeepsASampleOnceFull() {
+    EventBuffer buffer = new EventBuffer(commonAttributes, 10);
+    Set<Event> added = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      Event event = new Event("Test", new Attributes(), i);
+      added.add(event);
+      buffer.addEvent(event);
+    }
+
+    EventBatch batch = buffer.createBatch();
+
+    assertEquals(10, batch.size());
+    assertEquals(1000, batch.getSeenCount());
+    assertEquals(990, batch.getDroppedCount());
+    assertEquals(10, new HashSet<>(batch.getTelemetry()).size());
+    assertTrue(added.containsAll(batch.getTelemetry()));
+
+    buffer.addEvent(new Event("Test", new Attributes(), 1000));
+    assertEquals(1, buffer.createBatch().getSeenCount());
+  }
+
+  @Test
+  void testBoundedBufferSamplesUniformly() {
+    int capacity = 10;
+    int added = 100;
+    int rounds = 2000;
+    int[] keptCounts = new int[added];
+    EventBuffer buffer = new EventBuffer(commonAttributes, capacity);
+    for (int round = 0; round < rounds; round++) {
+      for (int i = 0; i < added; i++) {
+        buffer.addEvent(new Event("Test", new Attributes(), i));
+      }
+      for (Event event : buffer.createBatch().getTelemetry()) {
+        keptCounts[(int) event.getTimestamp()]++;
+      }
+    }
+
+    // Each event is kept with a probability of 1/10, so 200 times in 2000 rounds, give or take 13.
+    for (int i = 0; i < added; i++) {
+      assertTrue(keptCounts[i] > 130 && keptCounts[i] < 270, "event " + i + ": " + keptCounts[i]);
+    }
+  }
+
+  @Test
+  void testConcurrentAddsAreAllSeen() throws Exception {
+    EventBuffer buffer = new EventBuffer(commonAttributes, 100);
+    int threadCount = 4;
+    int eventsPerThread = 10_000;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return;
+                }
+                for (int i = 0; i < eventsPerThread; i++) {
+                  buffer.addEvent(new Event("Test", new Attributes(), i));
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+
+    start.countDown();
+    long seen = 0;
+    while (threads.stream().anyMatch(Thread::isAlive)) {
+      EventBatch batch = buffer.createBatch();
+      assertTrue(batch.size() <= 100);
+      seen += batch.getSeenCount();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    seen += buffer.createBatch().getSeenCount();
+
+    assertEquals(threadCount * eventsPerThread, seen);
+  }
+
+  @Test
+  void testSplitBatchesShareTheSeenCount() {
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      events.add(new Event("Test", new Attributes(), i));
+    }
+    EventBatch batch = new EventBatch(events, commonAttributes, 40);
+
+    List<TelemetryBatch<Event>> split = batch.split();
+
+    assertEquals(2, split.size());
+    assertEquals(20, ((EventBatch) split.get(0)).getSeenCount());
+    assertEquals(20, ((EventBatch) split.get(1)).getSeenCount());
+  }
+
+  @Test
+  void testSplitBatchesAddUpToTheSeenCount() {
+    Event first = new Event("Test", new Attributes(), 1);
+    Event second = new Event("Test", new Attributes(), 2);
+    EventBatch batch = new EventBatch(Arrays.asList(first, second), commonAttributes, 5);
+
+    List<TelemetryBatch<Event>> split = batch.split();
+
+    assertEquals(2, ((EventBatch) split.get(0)).getSeenCount());
+    assertEquals(3, ((EventBatch) split.get(1)).getSeenCount());
+
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      events.add(new Event("Test", new Attributes(), i));
+    }
+    List<TelemetryBatch<Event>> odd = new EventBatch(events, commonAttributes, 7).split();
+    long total = 0;
+    for (TelemetryBatch<Event> piece : odd) {
+      for (TelemetryBatch<Event> quarter : piece.split()) {
+        total += ((EventBatch) quarter).getSeenCount();
+      }
+    }
+    assertEquals(7, total);
+  }
+
+  @Test
+  void testSampledBoundedBufferKeepsASampleOfTheKeptEvents() {
+    EventBuffer buffer = new EventBuffer(commonAttributes, new ProbabilitySampler(0.5), 10);
+    for (int i = 0; i < 1000; i++) {
+      buffer.addEvent(new Event("Test", new Attributes().put("trace.id", "trace-" + i), i));
+    }
+
+    EventBatch batch = buffer.createBatch();
+
+    assertEquals(10, batch.size());
+    assertTrue(batch.getSeenCount() > 10 && batch.getSeenCount() < 1000);
+    assertEquals(0.5, batch.getCommonAttributes().asMap().get("sampling.rate"));
+  }
+
+  @Test
+  void testToStringShowsTheCapacity() {
+    assertTrue(new EventBuffer(commonAttributes, 10).toString().contains("capacity=10"));
+    assertTrue(new EventBuffer(commonAttributes).toString().contains("capacity=0"));
+  }
+
+  @Test
+  void testCapacityMustBePositive() {
+    assertThrows(IllegalArgumentException.class, () -> new EventBuffer(commonAttributes, 0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new EventBuffer(commonAttributes, new ProbabilitySampler(0.5), 0));
+  }
+}
@@ -5,10 +5,13 @@
 
 package com.newrelic.telemetry.events.json;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import com.newrelic.telemetry.Attributes;
 import com.newrelic.telemetry.events.Event;
 import com.newrelic.telemetry.events.EventBatch;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Collections;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -46,4 +49,20 @@ public class EventBatchMarshallerTest {
         "[{\"timestamp\":1586413929145,\"eventType\":\"testJIT\",\"escapeMe\":\"\\\"quoted\\\"\",\"number\":55.555,\"boolean\":true,\"double\":3.14,\"float\":4.32,\"int\":5,\"long\":384949494949499999}]";
     JSONAssert.assertEquals(expected, json, true);
   }
+
+  @Test
+  public void test_common_attributes_are_merged_without_changing_events() throws Exception {
+    Attributes commonAttributes = new Attributes().put("host", "common").put("region", "us");
+    Event first = new Event("first", new Attributes().put("host", "own").put("id", 1), 1000L);
+    Event second = new Event("second", new Attributes().put("id", 2), 2000L);
+    EventBatch eb = new EventBatch(Arrays.asList(first, second), commonAttributes);
+
+    String json = eventBatchMarshaller.toJson(eb);
+
+    String expected =
+        "[{\"eventType\":\"first\",\"timestamp\":1000,\"id\":1,\"host\":\"common\",\"region\":\"us\"},"
+            + "{\"eventType\":\"second\",\"timestamp\":2000,\"id\":2,\"host\":\"common\",\"region\":\"us\"}]";
+    JSONAssert.assertEquals(expected, json, true);
+    assertEquals(new Attributes().put("host", "own").put("id", 1), first.getAttributes());
+  }
 }
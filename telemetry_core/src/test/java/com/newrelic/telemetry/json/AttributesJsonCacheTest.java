@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.newrelic.telemetry.Attributes;
+import org.junit.jupiter.api.Test;
+
+class AttributesJsonCacheTest {
+
+  @Test
+  void testFrozenAttributesAreOnlyRenderedOnce() {
+    AttributesJsonCache cache = new AttributesJsonCache(new AttributesJson());
+    Attributes frozen = new Attributes().put("service.name", "cache").freeze();
+
+    String json = cache.toJson(frozen);
+
+    assertEquals("{\"service.name\":\"cache\"}", json);
+    assertSame(json, cache.toJson(frozen));
+
+    Attributes other = new Attributes().put("service.name", "other").freeze();
+    assertEquals("{\"service.name\":\"other\"}", cache.toJson(other));
+    assertSame(cache.toJson(other), cache.toJson(other));
+  }
+
+  @Test
+  void testMutableAttributesAreRenderedEveryTime() {
+    AttributesJsonCache cache = new AttributesJsonCache(new AttributesJson());
+    Attributes attributes = new Attributes().put("a", "b");
+
+    String json = cache.toJson(attributes);
+    attributes.put("c", 1);
+
+    assertEquals("{\"a\":\"b\"}", json);
+    assertNotSame(json, cache.toJson(attributes));
+    assertEquals("{\"a\":\"b\",\"c\":1}", cache.toJson(attributes.freeze()));
+  }
+}
@@ -6,7 +6,13 @@ package com.newrelic.telemetry.json;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import com.google.gson.stream.JsonWriter;
+import com.newrelic.telemetry.Attributes;
+import java.io.StringWriter;
+import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 
@@ -24,4 +30,53 @@ class AttributesJsonTest {
     JSONAssert.assertEquals(
         "{\"foo\":\"bar\"}", attributesJson.toJson(Collections.singletonMap("foo", "bar")), false);
   }
+
+  @Test
+  void testFrozenAttributesMatchMutableOnes() throws Exception {
+    AttributesJson attributesJson = new AttributesJson();
+    Attributes attributes =
+        new Attributes()
+            .put("string", "val")
+            .put("double", 4.4d)
+            .put("float", 4.32f)
+            .put("int", 5)
+            .put("long", 384949494949499999L)
+            .put("boolean", true)
+            .put("number", new BigDecimal("55.555"))
+            .put("nan", Double.NaN)
+            .put("null", (String) null);
+
+    String frozenJson = attributesJson.toJson(attributes.freeze().asMap());
+
+    assertEquals(
+        "{\"boolean\":true,\"double\":4.4,\"float\":4.32,\"int\":5,"
+            + "\"long\":384949494949499999,\"number\":55.555,\"string\":\"val\"}",
+        frozenJson);
+    JSONAssert.assertEquals(attributesJson.toJson(attributes.asMap()), frozenJson, true);
+  }
+
+  @Test
+  void testWriteJsonSkipsIllegalValuesInPlace() throws Exception {
+    AttributesJson attributesJson = new AttributesJson();
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("string", "val");
+    attributes.put("null", null);
+    attributes.put("nan", Double.NaN);
+    attributes.put("infinite", Float.NEGATIVE_INFINITY);
+    attributes.put("long", 5L);
+    attributes.put("boolean", false);
+    StringWriter out = new StringWriter();
+    JsonWriter jsonWriter = new JsonWriter(out);
+
+    jsonWriter.beginObject();
+    jsonWriter.name("attributes");
+    attributesJson.writeJson(attributes, jsonWriter);
+    jsonWriter.name("frozen");
+    attributesJson.writeJson(new Attributes().put("nan", Double.NaN).freeze().asMap(), jsonWriter);
+    jsonWriter.endObject();
+
+    assertEquals(
+        "{\"attributes\":{\"string\":\"val\",\"long\":5,\"boolean\":false},\"frozen\":{}}",
+        out.toString());
+  }
 }
@@ -7,11 +7,17 @@ package com.newrelic.telemetry.json;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.google.gson.stream.JsonWriter;
 import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.metrics.Count;
 import com.newrelic.telemetry.metrics.Gauge;
+import com.newrelic.telemetry.metrics.Histogram;
+import com.newrelic.telemetry.metrics.HistogramSketch;
 import com.newrelic.telemetry.metrics.MetricBatch;
 import com.newrelic.telemetry.metrics.json.MetricBatchJsonTelemetryBlockWriter;
 import com.newrelic.telemetry.metrics.json.MetricToJson;
+import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Collections;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -48,4 +54,31 @@ class MetricBatchJsonTelemetryBlockWriterTest {
 
     JSONAssert.assertEquals(expectedTelemetryJsonBlock, stringBuilder.toString(), false);
   }
+
+  @Test
+  @DisplayName("Metrics are written into a shared writer")
+  void testTelemetryJsonIntoWriter() throws Exception {
+    HistogramSketch sketch = new HistogramSketch();
+    sketch.record(5);
+    Histogram histogram =
+        new Histogram("latency", sketch, new double[] {0.5}, 555, 666, new Attributes());
+    Count invalid = new Count("count", Double.NaN, 555, 666, new Attributes());
+    MetricBatch batch = new MetricBatch(Arrays.asList(gauge, invalid, histogram), new Attributes());
+    StringWriter out = new StringWriter();
+    JsonWriter jsonWriter = new JsonWriter(out);
+
+    MetricBatchJsonTelemetryBlockWriter testClass =
+        new MetricBatchJsonTelemetryBlockWriter(new MetricToJson());
+    jsonWriter.beginObject();
+    testClass.appendTelemetryJson(batch, jsonWriter);
+    jsonWriter.endObject();
+
+    String expected =
+        "{\"metrics\":["
+            + "{\"name\":\"gauge\",\"type\":\"gauge\",\"value\":3.0,\"timestamp\":555,\"attributes\":{}},"
+            + "{\"name\":\"latency\",\"type\":\"summary\",\"value\":{\"count\":1,\"sum\":5.0,\"min\":5.0,\"max\":5.0},\"timestamp\":555,\"interval.ms\":111,\"attributes\":{}},"
+            + "{\"name\":\"latency.percentiles\",\"type\":\"gauge\",\"value\":5.0,\"timestamp\":666,\"attributes\":{\"percentile\":50.0}}"
+            + "]}";
+    JSONAssert.assertEquals(expected, out.toString(), true);
+  }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.Attributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CountRegistryTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+
+  @Test
+  void testIncrementsToASeriesAreReportedAsOneCount() {
+    CountRegistry registry = new CountRegistry(now::get);
+    Attributes attributes = new Attributes().put("route", "/users");
+
+    Counter counter = registry.counter("requests", attributes);
+    for (int i = 0; i < 1000; i++) {
+      counter.increment();
+    }
+    registry.counter("requests", new Attributes().put("route", "/users")).add(0.5);
+    now.set(2000);
+
+    List<Metric> metrics = harvest(registry);
+
+    assertEquals(1, metrics.size());
+    assertEquals(new Count("requests", 1000.5, 1000, 2000, attributes), metrics.get(0));
+  }
+
+  @Test
+  void testSeriesAreKeyedByNameAndAttributes() {
+    CountRegistry registry = new CountRegistry(now::get);
+    Attributes attributes = new Attributes().put("route", "/users");
+
+    Counter counter = registry.counter("requests", attributes);
+    attributes.put("route", "/orders");
+
+    assertSame(counter, registry.counter("requests", new Attributes().put("route", "/users")));
+    registry.counter("requests", attributes).increment();
+    registry.counter("errors", attributes).increment();
+    assertEquals(3, registry.size());
+    assertEquals(2, harvest(registry).size());
+  }
+
+  @Test
+  void testHarvestStartsANewInterval() {
+    CountRegistry registry = new CountRegistry(now::get);
+    Counter counter = registry.counter("requests", new Attributes());
+    counter.add(3L);
+    now.set(2000);
+    harvest(registry);
+
+    now.set(3000);
+    assertTrue(harvest(registry).isEmpty());
+
+    counter.add(2L);
+    now.set(4000);
+    List<Metric> metrics = harvest(registry);
+
+    assertEquals(new Count("requests", 2, 3000, 4000, new Attributes()), metrics.get(0));
+  }
+
+  @Test
+  void testConcurrentIncrementsAreNotLost() throws Exception {
+    CountRegistry registry = new CountRegistry(now::get);
+    Counter counter = registry.counter("requests", new Attributes());
+    int threads = 4;
+    int increments = 100_000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(
+              () -> {
+                for (int j = 0; j < increments; j++) {
+                  counter.increment();
+                }
+                done.countDown();
+              })
+          .start();
+    }
+
+    double total = 0;
+    while (done.getCount() > 0) {
+      total += sum(harvest(registry));
+    }
+    done.await();
+    total += sum(harvest(registry));
+
+    assertEquals(threads * increments, total, 0);
+  }
+
+  @Test
+  void testIdleIntervalAfterContendedFractionalIncrementsReportsNothing() throws Exception {
+    CountRegistry registry = new CountRegistry(now::get);
+    Counter counter = registry.counter("latency", new Attributes());
+    int threads = 8;
+    for (int round = 0; round < 50; round++) {
+      CountDownLatch start = new CountDownLatch(1);
+      CountDownLatch done = new CountDownLatch(threads);
+      for (int i = 0; i < threads; i++) {
+        double amount = i % 2 == 0 ? 0.1 : 0.2;
+        new Thread(
+                () -> {
+                  try {
+                    start.await();
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                  for (int j = 0; j < 10_000; j++) {
+                    counter.add(amount);
+                  }
+                  done.countDown();
+                })
+            .start();
+      }
+      start.countDown();
+      done.await();
+      assertEquals(1, harvest(registry).size());
+
+      assertTrue(harvest(registry).isEmpty(), "round " + round);
+    }
+  }
+
+  @Test
+  void testMetricBufferReportsCounts() {
+    MetricBuffer buffer = new MetricBuffer(new Attributes(), now::get);
+    buffer.getCountRegistry().counter("requests", new Attributes()).add(5L);
+    Gauge gauge = new Gauge("heap", 42, 1000, new Attributes());
+    buffer.addMetric(gauge);
+    now.set(2000);
+
+    Collection<Metric> metrics = buffer.createBatch().getTelemetry();
+
+    assertEquals(2, metrics.size());
+    assertTrue(metrics.contains(gauge));
+    assertTrue(metrics.contains(new Count("requests", 5, 1000, 2000, new Attributes())));
+  }
+
+  private static List<Metric> harvest(CountRegistry registry) {
+    List<Metric> metrics = new ArrayList<>();
+    registry.harvest(metrics);
+    return metrics;
+  }
+
+  private static double sum(List<Metric> metrics) {
+    return metrics.stream().mapToDouble(metric -> ((Count) metric).getValue()).sum();
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.Attributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class GaugeRegistryTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+
+  @Test
+  void testGaugesAreSampledAtEveryHarvest() {
+    GaugeRegistry registry = new GaugeRegistry(now::get);
+    Attributes attributes = new Attributes().put("queue", "work");
+    AtomicInteger depth = new AtomicInteger(3);
+    registry.register("queue.depth", attributes, depth::get);
+    now.set(2000);
+
+    List<Metric> first = harvest(registry);
+    depth.set(8);
+    now.set(3000);
+    List<Metric> second = harvest(registry);
+
+    assertEquals(new Gauge("queue.depth", 3, 2000, attributes), first.get(0));
+    assertEquals(new Gauge("queue.depth", 8, 3000, attributes), second.get(0));
+    assertSame(((Gauge) first.get(0)).getAttributes(), ((Gauge) second.get(0)).getAttributes());
+  }
+
+  @Test
+  void testRegisteringASeriesAgainReplacesItsCallback() {
+    GaugeRegistry registry = new GaugeRegistry(now::get);
+    Attributes attributes = new Attributes().put("pool", "db");
+    registry.register("pool.size", attributes, () -> 1);
+    registry.register("pool.size", attributes.copy(), () -> 2);
+
+    List<Metric> metrics = harvest(registry);
+
+    assertEquals(1, registry.size());
+    assertEquals(new Gauge("pool.size", 2, 1000, attributes), metrics.get(0));
+  }
+
+  @Test
+  void testMissingAndFailingValuesAreSkipped() {
+    GaugeRegistry registry = new GaugeRegistry(now::get);
+    registry.register("missing", new Attributes(), () -> Double.NaN);
+    registry.register(
+        "failing",
+        new Attributes(),
+        () -> {
+          throw new IllegalStateException("closed");
+        });
+    registry.register("present", new Attributes(), () -> 1);
+
+    List<Metric> metrics = harvest(registry);
+
+    assertEquals(1, metrics.size());
+    assertEquals(new Gauge("present", 1, 1000, new Attributes()), metrics.get(0));
+  }
+
+  @Test
+  void testMetricBufferSamplesGauges() {
+    MetricBuffer buffer = new MetricBuffer(new Attributes(), now::get);
+    buffer.getGaugeRegistry().register("heap", new Attributes(), () -> 42);
+    now.set(2000);
+
+    Collection<Metric> metrics = buffer.createBatch().getTelemetry();
+
+    assertEquals(1, metrics.size());
+    assertTrue(metrics.contains(new Gauge("heap", 42, 2000, new Attributes())));
+  }
+
+  private static List<Metric> harvest(GaugeRegistry registry) {
+    List<Metric> metrics = new ArrayList<>();
+    registry.harvest(metrics);
+    return metrics;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.Attributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class HistogramRegistryTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+
+  @Test
+  void testObservationsAreReportedAsOneHistogram() {
+    HistogramRegistry registry = new HistogramRegistry(now::get);
+    Attributes attributes = new Attributes().put("route", "/users");
+    HistogramRecorder recorder = registry.histogram("latency", attributes, 0.5, 0.99);
+    HistogramSketch expected = new HistogramSketch();
+    for (int i = 1; i <= 1000; i++) {
+      recorder.record(i);
+      expected.record(i);
+    }
+    assertSame(recorder, registry.histogram("latency", new Attributes().put("route", "/users")));
+    now.set(2000);
+
+    List<Metric> metrics = harvest(registry);
+
+    assertEquals(1, metrics.size());
+    Histogram histogram = (Histogram) metrics.get(0);
+    assertEquals(
+        new Histogram("latency", expected, new double[] {0.5, 0.99}, 1000, 2000, attributes),
+        histogram);
+    assertArrayEquals(new double[] {0.5, 0.99}, histogram.getQuantiles());
+    assertTrue(harvest(registry).isEmpty());
+  }
+
+  @Test
+  void testConcurrentObservationsAreAllCounted() throws Exception {
+    HistogramRegistry registry = new HistogramRegistry(now::get);
+    HistogramRecorder recorder = registry.histogram("latency", new Attributes());
+    int threads = 4;
+    int observations = 50_000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(
+              () -> {
+                for (int j = 1; j <= observations; j++) {
+                  recorder.record(j);
+                }
+                done.countDown();
+              })
+          .start();
+    }
+
+    List<Metric> metrics = new ArrayList<>();
+    while (done.getCount() > 0) {
+      registry.harvest(metrics);
+    }
+    done.await();
+    registry.harvest(metrics);
+
+    long count = 0;
+    for (Metric metric : metrics) {
+      count += ((Histogram) metric).getCount();
+    }
+    assertEquals(threads * observations, count);
+  }
+
+  @Test
+  void testQuantilesMustBeValid() {
+    HistogramRegistry registry = new HistogramRegistry(now::get);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> registry.histogram("latency", new Attributes(), 0.5, 99));
+  }
+
+  @Test
+  void testMetricBufferReportsHistograms() {
+    MetricBuffer buffer = new MetricBuffer(new Attributes(), now::get);
+    buffer.getHistogramRegistry().histogram("latency", new Attributes()).record(5);
+    now.set(2000);
+
+    Collection<Metric> metrics = buffer.createBatch().getTelemetry();
+
+    assertEquals(1, metrics.size());
+    Histogram histogram = (Histogram) metrics.iterator().next();
+    assertEquals(5, histogram.getValueAtQuantile(0.99), 0);
+  }
+
+  private static List<Metric> harvest(HistogramRegistry registry) {
+    List<Metric> metrics = new ArrayList<>();
+    registry.harvest(metrics);
+    return metrics;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class HistogramSketchTest {
+
+  private static final double[] QUANTILES = {0, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1};
+
+  @Test
+  void testQuantilesAreWithinTheRelativeAccuracy() {
+    Random random = new Random(42);
+    double[] values = new double[100_000];
+    HistogramSketch sketch = new HistogramSketch();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.exp(random.nextGaussian() * 3);
+      sketch.record(values[i]);
+    }
+
+    assertQuantilesMatch(values, sketch);
+    assertEquals(values.length, sketch.getCount());
+    assertEquals(Arrays.stream(values).sum(), sketch.getSum(), 1e-6);
+  }
+
+  @Test
+  void testNegativeAndZeroValues() {
+    double[] values = new double[2001];
+    HistogramSketch sketch = new HistogramSketch();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i - 1000;
+      sketch.record(values[i]);
+    }
+
+    assertQuantilesMatch(values, sketch);
+    assertEquals(0, sketch.getValueAtQuantile(0.5), 0);
+    assertEquals(-1000, sketch.getMin(), 0);
+    assertEquals(1000, sketch.getMax(), 0);
+  }
+
+  @Test
+  void testMergingIsTheSameAsRecordingEverything() {
+    HistogramSketch all = new HistogramSketch();
+    HistogramSketch first = new HistogramSketch();
+    HistogramSketch second = new HistogramSketch();
+    for (int i = 1; i <= 1000; i++) {
+      all.record(i * 0.5);
+      (i % 3 == 0 ? first : second).record(i * 0.5);
+    }
+
+    first.merge(second);
+
+    assertEquals(all, first);
+  }
+
+  @Test
+  void testMemoryIsBoundedByCollapsingTheLowestBuckets() {
+    HistogramSketch sketch = new HistogramSketch(0.01, 100);
+    double[] values = new double[1000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.pow(1.1, i - 500);
+      sketch.record(values[i]);
+    }
+
+    // Only the highest 100 buckets are kept, so high quantiles are still accurate, and low ones are
+    // overestimated as the lowest bucket kept.
+    double p99 = sketch.getValueAtQuantile(0.99);
+    assertTrue(Math.abs(p99 - values[989]) <= values[989] * 0.01);
+    double p50 = sketch.getValueAtQuantile(0.5);
+    assertTrue(p50 > values[499] && p50 < p99);
+    assertEquals(values.length, sketch.getCount());
+  }
+
+  @Test
+  void testClearAndNonFiniteValues() {
+    HistogramSketch sketch = new HistogramSketch();
+    sketch.record(Double.NaN);
+    sketch.record(Double.POSITIVE_INFINITY);
+    assertEquals(0, sketch.getCount());
+    assertTrue(Double.isNaN(sketch.getValueAtQuantile(0.5)));
+
+    sketch.record(5);
+    sketch.clear();
+    sketch.record(7);
+
+    assertEquals(1, sketch.getCount());
+    assertEquals(7, sketch.getValueAtQuantile(0.5), 0);
+  }
+
+  @Test
+  void testSketchesWithDifferentAccuraciesCannotBeMerged() {
+    HistogramSketch sketch = new HistogramSketch(0.01, 100);
+    assertThrows(
+        IllegalArgumentException.class, () -> sketch.merge(new HistogramSketch(0.02, 100)));
+  }
+
+  private static void assertQuantilesMatch(double[] values, HistogramSketch sketch) {
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    for (double quantile : QUANTILES) {
+      double expected = sorted[(int) (quantile * (sorted.length - 1))];
+      double actual = sketch.getValueAtQuantile(quantile);
+      assertTrue(
+          Math.abs(actual - expected) <= Math.abs(expected) * 0.01,
+          "quantile " + quantile + ": expected " + expected + " but was " + actual);
+    }
+  }
+}
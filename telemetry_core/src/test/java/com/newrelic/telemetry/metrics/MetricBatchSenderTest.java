@@ -5,6 +5,9 @@
 package com.newrelic.telemetry.metrics;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -12,7 +15,11 @@ import com.newrelic.telemetry.Attributes;
 import com.newrelic.telemetry.Response;
 import com.newrelic.telemetry.metrics.json.MetricBatchMarshaller;
 import com.newrelic.telemetry.transport.BatchDataSender;
+import com.newrelic.telemetry.transport.JsonPayloadWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 
 class MetricBatchSenderTest {
@@ -28,8 +35,20 @@ class MetricBatchSenderTest {
     MetricBatchMarshaller marshaller = mock(MetricBatchMarshaller.class);
     BatchDataSender sender = mock(BatchDataSender.class);
 
-    when(marshaller.toJson(batch)).thenReturn(json);
-    when(sender.send(json)).thenReturn(response);
+    doAnswer(
+            invocation -> {
+              invocation.<Writer>getArgument(1).write(json);
+              return null;
+            })
+        .when(marshaller)
+        .toJson(eq(batch), any(Writer.class));
+    when(sender.send(any(JsonPayloadWriter.class)))
+        .thenAnswer(
+            invocation -> {
+              StringWriter out = new StringWriter();
+              invocation.<JsonPayloadWriter>getArgument(0).writeTo(out);
+              return json.equals(out.toString()) ? response : null;
+            });
 
     MetricBatchSender testClass = new MetricBatchSender(marshaller, sender);
 
@@ -37,6 +56,32 @@ class MetricBatchSenderTest {
     assertEquals(response, result);
   }
 
+  @Test
+  void testSimpleSendAsync() throws Exception {
+    Metric metric = new Count("a", 12.1, 123, 456, new Attributes());
+    MetricBatch batch =
+        new MetricBatch(Collections.singletonList(metric), new Attributes().put("j", "k"));
+    Response response = new Response(202, "OK", "yup");
+
+    MetricBatchMarshaller marshaller = mock(MetricBatchMarshaller.class);
+    BatchDataSender sender = mock(BatchDataSender.class);
+    when(sender.sendAsync(any(JsonPayloadWriter.class)))
+        .thenReturn(CompletableFuture.completedFuture(response));
+
+    MetricBatchSender testClass = new MetricBatchSender(marshaller, sender);
+
+    Response result = testClass.sendBatchAsync(batch).get();
+    assertEquals(response, result);
+  }
+
+  @Test
+  void testEmptyBatchAsync() throws Exception {
+    MetricBatchSender testClass = new MetricBatchSender(null, null);
+    MetricBatch batch = new MetricBatch(Collections.emptyList(), new Attributes());
+    Response response = testClass.sendBatchAsync(batch).get();
+    assertEquals(202, response.getStatusCode());
+  }
+
   @Test
   void testEmptyBatch() throws Exception {
     MetricBatchSender testClass = new MetricBatchSender(null, null);
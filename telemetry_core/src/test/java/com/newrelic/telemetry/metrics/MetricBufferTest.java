@@ -5,6 +5,7 @@
 package com.newrelic.telemetry.metrics;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.newrelic.telemetry.Attributes;
 import org.junit.jupiter.api.DisplayName;
@@ -23,6 +24,22 @@ class MetricBufferTest {
     assertEquals(expectedCommonAttributes, metricBuffer.getCommonAttributes());
   }
 
+  @Test
+  @DisplayName("Common attributes are a frozen snapshot taken when the buffer is created")
+  void testCommonAttributesAreFrozen() {
+    Attributes commonAttributes = new Attributes().put("key1", "value1");
+    MetricBuffer metricBuffer = new MetricBuffer(commonAttributes);
+
+    commonAttributes.put("key2", "value2");
+    MetricBatch batch = metricBuffer.createBatch();
+
+    assertEquals(new Attributes().put("key1", "value1"), batch.getCommonAttributes());
+    assertThrows(
+        UnsupportedOperationException.class, () -> batch.getCommonAttributes().put("key3", 3));
+    Attributes changed = batch.getCommonAttributes().copy().put("key3", 3);
+    assertEquals(new Attributes().put("key1", "value1").put("key3", 3), changed);
+  }
+
   @Test
   @DisplayName("Metrics are stored and returned correctly")
   void testMetrics() {
@@ -58,4 +58,22 @@ class MetricToJsonTest {
             + ",\"interval.ms\":1250,\"attributes\":{\"b\":\"c\"}}";
     assertEquals(expected, json);
   }
+
+  @Test
+  void testHistogram() throws Exception {
+    HistogramSketch sketch = new HistogramSketch();
+    sketch.record(5);
+    sketch.record(5);
+    Histogram histogram =
+        new Histogram(
+            "latency", sketch, new double[] {0.5, 0.99}, 555, 666, new Attributes().put("a", "b"));
+
+    String json = metricToJson.writeHistogramJson(histogram);
+
+    String expected =
+        "[{\"name\":\"latency\",\"type\":\"summary\",\"value\":{\"count\":2,\"sum\":10.0,\"min\":5.0,\"max\":5.0},\"timestamp\":555,\"interval.ms\":111,\"attributes\":{\"a\":\"b\"}},"
+            + "{\"name\":\"latency.percentiles\",\"type\":\"gauge\",\"value\":5.0,\"timestamp\":666,\"attributes\":{\"a\":\"b\",\"percentile\":50.0}},"
+            + "{\"name\":\"latency.percentiles\",\"type\":\"gauge\",\"value\":5.0,\"timestamp\":666,\"attributes\":{\"a\":\"b\",\"percentile\":99.0}}]";
+    JSONAssert.assertEquals(expected, "[" + json + "]", true);
+  }
 }
@@ -4,6 +4,7 @@
  */
 package com.newrelic.telemetry.metrics;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.newrelic.telemetry.Attributes;
@@ -12,6 +13,7 @@ import com.newrelic.telemetry.metrics.json.MetricBatchJsonCommonBlockWriter;
 import com.newrelic.telemetry.metrics.json.MetricBatchJsonTelemetryBlockWriter;
 import com.newrelic.telemetry.metrics.json.MetricBatchMarshaller;
 import com.newrelic.telemetry.metrics.json.MetricToJson;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
@@ -169,4 +171,21 @@ class MetricsBatchMarshallerTest {
         json.contains(
             "\"key-bigdec-very-small\":1.2312312312312312312312312312312312312312312312312E-34518"));
   }
+
+  @Test
+  @DisplayName("Streaming to a Writer produces the same json as building a String")
+  void testStreamingMatchesString() throws Exception {
+    MetricBatch metricBatch =
+        new MetricBatch(
+            Arrays.asList(
+                new Count("count", 3, 555, 666, new Attributes().put("a", "b")),
+                new Gauge("gauge", 4, 555, new Attributes()),
+                new Summary("summary", 1, 2d, 2d, 2d, 555, 666, new Attributes())),
+            new Attributes().put("common", true));
+
+    StringWriter out = new StringWriter();
+    metricBatchMarshaller.toJson(metricBatch, out);
+
+    assertEquals(metricBatchMarshaller.toJson(metricBatch), out.toString());
+  }
 }
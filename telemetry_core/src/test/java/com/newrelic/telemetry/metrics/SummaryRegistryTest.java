@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.Attributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class SummaryRegistryTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+
+  @Test
+  void testObservationsAreFoldedIntoOneSummary() {
+    SummaryRegistry registry = new SummaryRegistry(now::get);
+    Attributes attributes = new Attributes().put("route", "/users");
+
+    SummaryRecorder recorder = registry.summary("latency", attributes);
+    recorder.record(12);
+    recorder.record(-3);
+    recorder.record(40.5);
+    assertSame(recorder, registry.summary("latency", new Attributes().put("route", "/users")));
+    now.set(2000);
+
+    List<Metric> metrics = harvest(registry);
+
+    assertEquals(
+        new Summary("latency", 3, 49.5, -3, 40.5, 1000, 2000, attributes), metrics.get(0));
+  }
+
+  @Test
+  void testEachIntervalStartsEmpty() {
+    SummaryRegistry registry = new SummaryRegistry(now::get);
+    SummaryRecorder recorder = registry.summary("latency", new Attributes());
+    recorder.record(100);
+    now.set(2000);
+    harvest(registry);
+
+    now.set(3000);
+    assertTrue(harvest(registry).isEmpty());
+    now.set(4000);
+    assertTrue(harvest(registry).isEmpty());
+
+    recorder.record(7);
+    now.set(5000);
+    List<Metric> metrics = harvest(registry);
+
+    assertEquals(new Summary("latency", 1, 7, 7, 7, 4000, 5000, new Attributes()), metrics.get(0));
+  }
+
+  @Test
+  void testConcurrentObservationsAreCountedOnce() throws Exception {
+    SummaryRegistry registry = new SummaryRegistry(now::get);
+    SummaryRecorder recorder = registry.summary("latency", new Attributes());
+    int threads = 4;
+    int observations = 100_000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(
+              () -> {
+                for (int j = 1; j <= observations; j++) {
+                  recorder.record(j);
+                }
+                done.countDown();
+              })
+          .start();
+    }
+
+    List<Metric> metrics = new ArrayList<>();
+    while (done.getCount() > 0) {
+      registry.harvest(metrics);
+    }
+    done.await();
+    registry.harvest(metrics);
+
+    long count = 0;
+    double sum = 0;
+    for (Metric metric : metrics) {
+      Summary summary = (Summary) metric;
+      count += summary.getCount();
+      sum += summary.getSum();
+      assertTrue(summary.getMin() >= 1);
+      assertTrue(summary.getMax() <= observations);
+      assertTrue(summary.getMin() <= summary.getMax());
+    }
+    assertEquals(threads * observations, count);
+    assertEquals(threads * (observations * (observations + 1.0) / 2), sum, 0);
+  }
+
+  @Test
+  void testMetricBufferReportsSummaries() {
+    MetricBuffer buffer = new MetricBuffer(new Attributes(), now::get);
+    buffer.getSummaryRegistry().summary("latency", new Attributes()).record(5);
+    now.set(2000);
+
+    Collection<Metric> metrics = buffer.createBatch().getTelemetry();
+
+    assertEquals(1, metrics.size());
+    assertTrue(metrics.contains(new Summary("latency", 1, 5, 5, 5, 1000, 2000, new Attributes())));
+  }
+
+  private static List<Metric> harvest(SummaryRegistry registry) {
+    List<Metric> metrics = new ArrayList<>();
+    registry.harvest(metrics);
+    return metrics;
+  }
+}
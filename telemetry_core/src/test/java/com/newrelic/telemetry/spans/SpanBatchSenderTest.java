@@ -5,6 +5,9 @@
 package com.newrelic.telemetry.spans;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -12,6 +15,9 @@ import com.newrelic.telemetry.Attributes;
 import com.newrelic.telemetry.Response;
 import com.newrelic.telemetry.spans.json.SpanBatchMarshaller;
 import com.newrelic.telemetry.transport.BatchDataSender;
+import com.newrelic.telemetry.transport.JsonPayloadWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collections;
 import org.junit.jupiter.api.Test;
 
@@ -28,8 +34,20 @@ class SpanBatchSenderTest {
     SpanBatchMarshaller marshaller = mock(SpanBatchMarshaller.class);
     BatchDataSender sender = mock(BatchDataSender.class);
 
-    when(marshaller.toJson(batch)).thenReturn(json);
-    when(sender.send(json)).thenReturn(response);
+    doAnswer(
+            invocation -> {
+              invocation.<Writer>getArgument(1).write(json);
+              return null;
+            })
+        .when(marshaller)
+        .toJson(eq(batch), any(Writer.class));
+    when(sender.send(any(JsonPayloadWriter.class)))
+        .thenAnswer(
+            invocation -> {
+              StringWriter out = new StringWriter();
+              invocation.<JsonPayloadWriter>getArgument(0).writeTo(out);
+              return json.equals(out.toString()) ? response : null;
+            });
 
     SpanBatchSender testClass = new SpanBatchSender(marshaller, sender);
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.spans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.ProbabilitySampler;
+import com.newrelic.telemetry.json.AttributesJson;
+import com.newrelic.telemetry.spans.json.SpanBatchMarshaller;
+import com.newrelic.telemetry.spans.json.SpanJsonCommonBlockWriter;
+import com.newrelic.telemetry.spans.json.SpanJsonTelemetryBlockWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+class SpanBufferTest {
+
+  private final Attributes commonAttributes = new Attributes().put("service.name", "buffered");
+
+  @Test
+  void testSpansAreGroupedByTraceInOneBatch() {
+    SpanBuffer buffer = new SpanBuffer(commonAttributes);
+    Span a1 = Span.builder("a1").traceId("a").build();
+    Span b1 = Span.builder("b1").traceId("b").build();
+    Span orphan = Span.builder("orphan").build();
+    Span a2 = Span.builder("a2").traceId("a").build();
+    buffer.addSpan(a1);
+    buffer.addSpan(b1);
+    buffer.addSpan(orphan);
+    buffer.addSpan(a2);
+
+    SpanBatch batch = buffer.createBatch();
+
+    assertEquals(
+        SpanBatch.groupedByTrace(Arrays.asList(a1, a2, b1, orphan), commonAttributes), batch);
+    assertEquals(Optional.empty(), batch.getTraceId());
+    assertTrue(buffer.createBatch().isEmpty());
+  }
+
+  @Test
+  void testTheTraceIdIsSetWhenAllSpansShareIt() {
+    SpanBuffer buffer = new SpanBuffer(commonAttributes);
+    Span a1 = Span.builder("a1").traceId("a").build();
+    Span a2 = Span.builder("a2").traceId("a").build();
+    buffer.addSpan(a1);
+    buffer.addSpan(a2);
+
+    assertEquals(new SpanBatch(Arrays.asList(a1, a2), commonAttributes, "a"), buffer.createBatch());
+
+    Span orphan = Span.builder("orphan").build();
+    buffer.addSpan(orphan);
+    buffer.addSpan(a1);
+    assertEquals(Optional.empty(), buffer.createBatch().getTraceId());
+  }
+
+  @Test
+  void testTracesAreSentAsBlocksInOnePayload() throws Exception {
+    SpanBuffer buffer = new SpanBuffer(commonAttributes);
+    String traceId = "0123456789abcdef";
+    buffer.addSpan(Span.builder("1").traceId(traceId).timestamp(10).build());
+    buffer.addSpan(Span.builder("small").traceId("small").timestamp(10).build());
+    buffer.addSpan(Span.builder("2").traceId(traceId).timestamp(20).build());
+    buffer.addSpan(Span.builder("orphan").timestamp(10).build());
+    buffer.addSpan(Span.builder("3").traceId(traceId).timestamp(30).build());
+    buffer.addSpan(Span.builder("4").traceId(traceId).timestamp(40).build());
+    AttributesJson attributesJson = new AttributesJson();
+    SpanBatchMarshaller marshaller =
+        new SpanBatchMarshaller(
+            new SpanJsonCommonBlockWriter(attributesJson),
+            new SpanJsonTelemetryBlockWriter(attributesJson));
+
+    String json = marshaller.toJson(buffer.createBatch());
+
+    // The trace with one span is not worth a block of its own.
+    String expected =
+        "[{\"common\":{\"attributes\":{\"service.name\":\"buffered\"}},"
+            + "\"spans\":[{\"id\":\"small\",\"trace.id\":\"small\","
+            + "\"timestamp\":10,\"attributes\":{}},"
+            + "{\"id\":\"orphan\",\"timestamp\":10,\"attributes\":{}}]},"
+            + "{\"common\":{\"trace.id\":\"0123456789abcdef\","
+            + "\"attributes\":{\"service.name\":\"buffered\"}},"
+            + "\"spans\":[{\"id\":\"1\",\"timestamp\":10,\"attributes\":{}},"
+            + "{\"id\":\"2\",\"timestamp\":20,\"attributes\":{}},"
+            + "{\"id\":\"3\",\"timestamp\":30,\"attributes\":{}},"
+            + "{\"id\":\"4\",\"timestamp\":40,\"attributes\":{}}]}]";
+    JSONAssert.assertEquals(expected, json, true);
+  }
+
+  @Test
+  void testTraceIdIsOnlySentInTheCommonBlock() {
+    SpanBuffer buffer = new SpanBuffer(commonAttributes);
+    buffer.addSpan(Span.builder("1").traceId("abc").timestamp(10).build());
+    buffer.addSpan(Span.builder("2").traceId("abc").timestamp(20).build());
+    AttributesJson attributesJson = new AttributesJson();
+    SpanBatchMarshaller marshaller =
+        new SpanBatchMarshaller(
+            new SpanJsonCommonBlockWriter(attributesJson),
+            new SpanJsonTelemetryBlockWriter(attributesJson));
+
+    SpanBatch batch = buffer.createBatch();
+
+    assertEquals(
+        "[{\"common\":{\"trace.id\":\"abc\",\"attributes\":{\"service.name\":\"buffered\"}},"
+            + "\"spans\":[{\"id\":\"1\",\"timestamp\":10,\"attributes\":{}},"
+            + "{\"id\":\"2\",\"timestamp\":20,\"attributes\":{}}]}]",
+        marshaller.toJson(batch));
+  }
+
+  @Test
+  void testSampledSpansAreKeptOrDroppedByTrace() {
+    ProbabilitySampler sampler = new ProbabilitySampler(0.5);
+    SpanBuffer buffer = new SpanBuffer(commonAttributes, sampler);
+    Map<String, Integer> expectedSpans = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      String traceId = "trace-" + i;
+      if (sampler.shouldKeep(traceId)) {
+        expectedSpans.put(traceId, 2);
+      }
+      buffer.addSpan(Span.builder("root").traceId(traceId).build());
+      buffer.addSpan(Span.builder("child").traceId(traceId).parentId("root").build());
+    }
+
+    SpanBatch batch = buffer.createBatch();
+
+    Map<String, Integer> keptSpans = new HashMap<>();
+    for (Span span : batch.getTelemetry()) {
+      keptSpans.merge(span.getTraceId(), 1, Integer::sum);
+    }
+    assertEquals(expectedSpans, keptSpans);
+    assertEquals(0.5, batch.getCommonAttributes().asMap().get("sampling.rate"));
+  }
+}
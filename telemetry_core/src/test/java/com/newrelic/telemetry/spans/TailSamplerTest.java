@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.spans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.Attributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TailSamplerTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+  private final SpanBuffer buffer = new SpanBuffer(new Attributes());
+
+  @Test
+  void testTracesWithErrorsAreKeptWhenTheRootArrives() {
+    TailSampler sampler = TailSampler.builder(buffer).sampleRate(0).build(now::get);
+    Span child = Span.builder("child").traceId("t1").parentId("root").withError().build();
+    Span root = Span.builder("root").traceId("t1").build();
+    Span late = Span.builder("late").traceId("t1").parentId("root").build();
+
+    sampler.addSpan(child);
+    assertTrue(buffer.createBatch().isEmpty());
+    sampler.addSpan(root);
+    sampler.addSpan(late);
+
+    assertEquals(spansOf(child, root, late), spansIn(buffer.createBatch()));
+    assertEquals(1, sampler.getKeptTraceCount());
+    assertEquals(0, sampler.getPendingTraceCount());
+  }
+
+  @Test
+  void testSlowTracesAreKeptAndOthersDropped() {
+    TailSampler sampler =
+        TailSampler.builder(buffer).latencyThresholdMs(500).sampleRate(0).build(now::get);
+    Span slowRoot = Span.builder("slow").traceId("slow").durationMs(750).build();
+    Span fastChild = Span.builder("child").traceId("fast").parentId("fast").build();
+    Span fastRoot = Span.builder("fast").traceId("fast").durationMs(20).build();
+    Span lateFast = Span.builder("late").traceId("fast").parentId("fast").build();
+
+    sampler.addSpan(slowRoot);
+    sampler.addSpan(fastChild);
+    sampler.addSpan(fastRoot);
+    sampler.addSpan(lateFast);
+
+    assertEquals(spansOf(slowRoot), spansIn(buffer.createBatch()));
+    assertEquals(1, sampler.getKeptTraceCount());
+    assertEquals(1, sampler.getDroppedTraceCount());
+  }
+
+  @Test
+  void testTracesWithoutARootAreJudgedWhenTheyTimeOut() {
+    TailSampler sampler =
+        TailSampler.builder(buffer).decisionWaitMs(5000).latencyThresholdMs(500).build(now::get);
+    Span orphan = Span.builder("orphan").traceId("t1").parentId("gone").durationMs(900).build();
+
+    sampler.addSpan(orphan);
+    now.addAndGet(4999);
+    sampler.expire();
+    assertEquals(1, sampler.getPendingTraceCount());
+    now.addAndGet(1);
+    sampler.expire();
+
+    assertEquals(0, sampler.getPendingTraceCount());
+    assertEquals(spansOf(orphan), spansIn(buffer.createBatch()));
+  }
+
+  @Test
+  void testTheOldestTraceIsJudgedWhenFull() {
+    TailSampler sampler = TailSampler.builder(buffer).maxTraces(2).sampleRate(1).build(now::get);
+    Span first = Span.builder("1").traceId("t1").parentId("p").build();
+    Span second = Span.builder("2").traceId("t2").parentId("p").build();
+    Span third = Span.builder("3").traceId("t3").parentId("p").build();
+
+    sampler.addSpan(first);
+    sampler.addSpan(second);
+    sampler.addSpan(third);
+
+    assertEquals(2, sampler.getPendingTraceCount());
+    assertEquals(spansOf(first), spansIn(buffer.createBatch()));
+    sampler.flush();
+    assertEquals(spansOf(second, third), spansIn(buffer.createBatch()));
+  }
+
+  @Test
+  void testTracesJudgedBehindAWaitingTraceAreNotHeld() {
+    TailSampler sampler =
+        TailSampler.builder(buffer)
+            .maxTraces(10)
+            .decisionWaitMs(5000)
+            .sampleRate(0)
+            .build(now::get);
+    Span orphan = Span.builder("orphan").traceId("stuck").parentId("gone").build();
+
+    sampler.addSpan(orphan);
+    for (int i = 0; i < 1000; i++) {
+      String traceId = "t" + i;
+      sampler.addSpan(Span.builder("child").traceId(traceId).parentId(traceId).build());
+      sampler.addSpan(Span.builder("root").traceId(traceId).build());
+    }
+
+    assertEquals(1, sampler.getPendingTraceCount());
+    assertEquals(1, sampler.getTrackedTraceCount());
+    assertEquals(1000, sampler.getDroppedTraceCount());
+    now.addAndGet(5000);
+    sampler.expire();
+    assertEquals(0, sampler.getTrackedTraceCount());
+    assertEquals(1001, sampler.getDroppedTraceCount());
+  }
+
+  @Test
+  void testSampleRateMustBeAProbability() {
+    assertThrows(IllegalArgumentException.class, () -> TailSampler.builder(buffer).sampleRate(2));
+    assertThrows(IllegalArgumentException.class, () -> TailSampler.builder(buffer).maxTraces(0));
+  }
+
+  private static List<Span> spansOf(Span... spans) {
+    List<Span> result = new ArrayList<>();
+    for (Span span : spans) {
+      result.add(span);
+    }
+    return result;
+  }
+
+  private static List<Span> spansIn(SpanBatch batch) {
+    return new ArrayList<>(batch.getTelemetry());
+  }
+}
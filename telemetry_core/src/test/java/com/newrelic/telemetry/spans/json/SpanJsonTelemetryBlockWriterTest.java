@@ -17,11 +17,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
 
 class SpanJsonTelemetryBlockWriterTest {
 
   @Test
-  void testHappyPath() throws IOException {
+  void testHappyPath() throws Exception {
     StringWriter out = new StringWriter();
     JsonWriter jsonWriter = new JsonWriter(out);
 
@@ -72,7 +73,7 @@ class SpanJsonTelemetryBlockWriterTest {
     jsonWriter.endObject();
     String result = out.toString();
 
-    assertEquals(expected, result);
+    JSONAssert.assertEquals(expected, result, true);
   }
 
   @Test
@@ -143,7 +144,7 @@ class SpanJsonTelemetryBlockWriterTest {
   }
 
   @Test
-  void testAttributesSetButNotProperties() throws IOException {
+  void testAttributesSetButNotProperties() throws Exception {
     StringWriter out = new StringWriter();
     JsonWriter jsonWriter = new JsonWriter(out);
 
@@ -173,11 +174,11 @@ class SpanJsonTelemetryBlockWriterTest {
             + "\"name\":\"lucy\","
             + "\"parent.id\":\"0xff\""
             + "}}]}";
-    assertEquals(expected, result);
+    JSONAssert.assertEquals(expected, result, true);
   }
 
   @Test
-  void testNullAttributesDontOverrideAndAreOmitted() throws IOException {
+  void testNullAttributesDontOverrideAndAreOmitted() throws Exception {
     StringWriter out = new StringWriter();
     JsonWriter jsonWriter = new JsonWriter(out);
 
@@ -214,6 +215,39 @@ class SpanJsonTelemetryBlockWriterTest {
             + "\"name\":\"lucy\","
             + "\"parent.id\":\"0xff\""
             + "}}]}";
-    assertEquals(expected, result);
+    JSONAssert.assertEquals(expected, result, true);
+  }
+
+  @Test
+  void testErrorTakesPrecedenceAndFrozenAttributesAreWritten() throws Exception {
+    StringWriter out = new StringWriter();
+    JsonWriter jsonWriter = new JsonWriter(out);
+
+    Attributes attrs =
+        new Attributes().put("error", false).put("name", "custom").put("n", 3).freeze();
+    Span span =
+        Span.builder("123")
+            .timestamp(12345)
+            .name("lucy")
+            .serviceName("ipanema")
+            .withError()
+            .attributes(attrs)
+            .build();
+    SpanBatch spanBatch = new SpanBatch(Collections.singleton(span), new Attributes());
+
+    SpanJsonTelemetryBlockWriter testClass = new SpanJsonTelemetryBlockWriter(new AttributesJson());
+
+    jsonWriter.beginObject();
+    testClass.appendTelemetryJson(spanBatch, jsonWriter);
+    jsonWriter.endObject();
+
+    String expected =
+        "{\"spans\":[{\"id\":\"123\",\"timestamp\":12345,\"attributes\":{"
+            + "\"n\":3,"
+            + "\"name\":\"custom\","
+            + "\"service.name\":\"ipanema\","
+            + "\"error\":true"
+            + "}}]}";
+    assertEquals(expected, out.toString());
   }
 }
@@ -6,19 +6,39 @@
 package com.newrelic.telemetry.transport;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableMap;
 import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.exceptions.RetryWithBackoffException;
+import com.newrelic.telemetry.exceptions.RetryWithSplitException;
 import com.newrelic.telemetry.http.HttpPoster;
 import com.newrelic.telemetry.http.HttpResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 class BatchDataSenderTest {
 
@@ -65,4 +85,255 @@ class BatchDataSenderTest {
 
     assertEquals(new Response(202, "OK", "yepyep"), response);
   }
+
+  @Test
+  void testSend_streamedPayloadIsGzippedJson() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    ArgumentCaptor<byte[]> payloadCaptor = ArgumentCaptor.forClass(byte[].class);
+    when(httpPoster.post(eq(endpointURl), any(), payloadCaptor.capture(), any()))
+        .thenReturn(new HttpResponse("yepyep", 202, "OK", Collections.emptyMap()));
+
+    BatchDataSender testClass =
+        new BatchDataSender(httpPoster, "api-key", endpointURl, false, null);
+
+    Response response = testClass.send(out -> out.append("[{\"\u00fcnicode\":").append("true}]"));
+
+    assertEquals(new Response(202, "OK", "yepyep"), response);
+    assertEquals("[{\"\u00fcnicode\":true}]", gunzip(payloadCaptor.getValue()));
+  }
+
+  @Test
+  void testSend_deflateCompression() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    Map<String, String> headers =
+        ImmutableMap.of(
+            "User-Agent", "NewRelic-Java-TelemetrySDK/UnknownVersion",
+            "Api-Key", "api-key",
+            "Content-Encoding", "deflate");
+    ArgumentCaptor<byte[]> payloadCaptor = ArgumentCaptor.forClass(byte[].class);
+    when(httpPoster.post(eq(endpointURl), eq(headers), payloadCaptor.capture(), any()))
+        .thenReturn(new HttpResponse("yepyep", 202, "OK", Collections.emptyMap()));
+
+    BatchDataSender testClass =
+        new BatchDataSender(
+            httpPoster,
+            "api-key",
+            endpointURl,
+            false,
+            null,
+            CompressionPool.getDefault(),
+            Compression.deflate(Deflater.BEST_SPEED));
+
+    Response response = testClass.send("[{\"a\":1}]");
+
+    assertEquals(new Response(202, "OK", "yepyep"), response);
+    assertEquals("[{\"a\":1}]", inflate(payloadCaptor.getValue()));
+  }
+
+  @Test
+  void testSend_identityCompression() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    Map<String, String> headers =
+        ImmutableMap.of(
+            "User-Agent", "NewRelic-Java-TelemetrySDK/UnknownVersion", "Api-Key", "api-key");
+    ArgumentCaptor<byte[]> payloadCaptor = ArgumentCaptor.forClass(byte[].class);
+    when(httpPoster.post(eq(endpointURl), eq(headers), payloadCaptor.capture(), any()))
+        .thenReturn(new HttpResponse("yepyep", 202, "OK", Collections.emptyMap()));
+
+    BatchDataSender testClass =
+        new BatchDataSender(
+            httpPoster,
+            "api-key",
+            endpointURl,
+            false,
+            null,
+            CompressionPool.getDefault(),
+            Compression.identity());
+
+    Response response = testClass.send("[{\"a\":1}]");
+
+    assertEquals(new Response(202, "OK", "yepyep"), response);
+    assertEquals("[{\"a\":1}]", new String(payloadCaptor.getValue(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testSendAsync() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    Map<String, String> headers =
+        ImmutableMap.of(
+            "User-Agent", "NewRelic-Java-TelemetrySDK/UnknownVersion",
+            "Api-Key", "api-key",
+            "Content-Encoding", "gzip");
+    when(httpPoster.postAsync(
+            eq(endpointURl), eq(headers), any(), eq("application/json; charset=utf-8")))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new HttpResponse("yepyep", 202, "OK", Collections.emptyMap())));
+
+    BatchDataSender testClass =
+        new BatchDataSender(httpPoster, "api-key", endpointURl, false, null);
+
+    Response response = testClass.sendAsync("{}").get();
+
+    assertEquals(new Response(202, "OK", "yepyep"), response);
+  }
+
+  @Test
+  void testSendAsync_errorResponse() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    when(httpPoster.postAsync(eq(endpointURl), any(), any(), any()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new HttpResponse("too big", 413, "Payload Too Large", Collections.emptyMap())));
+
+    BatchDataSender testClass =
+        new BatchDataSender(httpPoster, "api-key", endpointURl, false, null);
+
+    ExecutionException result =
+        assertThrows(ExecutionException.class, () -> testClass.sendAsync("{}").get());
+    assertTrue(result.getCause() instanceof RetryWithSplitException);
+  }
+
+  @Test
+  void testSendAsync_ioFailure() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    CompletableFuture<HttpResponse> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IOException("connection reset"));
+    when(httpPoster.postAsync(eq(endpointURl), any(), any(), any())).thenReturn(failed);
+
+    BatchDataSender testClass =
+        new BatchDataSender(httpPoster, "api-key", endpointURl, false, null);
+
+    ExecutionException result =
+        assertThrows(ExecutionException.class, () -> testClass.sendAsync("{}").get());
+    assertTrue(result.getCause() instanceof RetryWithBackoffException);
+  }
+
+  @Test
+  void testSendAsync_unexpectedResponseCompletesExceptionally() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    when(httpPoster.postAsync(eq(endpointURl), any(), any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new HttpResponse("slow down", 429, "Too Many Requests", null)));
+
+    BatchDataSender testClass =
+        new BatchDataSender(httpPoster, "api-key", endpointURl, false, null);
+
+    ExecutionException nullResponse =
+        assertThrows(
+            ExecutionException.class, () -> testClass.sendAsync("{}").get(5, TimeUnit.SECONDS));
+    assertTrue(nullResponse.getCause() instanceof NullPointerException);
+    ExecutionException nullHeaders =
+        assertThrows(
+            ExecutionException.class, () -> testClass.sendAsync("{}").get(5, TimeUnit.SECONDS));
+    assertTrue(nullHeaders.getCause() instanceof NullPointerException);
+  }
+
+  @Test
+  void testSendAsync_posterThrowsCompletesExceptionally() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    IllegalStateException failure = new IllegalStateException("client closed");
+    when(httpPoster.postAsync(eq(endpointURl), any(), any(), any())).thenThrow(failure);
+
+    BatchDataSender testClass =
+        new BatchDataSender(httpPoster, "api-key", endpointURl, false, null);
+
+    ExecutionException result =
+        assertThrows(
+            ExecutionException.class, () -> testClass.sendAsync("{}").get(5, TimeUnit.SECONDS));
+    assertSame(failure, result.getCause());
+  }
+
+  @Test
+  void testSend_precompressedPayloadKeepsItsEncoding() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    Map<String, String> headers =
+        ImmutableMap.of(
+            "User-Agent", "NewRelic-Java-TelemetrySDK/UnknownVersion",
+            "Api-Key", "api-key",
+            "Content-Encoding", "gzip");
+    ArgumentCaptor<byte[]> payloadCaptor = ArgumentCaptor.forClass(byte[].class);
+    when(httpPoster.post(eq(endpointURl), eq(headers), payloadCaptor.capture(), any()))
+        .thenReturn(new HttpResponse("yepyep", 202, "OK", Collections.emptyMap()));
+
+    BatchDataSender gzipSender =
+        new BatchDataSender(httpPoster, "api-key", endpointURl, false, null);
+    BatchDataSender identitySender =
+        new BatchDataSender(
+            httpPoster,
+            "api-key",
+            endpointURl,
+            false,
+            null,
+            CompressionPool.getDefault(),
+            Compression.identity());
+
+    CompressedPayload payload = gzipSender.compress(out -> out.write("[{\"spooled\":true}]"));
+    Response response = identitySender.send(payload);
+
+    assertEquals(new Response(202, "OK", "yepyep"), response);
+    assertEquals("gzip", payload.getContentEncoding());
+    assertEquals("[{\"spooled\":true}]", gunzip(payloadCaptor.getValue()));
+  }
+
+  @Test
+  void testSend_oversizePayloadIsSplitWithoutSending() throws Exception {
+    URL endpointURl = new URL("http://foo.com");
+    HttpPoster httpPoster = mock(HttpPoster.class);
+    when(httpPoster.post(eq(endpointURl), any(), any(), any()))
+        .thenReturn(new HttpResponse("yepyep", 202, "OK", Collections.emptyMap()));
+
+    BatchDataSender testClass =
+        new BatchDataSender(
+            httpPoster,
+            "api-key",
+            endpointURl,
+            false,
+            null,
+            CompressionPool.getDefault(),
+            Compression.identity(),
+            100);
+
+    testClass.send(out -> out.write(repeat('x', 100)));
+    assertThrows(
+        RetryWithSplitException.class, () -> testClass.send(out -> out.write(repeat('x', 101))));
+    verify(httpPoster, times(1)).post(any(), any(), any(), any());
+  }
+
+  private static String inflate(byte[] compressed) throws IOException {
+    return readFully(new InflaterInputStream(new ByteArrayInputStream(compressed)));
+  }
+
+  private static String gunzip(byte[] compressed) throws IOException {
+    return readFully(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+
+  private static String readFully(InputStream input) throws IOException {
+    try (InputStream in = input) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+class CompressionPoolTest {
+
+  @Test
+  void testDeflaterReuse() {
+    CompressionPool pool = new CompressionPool(1, 1024);
+
+    Deflater first = pool.acquireDeflater();
+    pool.releaseDeflater(first);
+    Deflater second = pool.acquireDeflater();
+
+    assertSame(first, second);
+    assertEquals(1, pool.getDeflaterHits());
+    assertEquals(1, pool.getDeflaterMisses());
+  }
+
+  @Test
+  void testPoolIsBounded() {
+    CompressionPool pool = new CompressionPool(1, 1024);
+
+    Deflater first = pool.acquireDeflater();
+    Deflater second = pool.acquireDeflater();
+    pool.releaseDeflater(first);
+    pool.releaseDeflater(second);
+
+    assertSame(first, pool.acquireDeflater());
+    assertNotSame(second, pool.acquireDeflater());
+    assertEquals(1, pool.getDeflaterHits());
+    assertEquals(3, pool.getDeflaterMisses());
+  }
+
+  @Test
+  void testOversizeBuffersAreNotRetained() {
+    CompressionPool pool = new CompressionPool(2, 16 * 1024);
+
+    CompressionPool.PooledBuffer small = pool.acquireBuffer();
+    CompressionPool.PooledBuffer large = pool.acquireBuffer();
+    large.write(new byte[32 * 1024], 0, 32 * 1024);
+    pool.releaseBuffer(small);
+    pool.releaseBuffer(large);
+
+    CompressionPool.PooledBuffer reused = pool.acquireBuffer();
+    assertSame(small, reused);
+    assertEquals(0, reused.size());
+    assertNotSame(large, pool.acquireBuffer());
+    assertEquals(1, pool.getBufferHits());
+    assertEquals(3, pool.getBufferMisses());
+  }
+
+  @Test
+  void testReusedDeflaterProducesValidGzip() throws Exception {
+    CompressionPool pool = new CompressionPool(1, 1024);
+
+    for (String json : new String[] {"[{\"first\":1}]", "[{\"second\":\"\u00fc\"}]"}) {
+      Deflater deflater = pool.acquireDeflater();
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (GzipDeflaterOutputStream out = new GzipDeflaterOutputStream(compressed, deflater)) {
+        out.write(json.getBytes(StandardCharsets.UTF_8));
+      }
+      pool.releaseDeflater(deflater);
+
+      assertEquals(json, gunzip(compressed.toByteArray()));
+    }
+    assertEquals(1, pool.getDeflaterHits());
+  }
+
+  private static String gunzip(byte[] compressed) throws Exception {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
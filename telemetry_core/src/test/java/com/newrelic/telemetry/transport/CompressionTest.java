@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.newrelic.telemetry.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.zip.Deflater;
+import org.junit.jupiter.api.Test;
+
+class CompressionTest {
+
+  @Test
+  void testContentEncodings() {
+    assertEquals("gzip", Compression.gzip().getContentEncoding());
+    assertEquals("gzip", Compression.gzip(Deflater.BEST_SPEED).getContentEncoding());
+    assertEquals("deflate", Compression.deflate().getContentEncoding());
+    assertNull(Compression.identity().getContentEncoding());
+  }
+
+  @Test
+  void testLevels() {
+    assertEquals(Deflater.DEFAULT_COMPRESSION, Compression.gzip().getLevel());
+    assertEquals(Deflater.BEST_COMPRESSION, Compression.deflate(9).getLevel());
+    assertEquals(Compression.gzip(), Compression.gzip(Deflater.DEFAULT_COMPRESSION));
+  }
+
+  @Test
+  void testInvalidLevel() {
+    assertThrows(IllegalArgumentException.class, () -> Compression.gzip(10));
+    assertThrows(IllegalArgumentException.class, () -> Compression.deflate(0));
+  }
+}